@@ -0,0 +1,81 @@
+import java.util.stream.IntStream;
+
+/**
+ * Splits a range of positions <code>[0, n)</code> into blocks of {@value #BLOCK_SIZE} positions and runs a pass over
+ * each block, one block at a time, or spread across the common fork-join pool once <code>n</code> reaches a
+ * threshold. Bulk passes over columns, such as those of {@link GeometryKernels}, {@link ThreeDShapeStore},
+ * {@link Intersections} and {@link ContainmentGrid}, run through these methods rather than splitting their ranges
+ * themselves. A block is small enough that the columns it touches stay in cache from one loop of a pass to the next.
+ */
+final class Blocks {
+
+    static final int BLOCK_SIZE         = 1 << 10;
+    static final int PARALLEL_THRESHOLD = 1 << 15;
+
+    private Blocks() { }
+
+    /**
+     * A pass over the positions <code>[from, to)</code> of its columns.
+     */
+    @FunctionalInterface
+    interface RangeKernel {
+        void run(int from, int to);
+    }
+
+    /**
+     * A pass over the positions <code>[from, to)</code> of its columns that counts something, e.g. the positions that
+     * pass a test.
+     */
+    @FunctionalInterface
+    interface RangeCount {
+        int run(int from, int to);
+    }
+
+    /**
+     * Runs the kernel over <code>[0, n)</code> one block at a time, in parallel if <code>n</code> is at least
+     * {@value #PARALLEL_THRESHOLD}.
+     */
+    static void run(int n, RangeKernel kernel) {
+        run(n, PARALLEL_THRESHOLD, kernel);
+    }
+
+    /**
+     * Runs the kernel over <code>[0, n)</code> one block at a time, in parallel if <code>n</code> is at least the
+     * specified threshold.
+     */
+    static void run(int n, int parallelThreshold, RangeKernel kernel) {
+        int blocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        if (n >= parallelThreshold)
+            IntStream.range(0, blocks).parallel().forEach(b -> kernel.run(from(b), to(b, n)));
+        else {
+            for (int b = 0; b < blocks; b++) {
+                kernel.run(from(b), to(b, n));
+            }
+        }
+    }
+
+    /**
+     * Runs the pass over <code>[0, n)</code> one block at a time, in parallel if <code>n</code> is at least the
+     * specified threshold.
+     *
+     * @return the sum of the counts of the blocks
+     */
+    static int sum(int n, int parallelThreshold, RangeCount count) {
+        int blocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        if (n >= parallelThreshold)
+            return IntStream.range(0, blocks).parallel().map(b -> count.run(from(b), to(b, n))).sum();
+        int sum = 0;
+        for (int b = 0; b < blocks; b++) {
+            sum += count.run(from(b), to(b, n));
+        }
+        return sum;
+    }
+
+    private static int from(int block) {
+        return block * BLOCK_SIZE;
+    }
+
+    private static int to(int block, int n) {
+        return Math.min(n, (block + 1) * BLOCK_SIZE);
+    }
+}
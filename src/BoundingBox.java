@@ -0,0 +1,91 @@
+/**
+ * An unmodifiable axis-aligned bounding box on the two-dimensional x-y plane, given by its least and greatest x- and
+ * y-values. Boxes are closed, so two boxes that only share an edge or a corner still intersect.
+ */
+public final class BoundingBox {
+    private final double minX;
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+
+    public BoundingBox(double minX, double minY, double maxX, double maxY) {
+        if (minX > maxX || minY > maxY)
+            throw new IllegalArgumentException("The least values of a bounding box cannot exceed its greatest values.");
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    /**
+     * Returns the bounding box of the specified shape, as given by {@link TwoDShape#boundingBox()}.
+     *
+     * @param shape the specified shape
+     * @return the smallest axis-aligned box that contains the shape
+     */
+    public static BoundingBox of(TwoDShape shape) {
+        return shape.boundingBox();
+    }
+
+    public double minX() {
+        return minX;
+    }
+
+    public double minY() {
+        return minY;
+    }
+
+    public double maxX() {
+        return maxX;
+    }
+
+    public double maxY() {
+        return maxY;
+    }
+
+    /**
+     * @return <code>true</code> if this box and the box with the specified bounds share at least one point
+     */
+    public boolean intersects(double minX, double minY, double maxX, double maxY) {
+        return this.minX <= maxX && minX <= this.maxX && this.minY <= maxY && minY <= this.maxY;
+    }
+
+    /**
+     * @return <code>true</code> if this box and the specified box share at least one point
+     */
+    public boolean intersects(BoundingBox other) {
+        return intersects(other.minX, other.minY, other.maxX, other.maxY);
+    }
+
+    /**
+     * @return <code>true</code> if the point (x, y) lies inside this box or on its boundary
+     */
+    public boolean contains(double x, double y) {
+        return minX <= x && x <= maxX && minY <= y && y <= maxY;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof BoundingBox))
+            return false;
+        BoundingBox b = (BoundingBox) o;
+        return Double.compare(minX, b.minX) == 0 && Double.compare(minY, b.minY) == 0
+                && Double.compare(maxX, b.maxX) == 0 && Double.compare(maxY, b.maxY) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = Double.hashCode(minX);
+        h = 31 * h + Double.hashCode(minY);
+        h = 31 * h + Double.hashCode(maxX);
+        h = 31 * h + Double.hashCode(maxY);
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "BoundingBox[(" + minX + ", " + minY + "), (" + maxX + ", " + maxY + ")]";
+    }
+}
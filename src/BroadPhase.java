@@ -0,0 +1,321 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * A sort-and-sweep broad phase over a set of two-dimensional shapes: it finds every pair of shapes whose bounding
+ * boxes intersect, which are the only pairs that can overlap. The boxes are kept sorted on their least x-value, and a
+ * sweep compares each box only with the boxes that start before it ends along the x-axis, so that finding the
+ * <code>k</code> candidate pairs among <code>n</code> shapes takes <code>O(n log n + k)</code> time for scenes whose
+ * shapes are not all stacked along the x-axis. Boxes are closed, so boxes that only touch make a pair.
+ * <p>
+ * The broad phase holds a copy of each shape's box. When a shape is moved, e.g. by <code>setPosition</code>, call
+ * {@link #update} so that the copy is refreshed. Between two sweeps, shapes usually move little, so the order is then
+ * repaired by sorting only the boxes that changed and merging them into the others, which are still in order, in
+ * <code>O(n + m log m)</code> time for <code>m</code> changed boxes; many additions or a full reshuffle fall back to
+ * a full sort with {@link KeySort}.
+ * <p>
+ * A broad phase is not safe for concurrent modification, and must not be modified during a sweep.
+ *
+ * @param <T> the type of the shapes
+ */
+public class BroadPhase<T extends TwoDShape> {
+
+    /**
+     * Sweeps over at least this many shapes are split into x-partitions that are swept in parallel.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    //the boxes and shapes by slot; the slot of a removed shape is reused by a later insertion
+    private double[] minX = new double[INITIAL_CAPACITY];
+    private double[] minY = new double[INITIAL_CAPACITY];
+    private double[] maxX = new double[INITIAL_CAPACITY];
+    private double[] maxY = new double[INITIAL_CAPACITY];
+    private Object[] shapes = new Object[INITIAL_CAPACITY];
+    private int[]    free = new int[INITIAL_CAPACITY];
+    private int      freeCount;
+    private int      slotCount;
+
+    private final Map<T, Integer> slotOf = new IdentityHashMap<>();
+
+    //the occupied slots in increasing order of minX, once sorted; entries of removed slots are dropped by sort()
+    private int[]   order = new int[INITIAL_CAPACITY];
+    private int     orderCount;
+    private boolean sorted = true;
+
+    //the slots whose boxes changed or were added since the last sort, each once
+    private int[]     moved = new int[INITIAL_CAPACITY];
+    private int       movedCount;
+    private boolean[] isMoved = new boolean[INITIAL_CAPACITY];
+
+    //the boxes again, in sorted order, so that a sweep reads them sequentially rather than through the order
+    private double[] sortedMinX = new double[0];
+    private double[] sortedMinY = new double[0];
+    private double[] sortedMaxX = new double[0];
+    private double[] sortedMaxY = new double[0];
+
+    /**
+     * Creates an empty broad phase.
+     */
+    public BroadPhase() { }
+
+    /**
+     * Creates a broad phase over the specified shapes.
+     */
+    public BroadPhase(Collection<? extends T> shapes) {
+        for (T shape : shapes) {
+            insert(shape);
+        }
+    }
+
+    /**
+     * @return the number of shapes in this broad phase
+     */
+    public int size() {
+        return slotOf.size();
+    }
+
+    /**
+     * Adds the specified shape, or refreshes its box if it is already present.
+     */
+    public void insert(T shape) {
+        Integer existing = slotOf.get(shape);
+        if (existing != null) {
+            store(existing, shape.boundingBox());
+            return;
+        }
+        int slot;
+        if (freeCount > 0)
+            slot = free[--freeCount];
+        else {
+            if (slotCount == shapes.length)
+                grow(slotCount * 2);
+            slot = slotCount++;
+        }
+        shapes[slot] = shape;
+        slotOf.put(shape, slot);
+        store(slot, shape.boundingBox());
+        if (orderCount == order.length)
+            order = Arrays.copyOf(order, orderCount * 2);
+        order[orderCount++] = slot;
+    }
+
+    /**
+     * Removes the specified shape, by identity.
+     *
+     * @return <code>true</code> if the shape was present
+     */
+    public boolean remove(T shape) {
+        Integer slot = slotOf.remove(shape);
+        if (slot == null)
+            return false;
+        //the slot is freed once sort() has dropped it from the order, so that it is never in the order twice
+        shapes[slot] = null;
+        sorted = false;
+        return true;
+    }
+
+    /**
+     * Refreshes the box of the specified shape, after it has moved.
+     *
+     * @return <code>true</code> if the shape was present
+     */
+    public boolean update(T shape) {
+        Integer slot = slotOf.get(shape);
+        if (slot == null)
+            return false;
+        store(slot, shape.boundingBox());
+        return true;
+    }
+
+    private void store(int slot, BoundingBox box) {
+        minX[slot] = box.minX();
+        minY[slot] = box.minY();
+        maxX[slot] = box.maxX();
+        maxY[slot] = box.maxY();
+        sorted = false;
+        if (!isMoved[slot]) {
+            isMoved[slot] = true;
+            if (movedCount == moved.length)
+                moved = Arrays.copyOf(moved, movedCount * 2);
+            moved[movedCount++] = slot;
+        }
+    }
+
+    private void grow(int capacity) {
+        minX = Arrays.copyOf(minX, capacity);
+        minY = Arrays.copyOf(minY, capacity);
+        maxX = Arrays.copyOf(maxX, capacity);
+        maxY = Arrays.copyOf(maxY, capacity);
+        shapes = Arrays.copyOf(shapes, capacity);
+        isMoved = Arrays.copyOf(isMoved, capacity);
+    }
+
+    /**
+     * Drops the slots of removed shapes from the order, and sorts it on <code>minX</code>: by sorting the boxes that
+     * changed since the last sort and merging them into the others if they are few, and with {@link KeySort}
+     * otherwise.
+     */
+    private void sort() {
+        if (sorted)
+            return;
+        int n = 0;
+        for (int i = 0; i < orderCount; i++) {
+            int slot = order[i];
+            if (shapes[slot] != null)
+                order[n++] = slot;
+            else {
+                if (freeCount == free.length)
+                    free = Arrays.copyOf(free, freeCount * 2);
+                free[freeCount++] = slot;
+            }
+        }
+        orderCount = n;
+
+        if (movedCount > n / 8) {
+            long[] keys = new long[n];
+            int[] values = Arrays.copyOf(order, n);
+            for (int i = 0; i < n; i++) {
+                keys[i] = KeySort.sortable(minX[values[i]]);
+            }
+            KeySort.sort(keys, values);
+            System.arraycopy(values, 0, order, 0, n);
+        }
+        else
+            merge(n);
+        for (int i = 0; i < movedCount; i++) {
+            isMoved[moved[i]] = false;
+        }
+        movedCount = 0;
+        if (sortedMinX.length < n) {
+            sortedMinX = new double[order.length];
+            sortedMinY = new double[order.length];
+            sortedMaxX = new double[order.length];
+            sortedMaxY = new double[order.length];
+        }
+        for (int i = 0; i < n; i++) {
+            int slot = order[i];
+            sortedMinX[i] = minX[slot];
+            sortedMinY[i] = minY[slot];
+            sortedMaxX[i] = maxX[slot];
+            sortedMaxY[i] = maxY[slot];
+        }
+        sorted = true;
+    }
+
+    /**
+     * Sorts the first <code>n</code> slots of the order, in which only the boxes of moved slots may be out of place:
+     * the moved slots that are still occupied are sorted on their own, and merged back into the others, which are
+     * still in order.
+     */
+    private void merge(int n) {
+        int m = 0;
+        long[] keys = new long[movedCount];
+        int[] values = new int[movedCount];
+        for (int i = 0; i < movedCount; i++) {
+            int slot = moved[i];
+            if (shapes[slot] != null) {
+                keys[m] = KeySort.sortable(minX[slot]);
+                values[m++] = slot;
+            }
+        }
+        if (m < movedCount) {
+            keys = Arrays.copyOf(keys, m);
+            values = Arrays.copyOf(values, m);
+        }
+        KeySort.sort(keys, values);
+
+        //the slots that did not move, in order, are packed at the end of the range and merged forwards from there
+        int rest = n;
+        for (int i = n - 1; i >= 0; i--) {
+            int slot = order[i];
+            if (!isMoved[slot])
+                order[--rest] = slot;
+        }
+        int out = 0;
+        int j = 0;
+        while (j < m) {
+            if (rest < n && Double.compare(minX[order[rest]], minX[values[j]]) <= 0)
+                order[out++] = order[rest++];
+            else
+                order[out++] = values[j++];
+        }
+    }
+
+    /**
+     * Reports each candidate pair exactly once, on the calling thread. The two shapes of a pair are given in
+     * increasing order of their least x-value.
+     */
+    public void forEachPair(BiConsumer<? super T, ? super T> action) {
+        sort();
+        sweep(0, orderCount, action);
+    }
+
+    /**
+     * Reports each candidate pair exactly once, sweeping the x-partitions of the boxes in parallel on the common
+     * fork-join pool. The action must be safe to call from several threads at once.
+     */
+    public void forEachPairParallel(BiConsumer<? super T, ? super T> action) {
+        sort();
+        if (orderCount < PARALLEL_THRESHOLD) {
+            sweep(0, orderCount, action);
+            return;
+        }
+        int partitions = partitions();
+        IntStream.range(0, partitions).parallel().forEach(p -> sweep(start(p, partitions), start(p + 1, partitions),
+                                                                     action));
+    }
+
+    /**
+     * @return the number of candidate pairs, counted in parallel
+     */
+    public long countPairs() {
+        sort();
+        int partitions = orderCount < PARALLEL_THRESHOLD ? 1 : partitions();
+        AtomicLong total = new AtomicLong();
+        IntStream.range(0, partitions).parallel().forEach(p -> {
+            long[] count = new long[1];
+            sweep(start(p, partitions), start(p + 1, partitions), (a, b) -> count[0]++);
+            total.addAndGet(count[0]);
+        });
+        return total.get();
+    }
+
+    /**
+     * @return the number of x-partitions to sweep in parallel: a few per worker, so that the dense parts of a scene
+     * are spread over several tasks
+     */
+    private int partitions() {
+        return Math.min(orderCount / (PARALLEL_THRESHOLD / 8), 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    private int start(int partition, int partitions) {
+        return (int) ((long) orderCount * partition / partitions);
+    }
+
+    /**
+     * Reports the pairs whose first box, in sorted order, is at a position in <code>[from, to)</code>. The second box
+     * may be anywhere after the first, so the pairs of adjacent partitions are reported exactly once.
+     */
+    @SuppressWarnings("unchecked")
+    private void sweep(int from, int to, BiConsumer<? super T, ? super T> action) {
+        double[] x0 = sortedMinX, y0 = sortedMinY, x1 = sortedMaxX, y1 = sortedMaxY;
+        for (int i = from; i < to; i++) {
+            double right = x1[i];
+            double bottom = y0[i];
+            double top = y1[i];
+            for (int j = i + 1; j < orderCount; j++) {
+                if (x0[j] > right)
+                    break;
+                if (y0[j] <= top && y1[j] >= bottom)
+                    action.accept((T) shapes[order[i]], (T) shapes[order[j]]);
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Flyweight views of shapes whose coordinates are stored as consecutive <code>double</code>s in a {@link ByteBuffer},
+ * such as a memory-mapped {@link ShapeFile}. Each view holds only the buffer and the byte offset of its record, and
+ * reads the coordinates with absolute gets, so any number of threads may read through views of the same buffer.
+ * <p>
+ * The records are laid out as follows, in the byte order of the buffer:
+ * <ul>
+ *     <li>triangle: x1, y1, x2, y2, x3, y3 ({@value #TRIANGLE_BYTES} bytes)</li>
+ *     <li>quadrilateral: x1, y1, x2, y2, x3, y3, x4, y4 ({@value #QUADRILATERAL_BYTES} bytes)</li>
+ *     <li>circle: x, y, radius ({@value #CIRCLE_BYTES} bytes)</li>
+ * </ul>
+ * The vertices of triangles and quadrilaterals are expected in the order documented by {@link Triangle#getPosition},
+ * and {@link Positionable#setPosition} writes them back in that order. Setting the position of a view over a
+ * read-only buffer throws a {@link java.nio.ReadOnlyBufferException}.
+ */
+final class BufferShapes {
+
+    static final int TRIANGLE_BYTES      = 6 * Double.BYTES;
+    static final int QUADRILATERAL_BYTES = 8 * Double.BYTES;
+    static final int CIRCLE_BYTES        = 3 * Double.BYTES;
+
+    private BufferShapes() { }
+
+    static TwoDShape triangle(ByteBuffer buffer, int offset) {
+        return new PolygonView(buffer, offset, 3);
+    }
+
+    static TwoDShape quadrilateral(ByteBuffer buffer, int offset) {
+        return new PolygonView(buffer, offset, 4);
+    }
+
+    static TwoDShape circle(ByteBuffer buffer, int offset) {
+        return new CircleView(buffer, offset);
+    }
+
+    /**
+     * Writes the vertices of a triangle or quadrilateral, in the order of its position, at the specified offset.
+     */
+    static void putPolygon(ByteBuffer buffer, int offset, List<? extends Point> vertices, int n) {
+        for (int k = 0; k < n; k++) {
+            buffer.putDouble(offset + 16 * k, vertices.get(k).x());
+            buffer.putDouble(offset + 16 * k + 8, vertices.get(k).y());
+        }
+    }
+
+    static void putCircle(ByteBuffer buffer, int offset, double x, double y, double r) {
+        buffer.putDouble(offset, x);
+        buffer.putDouble(offset + 8, y);
+        buffer.putDouble(offset + 16, r);
+    }
+
+    private static final class PolygonView implements TwoDShape, Positionable {
+        private final ByteBuffer buffer;
+        private final int        offset;
+        private final int        sides;
+
+        PolygonView(ByteBuffer buffer, int offset, int sides) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.sides = sides;
+        }
+
+        private double x(int k) {
+            return buffer.getDouble(offset + 16 * k);
+        }
+
+        private double y(int k) {
+            return buffer.getDouble(offset + 16 * k + 8);
+        }
+
+        @Override
+        public int numSides() {
+            return sides;
+        }
+
+        @Override
+        public boolean isMember(List<? extends Point> vertices) {
+            return ShapeValidator.isMember(ShapeValidator.check(vertices, sides));
+        }
+
+        @Override
+        public double area() {
+            if (sides == 3)
+                return Geometry.triangleArea(x(0), y(0), x(1), y(1), x(2), y(2));
+            return Geometry.quadrilateralArea(x(0), y(0), x(1), y(1), x(2), y(2), x(3), y(3));
+        }
+
+        @Override
+        public double perimeter() {
+            if (sides == 3)
+                return Geometry.trianglePerimeter(x(0), y(0), x(1), y(1), x(2), y(2));
+            return Geometry.quadrilateralPerimeter(x(0), y(0), x(1), y(1), x(2), y(2), x(3), y(3));
+        }
+
+        @Override
+        public BoundingBox boundingBox() {
+            double minX = x(0), minY = y(0), maxX = minX, maxY = minY;
+            for (int k = 1; k < sides; k++) {
+                minX = Math.min(minX, x(k));
+                minY = Math.min(minY, y(k));
+                maxX = Math.max(maxX, x(k));
+                maxY = Math.max(maxY, y(k));
+            }
+            return new BoundingBox(minX, minY, maxX, maxY);
+        }
+
+        @Override
+        public boolean contains(double x, double y) {
+            if (sides == 3)
+                return Geometry.triangleContains(x(0), y(0), x(1), y(1), x(2), y(2), x, y);
+            return Geometry.quadrilateralContains(x(0), y(0), x(1), y(1), x(2), y(2), x(3), y(3), x, y);
+        }
+
+        @Override
+        public void setPosition(List<? extends Point> points) {
+            putPolygon(buffer, offset, Geometry.clockwise(points, sides), sides);
+        }
+
+        @Override
+        public List<? extends Point> getPosition() {
+            TwoDPoint[] vertices = new TwoDPoint[sides];
+            for (int k = 0; k < sides; k++) {
+                vertices[k] = new TwoDPoint(x(k), y(k));
+            }
+            return Arrays.asList(vertices);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(sides == 3 ? "Triangle[" : "Quadrilateral[");
+            for (int k = 0; k < sides; k++) {
+                if (k > 0)
+                    sb.append(", ");
+                sb.append('(').append(x(k)).append(", ").append(y(k)).append(')');
+            }
+            return sb.append(']').toString();
+        }
+    }
+
+    private static final class CircleView implements CircleShape, Positionable {
+        private final ByteBuffer buffer;
+        private final int        offset;
+
+        CircleView(ByteBuffer buffer, int offset) {
+            this.buffer = buffer;
+            this.offset = offset;
+        }
+
+        @Override
+        public double centerX() {
+            return buffer.getDouble(offset);
+        }
+
+        @Override
+        public double centerY() {
+            return buffer.getDouble(offset + 8);
+        }
+
+        @Override
+        public double radius() {
+            return buffer.getDouble(offset + 16);
+        }
+
+        @Override
+        public int numSides() {
+            return (int) Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public boolean isMember(List<? extends Point> centers) {
+            return centers.size() == 1 && radius() > 0;
+        }
+
+        @Override
+        public double area() {
+            double r = radius();
+            return Math.PI * r * r;
+        }
+
+        @Override
+        public double perimeter() {
+            return 2 * Math.PI * radius();
+        }
+
+        @Override
+        public BoundingBox boundingBox() {
+            double x = buffer.getDouble(offset);
+            double y = buffer.getDouble(offset + 8);
+            double r = Math.max(radius(), 0);
+            return new BoundingBox(x - r, y - r, x + r, y + r);
+        }
+
+        @Override
+        public boolean contains(double x, double y) {
+            double dx = x - buffer.getDouble(offset);
+            double dy = y - buffer.getDouble(offset + 8);
+            double r = Math.max(radius(), 0);
+            return dx * dx + dy * dy <= r * r;
+        }
+
+        @Override
+        public void setPosition(List<? extends Point> points) {
+            buffer.putDouble(offset, points.get(0).x());
+            buffer.putDouble(offset + 8, points.get(0).y());
+        }
+
+        @Override
+        public List<? extends Point> getPosition() {
+            return Collections.singletonList(new TwoDPoint(buffer.getDouble(offset), buffer.getDouble(offset + 8)));
+        }
+
+        @Override
+        public String toString() {
+            return "Circle[center: " + buffer.getDouble(offset) + ", " + buffer.getDouble(offset + 8) + "; radius: "
+                    + radius() + "]";
+        }
+    }
+}
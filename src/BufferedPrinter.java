@@ -0,0 +1,327 @@
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A printer that writes each shape on its own line, in the same human-readable form as its <code>toString</code>
+ * method, but through a reusable text buffer and large batched writes to an NIO channel instead of one locked and
+ * flushed <code>System.out.println</code> per shape.
+ * <p>
+ * The vertices of triangles and quadrilaterals are formatted straight from their cached positions, so printing does
+ * not go through their <code>toString</code> methods. A printer can also be created with a bounded queue, in which
+ * case {@link #print} only hands the shape over, and the formatting and writing are done by a background thread.
+ * <p>
+ * Output is only guaranteed to reach the channel after {@link #flush()} or {@link #close()}. A printer should be used
+ * by one thread at a time.
+ */
+public class BufferedPrinter extends AbstractPrinter<TwoDShape> implements Flushable, AutoCloseable {
+
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private static final String    LINE_SEPARATOR = System.lineSeparator();
+    private static final TwoDShape END            = new Circle(0, 0, 0);
+
+    private final WritableByteChannel channel;
+    private final boolean             closeChannel;
+    private final StringBuilder       text  = new StringBuilder(BUFFER_SIZE);
+    private final ByteBuffer          bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder      encoder = StandardCharsets.UTF_8.newEncoder();
+
+    private final BlockingQueue<TwoDShape> queue;
+    private final Thread                   writer;
+    private final Object                   lock = new Object(); //signalled whenever the background thread writes
+    private volatile IOException           failure;
+    private long                           submitted; //the number of shapes handed to the background thread
+    private long                           written;   //the number of those that it has written, guarded by lock
+    private boolean                        stopped;   //whether it has stopped, guarded by lock
+    private boolean                        closed;
+
+    /**
+     * Creates a printer that formats and writes on the calling thread.
+     *
+     * @param channel the channel to write to, which is closed when the printer is closed
+     */
+    public BufferedPrinter(WritableByteChannel channel) {
+        this(channel, 0, true);
+    }
+
+    /**
+     * Creates a printer that formats and writes on a background thread, which takes shapes from a queue of the
+     * specified capacity. {@link #print} blocks while the queue is full.
+     *
+     * @param channel       the channel to write to, which is closed when the printer is closed
+     * @param queueCapacity the number of shapes that can wait to be written
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public BufferedPrinter(WritableByteChannel channel, int queueCapacity) {
+        this(channel, queueCapacity, true);
+        if (queueCapacity <= 0)
+            throw new IllegalArgumentException("The capacity of the queue must be positive.");
+    }
+
+    private BufferedPrinter(WritableByteChannel channel, int queueCapacity, boolean closeChannel) {
+        this.channel = channel;
+        this.closeChannel = closeChannel;
+        if (queueCapacity > 0) {
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.writer = new Thread(this::drain, "shape-printer");
+            this.writer.setDaemon(true);
+            this.writer.start();
+        }
+        else {
+            this.queue = null;
+            this.writer = null;
+        }
+    }
+
+    /**
+     * Returns a printer to the standard output, which writes to the file descriptor directly rather than through
+     * <code>System.out</code>. Closing the printer flushes it, but leaves the standard output open.
+     *
+     * @param queueCapacity the capacity of the queue of a background thread, or <code>0</code> to format and write on
+     *                      the calling thread
+     * @return the printer
+     */
+    public static BufferedPrinter toStandardOutput(int queueCapacity) {
+        return new BufferedPrinter(Channels.newChannel(new FileOutputStream(FileDescriptor.out)), queueCapacity, false);
+    }
+
+    /**
+     * @return a printer that replaces the contents of the specified file
+     * @throws IOException if the file cannot be opened for writing
+     */
+    public static BufferedPrinter toFile(Path file) throws IOException {
+        return new BufferedPrinter(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    @Override
+    void print(TwoDShape s) {
+        if (closed)
+            throw new IllegalStateException("The printer is closed.");
+        IOException f = failure;
+        if (f != null)
+            throw new UncheckedIOException(f);
+        if (queue == null) {
+            append(s);
+            return;
+        }
+        try {
+            queue.put(s);
+            submitted++;
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to print a shape.", e);
+        }
+    }
+
+    /**
+     * Formats the specified shape into the text buffer, and writes the buffer out once it is full.
+     */
+    private void append(TwoDShape s) {
+        format(s, text);
+        text.append(LINE_SEPARATOR);
+        if (text.length() >= BUFFER_SIZE) {
+            try {
+                writeText();
+            }
+            catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Appends the same text as <code>s.toString()</code> to the specified builder.
+     */
+    static void format(TwoDShape s, StringBuilder sb) {
+        if (s instanceof Triangle || s instanceof Quadrilateral) {
+            List<? extends Point> vertices = ((Positionable) s).getPosition();
+            sb.append(s instanceof Triangle ? "Triangle[" : "Quadrilateral[");
+            for (int i = 0; i < vertices.size(); i++) {
+                Point p = vertices.get(i);
+                if (i > 0)
+                    sb.append(", ");
+                sb.append('(').append(p.x()).append(", ").append(p.y()).append(')');
+            }
+            sb.append(']');
+        }
+        else if (s instanceof Circle) {
+            Point center = ((Circle) s).getPosition().get(0);
+            sb.append("Circle[center: ").append(center.x()).append(", ").append(center.y())
+              .append("; radius: ").append(((Circle) s).getRadius()).append(']');
+        }
+        else
+            sb.append(s);
+    }
+
+    /**
+     * Encodes the text buffer into the byte buffer, writing the byte buffer to the channel whenever it fills up.
+     */
+    private void writeText() throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, true);
+            if (result.isOverflow()) {
+                writeBytes();
+                continue;
+            }
+            if (result.isError())
+                result.throwException();
+            break;
+        }
+        encoder.reset();
+        text.setLength(0);
+        writeBytes();
+    }
+
+    private void writeBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    /**
+     * The loop of the background thread: it takes every shape waiting in the queue at once, formats them, and writes
+     * them out, until it meets the end marker queued by {@link #close()}. If a write fails or the thread is
+     * interrupted, the thread records the failure and stops, and the shapes still queued are never written.
+     */
+    private void drain() {
+        List<TwoDShape> batch = new ArrayList<>();
+        long formatted = 0;
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                for (TwoDShape s : batch) {
+                    if (s == END) {
+                        writeText();
+                        written(formatted);
+                        return;
+                    }
+                    format(s, text);
+                    text.append(LINE_SEPARATOR);
+                    formatted++;
+                }
+                batch.clear();
+                if (text.length() >= BUFFER_SIZE || queue.isEmpty()) {
+                    writeText();
+                    written(formatted);
+                }
+            }
+        }
+        catch(IOException e) {
+            failure = e;
+            queue.clear();
+        }
+        catch(InterruptedException e) {
+            failure = new InterruptedIOException("The background thread of the printer was interrupted.");
+            queue.clear();
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            synchronized (lock) {
+                stopped = true;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void written(long formatted) {
+        synchronized (lock) {
+            written = formatted;
+            lock.notifyAll();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        IOException e = failure;
+        if (e != null)
+            throw e;
+    }
+
+    private static InterruptedIOException interrupted(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        InterruptedIOException ioe = new InterruptedIOException("Interrupted while waiting for the printer.");
+        ioe.initCause(e);
+        return ioe;
+    }
+
+    /**
+     * Writes out everything printed so far. With a background thread, this waits until the thread has written out
+     * every shape queued before the call.
+     *
+     * @throws IOException if a shape could not be written, or the background thread stopped before writing them all
+     */
+    @Override
+    public void flush() throws IOException {
+        if (queue == null) {
+            writeText();
+            return;
+        }
+        synchronized (lock) {
+            try {
+                while (written < submitted && !stopped) {
+                    lock.wait();
+                }
+            }
+            catch(InterruptedException e) {
+                throw interrupted(e);
+            }
+            checkFailure();
+            if (written < submitted)
+                throw new IOException("The background thread of the printer stopped before writing every shape.");
+        }
+    }
+
+    /**
+     * Writes out everything printed so far, stops the background thread if there is one, and closes the channel.
+     *
+     * @throws IOException if a shape could not be written, or the channel could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            if (queue == null)
+                writeText();
+            else {
+                try {
+                    if (writer.isAlive())
+                        queue.put(END);
+                    writer.join();
+                }
+                catch(InterruptedException e) {
+                    throw interrupted(e);
+                }
+                checkFailure();
+            }
+        }
+        finally {
+            if (closeChannel)
+                channel.close();
+        }
+    }
+}
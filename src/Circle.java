@@ -3,12 +3,24 @@ import java.util.List;
 
 public class Circle implements TwoDShape, Positionable {
 
-    private TwoDPoint center;
-    private double    radius;
+    private static final MetricsRegistry.Timer SET_POSITION = MetricsRegistry.timer("circle.setPosition");
+    private static final MetricsRegistry.Timer IS_MEMBER    = MetricsRegistry.timer("circle.isMember");
+    private static final MetricsRegistry.Counter AREA       = MetricsRegistry.counter("circle.area");
+
+    private TwoDPoint   center;
+    private double      radius;
+    private BoundingBox bounds; //derived from the center whenever the position is set
 
     public Circle(double x, double y, double r) {
         this.center = new TwoDPoint(x, y);
         this.radius = r;
+        this.bounds = bounds(center, r);
+    }
+
+    private static BoundingBox bounds(Point center, double r) {
+        //a negative radius makes an invalid circle, whose box is just its center
+        double extent = Math.max(r, 0);
+        return new BoundingBox(center.x() - extent, center.y() - extent, center.x() + extent, center.y() + extent);
     }
 
     /**
@@ -19,16 +31,20 @@ public class Circle implements TwoDShape, Positionable {
      */
     @Override
     public void setPosition(List<? extends Point> points) {
+        long start = MetricsRegistry.start();
+        long allocated = MetricsRegistry.allocated();
         try {
             if (!(points.get(0) instanceof TwoDPoint))
                 throw new IllegalArgumentException("The input does not consist of TwoDPoint instances.");
             else {
                 center = (TwoDPoint) points.get(0);
+                bounds = bounds(center, radius);
             }
         }
         catch(IllegalArgumentException e) {
             System.out.println(e.getMessage());
         }
+        SET_POSITION.stop(start, allocated);
     }
 
     /**
@@ -39,6 +55,13 @@ public class Circle implements TwoDShape, Positionable {
         return Collections.singletonList(center);
     }
 
+    /**
+     * @return an immutable copy of this circle, which may be shared between threads
+     */
+    public CircleSnapshot snapshot() {
+        return new CircleSnapshot(center, radius);
+    }
+
     /**
      * @return the number of sides of this circle, which is always set to positive infinity
      */
@@ -57,13 +80,18 @@ public class Circle implements TwoDShape, Positionable {
      */
     @Override
     public boolean isMember(List<? extends Point> centers) {
-        return centers.size() == 1 && radius > 0;
+        long start = MetricsRegistry.start();
+        long allocated = MetricsRegistry.allocated();
+        boolean member = centers.size() == 1 && radius > 0;
+        IS_MEMBER.stop(start, allocated);
+        return member;
     }
 
     /**
      * @return the area of this circle
      */
     public double area() {
+        AREA.increment();
         return Math.PI * Math.pow(radius, 2);
     }
 
@@ -78,8 +106,34 @@ public class Circle implements TwoDShape, Positionable {
         return radius;
     }
 
+    /**
+     * @return the square that circumscribes this circle
+     */
+    @Override
+    public BoundingBox boundingBox() {
+        return bounds;
+    }
+
+    /**
+     * @return <code>true</code> if this circle contains the point (x, y), or has it on its boundary
+     */
+    @Override
+    public boolean contains(double x, double y) {
+        double dx = x - center.x();
+        double dy = y - center.y();
+        double r = Math.max(radius, 0);
+        return dx * dx + dy * dy <= r * r;
+    }
+
     @Override
     public String toString() {
-        return "Circle[center: " + center.coordinates()[0] + ", " + center.coordinates()[1] + "; radius: " + radius + "]";
+        return toString(center, radius);
+    }
+
+    /**
+     * @return the specified center and radius, formatted as by {@link #toString()}
+     */
+    static String toString(Point center, double radius) {
+        return "Circle[center: " + center.x() + ", " + center.y() + "; radius: " + radius + "]";
     }
 }
@@ -0,0 +1,17 @@
+/**
+ * A circle read through its center and radius, whatever holds them: an immutable {@link CircleSnapshot}, or a view of a
+ * circle of a {@link ShapeStore}, a {@link ShapeFile} or an {@link OffHeapShapeStore}. Code that takes any circle,
+ * such as {@link ShapeFile#write(java.nio.file.Path, Iterable)} and {@link Intersections}, reads it through this
+ * interface rather than through its class, and a {@link Circle} through its own getters.
+ * <p>
+ * Like a {@link Circle}, a circle read this way may have a radius that is not positive, in which case it is not a valid
+ * circle.
+ */
+interface CircleShape extends TwoDShape {
+
+    double centerX();
+
+    double centerY();
+
+    double radius();
+}
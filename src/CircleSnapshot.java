@@ -0,0 +1,134 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable circle, as documented by {@link ShapeSnapshot}. Like a {@link Circle}, a snapshot may have a radius
+ * that is not positive, in which case it is not a valid circle. Two snapshots are equal if their centers and radii are.
+ */
+public final class CircleSnapshot implements ShapeSnapshot, CircleShape {
+
+    private final TwoDPoint   center;
+    private final double      radius;
+    private final double      area;
+    private final BoundingBox bounds;
+
+    public CircleSnapshot(TwoDPoint center, double radius) {
+        this.center = center;
+        this.radius = radius;
+        this.area = Math.PI * Math.pow(radius, 2);
+        double extent = Math.max(radius, 0);
+        this.bounds = new BoundingBox(center.x() - extent, center.y() - extent, center.x() + extent,
+                                      center.y() + extent);
+    }
+
+    public TwoDPoint center() {
+        return center;
+    }
+
+    @Override
+    public double centerX() {
+        return center.x();
+    }
+
+    @Override
+    public double centerY() {
+        return center.y();
+    }
+
+    @Override
+    public double radius() {
+        return radius;
+    }
+
+    /**
+     * @return the center of this circle as a singleton list
+     */
+    @Override
+    public List<TwoDPoint> vertices() {
+        return Collections.singletonList(center);
+    }
+
+    /**
+     * @return a circle of the same radius, centered at the first of the specified points
+     * @throws IllegalArgumentException if the points are not {@link TwoDPoint} instances
+     */
+    @Override
+    public CircleSnapshot withPosition(List<? extends Point> points) {
+        if (!(points.get(0) instanceof TwoDPoint))
+            throw new IllegalArgumentException("The input does not consist of TwoDPoint instances.");
+        return new CircleSnapshot((TwoDPoint) points.get(0), radius);
+    }
+
+    /**
+     * @return a circle with the same center and the specified radius
+     */
+    public CircleSnapshot withRadius(double radius) {
+        return new CircleSnapshot(center, radius);
+    }
+
+    /**
+     * @return this snapshot, since circles are not snapped
+     */
+    @Override
+    public CircleSnapshot snapped() {
+        return this;
+    }
+
+    /**
+     * @return a new mutable circle with the center and radius of this snapshot
+     */
+    public Circle toCircle() {
+        return new Circle(center.x(), center.y(), radius);
+    }
+
+    @Override
+    public int numSides() {
+        return (int) Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public boolean isMember(List<? extends Point> centers) {
+        return centers.size() == 1 && radius > 0;
+    }
+
+    @Override
+    public double area() {
+        return area;
+    }
+
+    @Override
+    public double perimeter() {
+        return 2 * Math.PI * radius;
+    }
+
+    @Override
+    public BoundingBox boundingBox() {
+        return bounds;
+    }
+
+    @Override
+    public boolean contains(double x, double y) {
+        double dx = x - center.x();
+        double dy = y - center.y();
+        double r = Math.max(radius, 0);
+        return dx * dx + dy * dy <= r * r;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof CircleSnapshot))
+            return false;
+        CircleSnapshot other = (CircleSnapshot) o;
+        return center.equals(other.center) && Double.compare(radius, other.radius) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * center.hashCode() + Double.hashCode(radius);
+    }
+
+    @Override
+    public String toString() {
+        return Circle.toString(center, radius);
+    }
+}
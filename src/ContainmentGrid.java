@@ -0,0 +1,254 @@
+import java.util.List;
+
+/**
+ * Classifies points against a fixed list of two-dimensional shapes: for each point, it finds the first shape of the
+ * list that contains it, as by {@link TwoDShape#contains(double, double)}. The bounding boxes of the shapes are
+ * bucketed into a uniform grid over the region they cover, kept in compressed form: the shapes of every cell in one
+ * array, cell after cell, and the start of each cell's run in another. Finding the candidates for a point thus takes a
+ * multiplication per axis and no hashing, and each cell lists its shapes in the order of the list, so the first shape
+ * that contains the point ends the search. The vertices of triangles and quadrilaterals, and the centers and radii of
+ * circles, are also copied into a primitive array, so that testing them needs neither a call through the interface
+ * nor a visit to the shape.
+ * <p>
+ * Cells are about the average size of the shapes, but never so small that the grid has more than about two cells per
+ * shape. A grid keeps the positions the shapes had when it was built, so it must be rebuilt after any of them moves.
+ * Any number of threads may query a grid at once, and batches of at least {@value #PARALLEL_THRESHOLD} points are
+ * classified in blocks of {@value Blocks#BLOCK_SIZE} on the common fork-join pool.
+ *
+ * @param <T> the type of the shapes
+ */
+public class ContainmentGrid<T extends TwoDShape> {
+
+    static final int PARALLEL_THRESHOLD = 1 << 12;
+
+    private static final byte OTHER         = 0;
+    private static final byte TRIANGLE      = 1;
+    private static final byte QUADRILATERAL = 2;
+    private static final byte CIRCLE        = 3;
+
+    private final Object[] shapes;
+
+    //the kind of each shape, and for triangles, quadrilaterals and circles a copy of their vertices as x-y pairs, or of
+    //their center and radius, at GEOMETRY_STRIDE * i; other shapes are asked through contains(x, y)
+    private static final int GEOMETRY_STRIDE = 8;
+    private final byte[]   kinds;
+    private final double[] geometry;
+
+
+    //the region covered by the grid, and the size of its cells
+    private final double originX;
+    private final double originY;
+    private final double endX;
+    private final double endY;
+    private final double inverseCellSize;
+    private final int    columns;
+    private final int    rows;
+
+    //the shapes of cell c are cellShapes[cellStart[c]] to cellShapes[cellStart[c + 1] - 1]; their boxes are copied
+    //alongside, so that the candidates of a cell are tested without reading the shapes or jumping around memory
+    private final int[]    cellStart;
+    private final int[]    cellShapes;
+    private final double[] cellMinX;
+    private final double[] cellMinY;
+    private final double[] cellMaxX;
+    private final double[] cellMaxY;
+
+    /**
+     * Builds a grid over the specified shapes.
+     */
+    public ContainmentGrid(List<? extends T> shapes) {
+        int n = shapes.size();
+        this.shapes = shapes.toArray();
+        double[] minX = new double[n];
+        double[] minY = new double[n];
+        double[] maxX = new double[n];
+        double[] maxY = new double[n];
+        kinds = new byte[n];
+        geometry = new double[GEOMETRY_STRIDE * n];
+        double left = Double.POSITIVE_INFINITY, bottom = Double.POSITIVE_INFINITY;
+        double right = Double.NEGATIVE_INFINITY, top = Double.NEGATIVE_INFINITY;
+        double extent = 0;
+        for (int i = 0; i < n; i++) {
+            BoundingBox box = ((TwoDShape) this.shapes[i]).boundingBox();
+            minX[i] = box.minX();
+            minY[i] = box.minY();
+            maxX[i] = box.maxX();
+            maxY[i] = box.maxY();
+            left = Math.min(left, minX[i]);
+            bottom = Math.min(bottom, minY[i]);
+            right = Math.max(right, maxX[i]);
+            top = Math.max(top, maxY[i]);
+            extent += Math.max(maxX[i] - minX[i], maxY[i] - minY[i]);
+            copyGeometry(i);
+        }
+        if (n == 0) {
+            left = bottom = right = top = 0;
+        }
+        double width = right - left;
+        double height = top - bottom;
+        double cellSize = Math.max(extent / Math.max(n, 1), Math.sqrt(width * height / (2.0 * n + 1)));
+        cellSize = Math.max(cellSize, Math.max(width, height) / (2.0 * n + 1));
+        if (!(cellSize > 0))
+            cellSize = 1;
+        originX = left;
+        originY = bottom;
+        endX = right;
+        endY = top;
+        inverseCellSize = 1 / cellSize;
+        columns = (int) Math.min(2L * n + 1, (long) (width * inverseCellSize) + 1);
+        rows = (int) Math.min(2L * n + 1, (long) (height * inverseCellSize) + 1);
+
+        //count the shapes of each cell, turn the counts into starts, then fill the cells in the order of the list
+        cellStart = new int[columns * rows + 1];
+        for (int i = 0; i < n; i++) {
+            for (int row = row(minY[i]); row <= row(maxY[i]); row++) {
+                for (int column = column(minX[i]); column <= column(maxX[i]); column++) {
+                    cellStart[row * columns + column + 1]++;
+                }
+            }
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int entries = cellStart[columns * rows];
+        cellShapes = new int[entries];
+        cellMinX = new double[entries];
+        cellMinY = new double[entries];
+        cellMaxX = new double[entries];
+        cellMaxY = new double[entries];
+        int[] next = new int[columns * rows];
+        System.arraycopy(cellStart, 0, next, 0, next.length);
+        for (int i = 0; i < n; i++) {
+            for (int row = row(minY[i]); row <= row(maxY[i]); row++) {
+                for (int column = column(minX[i]); column <= column(maxX[i]); column++) {
+                    int k = next[row * columns + column]++;
+                    cellShapes[k] = i;
+                    cellMinX[k] = minX[i];
+                    cellMinY[k] = minY[i];
+                    cellMaxX[k] = maxX[i];
+                    cellMaxY[k] = maxY[i];
+                }
+            }
+        }
+    }
+
+    private void copyGeometry(int i) {
+        Object shape = shapes[i];
+        int o = GEOMETRY_STRIDE * i;
+        if (shape instanceof Circle) {
+            Point center = ((Circle) shape).getPosition().get(0);
+            kinds[i] = CIRCLE;
+            geometry[o] = center.x();
+            geometry[o + 1] = center.y();
+            geometry[o + 2] = Math.max(((Circle) shape).getRadius(), 0);
+        }
+        else if (shape instanceof Triangle || shape instanceof Quadrilateral) {
+            List<? extends Point> vertices = ((Positionable) shape).getPosition();
+            kinds[i] = shape instanceof Triangle ? TRIANGLE : QUADRILATERAL;
+            for (int k = 0; k < vertices.size(); k++) {
+                geometry[o + 2 * k] = vertices.get(k).x();
+                geometry[o + 2 * k + 1] = vertices.get(k).y();
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the i-th shape contains the point (x, y), as by its own <code>contains</code>
+     */
+    private boolean contains(int i, double x, double y) {
+        double[] g = geometry;
+        int o = GEOMETRY_STRIDE * i;
+        switch (kinds[i]) {
+            case TRIANGLE:
+                return Geometry.triangleContains(g[o], g[o + 1], g[o + 2], g[o + 3], g[o + 4], g[o + 5], x, y);
+            case QUADRILATERAL:
+                return Geometry.quadrilateralContains(g[o], g[o + 1], g[o + 2], g[o + 3], g[o + 4], g[o + 5],
+                                                      g[o + 6], g[o + 7], x, y);
+            case CIRCLE:
+                double dx = x - g[o];
+                double dy = y - g[o + 1];
+                return dx * dx + dy * dy <= g[o + 2] * g[o + 2];
+            default:
+                return ((TwoDShape) shapes[i]).contains(x, y);
+        }
+    }
+
+    private int column(double x) {
+        return Math.max(0, Math.min(columns - 1, (int) ((x - originX) * inverseCellSize)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) ((y - originY) * inverseCellSize)));
+    }
+
+    /**
+     * @return the number of shapes in this grid
+     */
+    public int size() {
+        return shapes.length;
+    }
+
+    /**
+     * @return the index in the list of the first shape that contains the point (x, y), or <code>-1</code> if none
+     * does
+     */
+    public int indexOf(double x, double y) {
+        //also false for a coordinate that is not a number
+        if (!(x >= originX && x <= endX && y >= originY && y <= endY))
+            return -1;
+        int cell = row(y) * columns + column(x);
+        for (int k = cellStart[cell], end = cellStart[cell + 1]; k < end; k++) {
+            if (x >= cellMinX[k] && x <= cellMaxX[k] && y >= cellMinY[k] && y <= cellMaxY[k]
+                    && contains(cellShapes[k], x, y))
+                return cellShapes[k];
+        }
+        return -1;
+    }
+
+    /**
+     * @return the first shape that contains the specified point, or <code>null</code> if none does
+     */
+    @SuppressWarnings("unchecked")
+    public T find(Point p) {
+        int i = indexOf(p.x(), p.y());
+        return i < 0 ? null : (T) shapes[i];
+    }
+
+    /**
+     * Classifies the points (xs[i], ys[i]) for i in <code>[0, n)</code>, in parallel if there are many.
+     *
+     * @param out receives, for each point, the index of the first shape that contains it, or <code>-1</code>
+     * @return the number of points that are contained in some shape
+     */
+    public int classify(double[] xs, double[] ys, int n, int[] out) {
+        return Blocks.sum(n, PARALLEL_THRESHOLD, (from, to) -> classify(xs, ys, from, to, out));
+    }
+
+    private int classify(double[] xs, double[] ys, int from, int to, int[] out) {
+        int contained = 0;
+        for (int i = from; i < to; i++) {
+            if ((out[i] = indexOf(xs[i], ys[i])) >= 0)
+                contained++;
+        }
+        return contained;
+    }
+
+    /**
+     * Classifies the specified points, in parallel if there are many.
+     *
+     * @return for each point, the index of the first shape that contains it, or <code>-1</code>
+     */
+    public int[] classify(List<? extends Point> points) {
+        int n = points.size();
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            Point p = points.get(i);
+            xs[i] = p.x();
+            ys[i] = p.y();
+        }
+        int[] out = new int[n];
+        classify(xs, ys, n, out);
+        return out;
+    }
+}
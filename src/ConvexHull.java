@@ -0,0 +1,207 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes the convex hull of a set of points given as primitive coordinate arrays, with Andrew's monotone chain
+ * algorithm. The hull is returned in the order documented by {@link Triangle#getPosition}: clockwise, starting with the
+ * vertex with the least x-value, or the one with the lower y-value of two such vertices. Points that lie on an edge of
+ * the hull, between two of its vertices, are not vertices of the hull.
+ * <p>
+ * Before sorting, the points strictly inside the quadrilateral spanned by the points with the least and greatest x-
+ * and y-values are dropped, as none of them can be on the hull; for a uniform cloud of points this leaves a small
+ * fraction of the input to sort. Inputs of more than {@value #PARALLEL_THRESHOLD} points are split in halves on the
+ * common fork-join pool, and the hulls of the halves are merged by taking the hull of their vertices together.
+ */
+final class ConvexHull {
+
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private ConvexHull() { }
+
+    /**
+     * @return the vertices of the convex hull of the specified points, as x-y pairs, e.g. for
+     * {@link TwoDPoint#ofDoubles}; empty if there are no points
+     */
+    static double[] hull(double[] xs, double[] ys, int n) {
+        if (n <= PARALLEL_THRESHOLD)
+            return hull(xs, ys, 0, n);
+        return ForkJoinPool.commonPool().invoke(new Hull(xs, ys, 0, n));
+    }
+
+    /**
+     * @return the vertices of the convex hull of the specified points
+     */
+    static List<TwoDPoint> hull(Collection<? extends Point> points) {
+        double[] xs = new double[points.size()];
+        double[] ys = new double[points.size()];
+        int n = 0;
+        for (Point p : points) {
+            xs[n] = p.x();
+            ys[n++] = p.y();
+        }
+        return TwoDPoint.ofDoubles(hull(xs, ys, n));
+    }
+
+    private static final class Hull extends RecursiveTask<double[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] xs;
+        private final double[] ys;
+        private final int      from;
+        private final int      to;
+
+        Hull(double[] xs, double[] ys, int from, int to) {
+            this.xs = xs;
+            this.ys = ys;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (to - from <= PARALLEL_THRESHOLD)
+                return hull(xs, ys, from, to);
+            int mid = (from + to) >>> 1;
+            Hull left = new Hull(xs, ys, from, mid);
+            left.fork();
+            double[] right = new Hull(xs, ys, mid, to).compute();
+            return merge(left.join(), right);
+        }
+    }
+
+    /**
+     * @return the hull of the vertices of two hulls, each given as x-y pairs
+     */
+    private static double[] merge(double[] a, double[] b) {
+        int n = (a.length + b.length) / 2;
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        int k = 0;
+        for (double[] hull : new double[][] {a, b}) {
+            for (int i = 0; i < hull.length; i += 2) {
+                xs[k] = hull[i];
+                ys[k++] = hull[i + 1];
+            }
+        }
+        return hull(xs, ys, 0, n);
+    }
+
+    /**
+     * @return the hull of the points <code>[from, to)</code>, as x-y pairs
+     */
+    private static double[] hull(double[] xs, double[] ys, int from, int to) {
+        if (to <= from)
+            return new double[0];
+
+        //the points with the least and greatest x and y, which make a clockwise quadrilateral inside the hull
+        int left = from, top = from, right = from, bottom = from;
+        for (int i = from + 1; i < to; i++) {
+            if (xs[i] < xs[left])
+                left = i;
+            if (xs[i] > xs[right])
+                right = i;
+            if (ys[i] < ys[bottom])
+                bottom = i;
+            if (ys[i] > ys[top])
+                top = i;
+        }
+        int[] corners = {left, top, right, bottom};
+        long[] keys = new long[to - from];
+        int[] values = new int[to - from];
+        int m = 0;
+        for (int i = from; i < to; i++) {
+            if (!strictlyInside(xs, ys, corners, xs[i], ys[i])) {
+                keys[m] = KeySort.sortable(xs[i]);
+                values[m++] = i;
+            }
+        }
+        if (m < keys.length) {
+            keys = Arrays.copyOf(keys, m);
+            values = Arrays.copyOf(values, m);
+        }
+        KeySort.sort(keys, values);
+
+        //of the points with the same x, only those with the least and greatest y can be vertices: the others are on
+        //the vertical segment between them
+        double[] px = new double[m];
+        double[] py = new double[m];
+        int p = 0;
+        for (int i = 0; i < m; ) {
+            int j = i;
+            int low = values[i], high = values[i];
+            while (j < m && xs[values[j]] == xs[values[i]]) {
+                if (ys[values[j]] < ys[low])
+                    low = values[j];
+                if (ys[values[j]] > ys[high])
+                    high = values[j];
+                j++;
+            }
+            px[p] = xs[low];
+            py[p++] = ys[low];
+            if (ys[high] != ys[low]) {
+                px[p] = xs[high];
+                py[p++] = ys[high];
+            }
+            i = j;
+        }
+        return chain(px, py, p);
+    }
+
+    /**
+     * @return <code>true</code> if the point is strictly inside the clockwise quadrilateral of the specified corners,
+     * and so not on the hull
+     */
+    private static boolean strictlyInside(double[] xs, double[] ys, int[] corners, double x, double y) {
+        for (int k = 0; k < 4; k++) {
+            int a = corners[k], b = corners[(k + 1) & 3];
+            if (Geometry.cross(xs[a], ys[a], xs[b], ys[b], x, y) >= 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Runs the monotone chain over points sorted on x, then y, with no two the same: the upper chain from left to
+     * right, then the lower chain back, each keeping only clockwise turns.
+     *
+     * @return the hull, as x-y pairs
+     */
+    private static double[] chain(double[] px, double[] py, int n) {
+        if (n <= 2) {
+            double[] hull = new double[2 * n];
+            for (int i = 0; i < n; i++) {
+                hull[2 * i] = px[i];
+                hull[2 * i + 1] = py[i];
+            }
+            return hull;
+        }
+        double[] hx = new double[2 * n];
+        double[] hy = new double[2 * n];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            while (k >= 2 && Geometry.cross(hx[k - 2], hy[k - 2], hx[k - 1], hy[k - 1], px[i], py[i]) >= 0) {
+                k--;
+            }
+            hx[k] = px[i];
+            hy[k++] = py[i];
+        }
+        for (int i = n - 2, upper = k + 1; i >= 0; i--) {
+            while (k >= upper && Geometry.cross(hx[k - 2], hy[k - 2], hx[k - 1], hy[k - 1], px[i], py[i]) >= 0) {
+                k--;
+            }
+            hx[k] = px[i];
+            hy[k++] = py[i];
+        }
+        //the lower chain ends where the upper chain starts
+        k--;
+        double[] hull = new double[2 * k];
+        for (int i = 0; i < k; i++) {
+            hull[2 * i] = hx[i];
+            hull[2 * i + 1] = hy[i];
+        }
+        return hull;
+    }
+}
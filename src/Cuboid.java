@@ -0,0 +1,114 @@
+import java.util.*;
+
+/**
+ * An axis-aligned cuboid, i.e. a box whose edges are parallel to the x-, y- and z-axes. Such a box is fixed by two of
+ * its corners that are opposite each other.
+ */
+public class Cuboid implements ThreeDShape, Positionable {
+
+    private ThreeDPoint       min;
+    private ThreeDPoint       max;
+    private ThreeDBoundingBox bounds; //the cuboid itself, kept as a box whenever the position is set
+
+    public Cuboid(List<ThreeDPoint> corners) {
+        try {
+            if (isMember(corners))
+                update(corners.get(0), corners.get(1));
+            else
+                throw new IllegalArgumentException("Invalid inputs for a cuboid.");
+        }
+        catch(IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Sets the position of this cuboid so that the first two elements in the specified list of points are opposite
+     * corners of it. If the input list has more than two elements, the subsequent elements are ignored.
+     *
+     * @param points the specified list of points.
+     */
+    @Override
+    public void setPosition(List<? extends Point> points) {
+        try {
+            if (!isMember(points))
+                throw new IllegalArgumentException("Invalid inputs for a cuboid.");
+            update((ThreeDPoint) points.get(0), (ThreeDPoint) points.get(1));
+        }
+        catch(IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private void update(ThreeDPoint a, ThreeDPoint b) {
+        min = new ThreeDPoint(Math.min(a.x(), b.x()), Math.min(a.y(), b.y()), Math.min(a.z(), b.z()));
+        max = new ThreeDPoint(Math.max(a.x(), b.x()), Math.max(a.y(), b.y()), Math.max(a.z(), b.z()));
+        bounds = new ThreeDBoundingBox(min.x(), min.y(), min.z(), max.x(), max.y(), max.z());
+    }
+
+    /**
+     * Retrieve the position of an object as a list of points: the corner of this cuboid with the least x-, y- and
+     * z-values, then the corner with the greatest.
+     *
+     * @return the retrieved list of points.
+     */
+    @Override
+    public List<? extends Point> getPosition() {
+        return Collections.unmodifiableList(Arrays.asList(min, max));
+    }
+
+    /**
+     * @return the number of faces of this cuboid, which is always set to six
+     */
+    @Override
+    public int numFaces() {
+        return 6;
+    }
+
+    /**
+     * Checks whether or not a list of vertices gives two opposite corners of a valid cuboid.
+     *
+     * @param vertices the list of vertices to check against, where each vertex is a <code>Point</code> type.
+     * @return <code>true</code> if the first two of <code>vertices</code> are {@link ThreeDPoint}s that differ in each
+     * of their coordinates, and <code>false</code> otherwise, as a cuboid whose corners share a coordinate is flat.
+     */
+    @Override
+    public boolean isMember(List<? extends Point> vertices) {
+        if (vertices == null || vertices.size() < 2)
+            return false;
+        Point a = vertices.get(0), b = vertices.get(1);
+        if (!(a instanceof ThreeDPoint) || !(b instanceof ThreeDPoint))
+            return false;
+        return a.x() != b.x() && a.y() != b.y() && a.z() != b.z();
+    }
+
+    /**
+     * @return the volume of this cuboid
+     */
+    @Override
+    public double volume() {
+        return (max.x() - min.x()) * (max.y() - min.y()) * (max.z() - min.z());
+    }
+
+    /**
+     * @return the total area of the six faces of this cuboid
+     */
+    @Override
+    public double surfaceArea() {
+        double a = max.x() - min.x(), b = max.y() - min.y(), c = max.z() - min.z();
+        return 2 * (a * b + b * c + c * a);
+    }
+
+    /**
+     * @return this cuboid, as a box
+     */
+    @Override
+    public ThreeDBoundingBox boundingBox() {
+        return bounds;
+    }
+
+    public String toString() {
+        return "Cuboid[(" + min.x() + ", " + min.y() + ", " + min.z() + "), (" + max.x() + ", " + max.y() + ", "
+               + max.z() + ")]";
+    }
+}
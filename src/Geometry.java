@@ -0,0 +1,264 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Primitive geometry routines shared by the shape classes and the bulk engines. Apart from the list-based helpers used
+ * when a shape's position is set, every method here works directly on <code>double</code> coordinates, so none of them
+ * needs to build {@link TwoDPoint} objects or temporary lists.
+ */
+final class Geometry {
+
+    private Geometry() { }
+
+    /**
+     * @return twice the signed area of the triangle (a, b, c). The result is positive when the three points are taken
+     * in a counter-clockwise manner, negative when clockwise, and zero when they are in a straight line.
+     */
+    static double cross(double ax, double ay, double bx, double by, double cx, double cy) {
+        return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+    }
+
+    /**
+     * @return the area of the triangle (a, b, c), computed with the shoelace formula
+     */
+    static double triangleArea(double ax, double ay, double bx, double by, double cx, double cy) {
+        return Math.abs(cross(ax, ay, bx, by, cx, cy)) / 2;
+    }
+
+    /**
+     * @return the perimeter of the triangle (a, b, c)
+     */
+    static double trianglePerimeter(double ax, double ay, double bx, double by, double cx, double cy) {
+        return Math.hypot(ax - bx, ay - by) + Math.hypot(bx - cx, by - cy) + Math.hypot(cx - ax, cy - ay);
+    }
+
+    /**
+     * @return the area of the quadrilateral whose vertices are given in clockwise (or counter-clockwise) order
+     */
+    static double quadrilateralArea(double x0, double y0, double x1, double y1,
+                                    double x2, double y2, double x3, double y3) {
+        return Math.abs((x0 * y1 - x1 * y0) + (x1 * y2 - x2 * y1) + (x2 * y3 - x3 * y2) + (x3 * y0 - x0 * y3)) / 2;
+    }
+
+    /**
+     * @return the perimeter of the quadrilateral whose vertices are given in clockwise (or counter-clockwise) order
+     */
+    static double quadrilateralPerimeter(double x0, double y0, double x1, double y1,
+                                         double x2, double y2, double x3, double y3) {
+        return Math.hypot(x0 - x1, y0 - y1) + Math.hypot(x1 - x2, y1 - y2)
+                + Math.hypot(x2 - x3, y2 - y3) + Math.hypot(x3 - x0, y3 - y0);
+    }
+
+    /**
+     * @return <code>true</code> if the triangle (a, b, c) contains the point p, or has it on its boundary, that is, if
+     * p is not strictly to the left of one edge and strictly to the right of another. The vertices may be in either
+     * order.
+     */
+    static boolean triangleContains(double ax, double ay, double bx, double by, double cx, double cy,
+                                    double px, double py) {
+        double ab = cross(ax, ay, bx, by, px, py);
+        double bc = cross(bx, by, cx, cy, px, py);
+        double ca = cross(cx, cy, ax, ay, px, py);
+        return !((ab < 0 || bc < 0 || ca < 0) && (ab > 0 || bc > 0 || ca > 0));
+    }
+
+    /**
+     * @return <code>true</code> if the quadrilateral whose vertices are given in clockwise (or counter-clockwise)
+     * order contains the point p, or has it on its boundary. The quadrilateral is taken as the two triangles on
+     * either side of a diagonal that lies inside it, which also holds for a concave quadrilateral.
+     */
+    static boolean quadrilateralContains(double x0, double y0, double x1, double y1,
+                                         double x2, double y2, double x3, double y3, double px, double py) {
+        //the diagonal from 0 to 2 is inside the quadrilateral if 1 and 3 are on opposite sides of it
+        if ((cross(x0, y0, x2, y2, x1, y1) < 0) != (cross(x0, y0, x2, y2, x3, y3) < 0))
+            return triangleContains(x0, y0, x1, y1, x2, y2, px, py)
+                    || triangleContains(x0, y0, x2, y2, x3, y3, px, py);
+        return triangleContains(x1, y1, x2, y2, x3, y3, px, py)
+                || triangleContains(x1, y1, x3, y3, x0, y0, px, py);
+    }
+
+    /**
+     * @return six times the signed volume of the tetrahedron (a, b, c, d), i.e. the triple product of its edges from
+     * a. It is zero when the four points are in one plane.
+     */
+    static double tripleProduct(double ax, double ay, double az, double bx, double by, double bz,
+                                double cx, double cy, double cz, double dx, double dy, double dz) {
+        double ux = bx - ax, uy = by - ay, uz = bz - az;
+        double vx = cx - ax, vy = cy - ay, vz = cz - az;
+        double wx = dx - ax, wy = dy - ay, wz = dz - az;
+        return ux * (vy * wz - vz * wy) - uy * (vx * wz - vz * wx) + uz * (vx * wy - vy * wx);
+    }
+
+    /**
+     * @return the volume of the tetrahedron (a, b, c, d)
+     */
+    static double tetrahedronVolume(double ax, double ay, double az, double bx, double by, double bz,
+                                    double cx, double cy, double cz, double dx, double dy, double dz) {
+        return Math.abs(tripleProduct(ax, ay, az, bx, by, bz, cx, cy, cz, dx, dy, dz)) / 6;
+    }
+
+    /**
+     * @return the area of the triangle (a, b, c) in three-dimensional space, as half the length of the cross product
+     * of two of its edges
+     */
+    static double triangleArea(double ax, double ay, double az, double bx, double by, double bz,
+                               double cx, double cy, double cz) {
+        double ux = bx - ax, uy = by - ay, uz = bz - az;
+        double vx = cx - ax, vy = cy - ay, vz = cz - az;
+        double nx = uy * vz - uz * vy, ny = uz * vx - ux * vz, nz = ux * vy - uy * vx;
+        return Math.sqrt(nx * nx + ny * ny + nz * nz) / 2;
+    }
+
+    /**
+     * @return the total area of the four faces of the tetrahedron (a, b, c, d)
+     */
+    static double tetrahedronSurfaceArea(double ax, double ay, double az, double bx, double by, double bz,
+                                         double cx, double cy, double cz, double dx, double dy, double dz) {
+        return triangleArea(ax, ay, az, bx, by, bz, cx, cy, cz) + triangleArea(ax, ay, az, bx, by, bz, dx, dy, dz)
+                + triangleArea(ax, ay, az, cx, cy, cz, dx, dy, dz) + triangleArea(bx, by, bz, cx, cy, cz, dx, dy, dz);
+    }
+
+    /**
+     * Checks the same rule as {@link Tetrahedron#isMember}: the four vertices must not be in one plane.
+     */
+    static boolean isTetrahedron(double ax, double ay, double az, double bx, double by, double bz,
+                                 double cx, double cy, double cz, double dx, double dy, double dz) {
+        return tripleProduct(ax, ay, az, bx, by, bz, cx, cy, cz, dx, dy, dz) != 0;
+    }
+
+    /**
+     * Reorders, in place, the first <code>n</code> entries of <code>xs</code> and <code>ys</code> into the order
+     * documented by {@link Triangle#getPosition} and {@link Quadrilateral#getPosition}: clockwise around the centroid,
+     * starting with the vertex with the least x-value, or the lower y-value if two vertices share the least x-value.
+     *
+     * @param xs the x-coordinates of the vertices
+     * @param ys the y-coordinates of the vertices
+     * @param n  the number of vertices
+     */
+    static void clockwise(double[] xs, double[] ys, int n) {
+        double cx = 0;
+        double cy = 0;
+        for (int i = 0; i < n; i++) {
+            cx += xs[i];
+            cy += ys[i];
+        }
+        cx /= n;
+        cy /= n;
+
+        //insertion sort on the polar angle measured from the positive y-axis, which increases in the clockwise direction
+        for (int i = 1; i < n; i++) {
+            double x = xs[i];
+            double y = ys[i];
+            double angle = Math.atan2(x - cx, y - cy);
+            int j = i - 1;
+            while (j >= 0 && Math.atan2(xs[j] - cx, ys[j] - cy) > angle) {
+                xs[j + 1] = xs[j];
+                ys[j + 1] = ys[j];
+                j--;
+            }
+            xs[j + 1] = x;
+            ys[j + 1] = y;
+        }
+
+        int first = 0;
+        for (int i = 1; i < n; i++) {
+            if (xs[i] < xs[first] || (xs[i] == xs[first] && ys[i] < ys[first]))
+                first = i;
+        }
+        rotate(xs, n, first);
+        rotate(ys, n, first);
+    }
+
+    /**
+     * Has the same effect as {@link #clockwise(double[], double[], int)}, but skips the angular sort when the vertices
+     * already go clockwise around a convex polygon, which is what they usually still do after a small move such as
+     * snapping. The centroid is then inside the polygon, so the angular order is the given cyclic order, and only the
+     * starting vertex can change.
+     */
+    static void reorder(double[] xs, double[] ys, int n) {
+        for (int k = 0; k < n; k++) {
+            int b = (k + 1) % n;
+            int c = (k + 2) % n;
+            if (cross(xs[k], ys[k], xs[b], ys[b], xs[c], ys[c]) >= 0) {
+                clockwise(xs, ys, n);
+                return;
+            }
+        }
+        int first = 0;
+        for (int i = 1; i < n; i++) {
+            if (xs[i] < xs[first] || (xs[i] == xs[first] && ys[i] < ys[first]))
+                first = i;
+        }
+        rotate(xs, n, first);
+        rotate(ys, n, first);
+    }
+
+    /**
+     * Returns the first <code>n</code> points of the specified list in the same order as
+     * {@link #clockwise(double[], double[], int)}, without copying the point objects themselves.
+     *
+     * @param points the vertices of a shape
+     * @param n      the number of vertices
+     * @return a new list holding the same point instances, in clockwise order
+     */
+    static <P extends Point> List<P> clockwise(List<? extends P> points, int n) {
+        double cx = 0;
+        double cy = 0;
+        for (int i = 0; i < n; i++) {
+            cx += points.get(i).x();
+            cy += points.get(i).y();
+        }
+        cx /= n;
+        cy /= n;
+
+        List<P> ordered = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            P p = points.get(i);
+            double angle = Math.atan2(p.x() - cx, p.y() - cy);
+            int j = i;
+            while (j > 0 && Math.atan2(ordered.get(j - 1).x() - cx, ordered.get(j - 1).y() - cy) > angle)
+                j--;
+            ordered.add(j, p);
+        }
+
+        int first = 0;
+        for (int i = 1; i < n; i++) {
+            P p = ordered.get(i);
+            P least = ordered.get(first);
+            if (p.x() < least.x() || (p.x() == least.x() && p.y() < least.y()))
+                first = i;
+        }
+        Collections.rotate(ordered, -first);
+        return ordered;
+    }
+
+    /**
+     * @return the bounding box of the first <code>n</code> points of the specified list
+     */
+    static BoundingBox bounds(List<? extends Point> points, int n) {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            Point p = points.get(i);
+            minX = Math.min(minX, p.x());
+            minY = Math.min(minY, p.y());
+            maxX = Math.max(maxX, p.x());
+            maxY = Math.max(maxY, p.y());
+        }
+        return new BoundingBox(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Rotates the first <code>n</code> entries of <code>a</code> to the left by <code>k</code> positions.
+     */
+    private static void rotate(double[] a, int n, int k) {
+        for (int r = 0; r < k; r++) {
+            double head = a[0];
+            System.arraycopy(a, 1, a, 0, n - 1);
+            a[n - 1] = head;
+        }
+    }
+}
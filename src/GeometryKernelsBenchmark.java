@@ -0,0 +1,194 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the {@link GeometryKernels} against {@link Triangle}, {@link Quadrilateral} and {@link Circle} on random
+ * shapes, to within {@link GeometryKernels#TOLERANCE}, and compares the time of the kernels with that of the scalar
+ * per-shape code. Run with the number of shapes of each kind as an optional argument, e.g.
+ * <code>java GeometryKernelsBenchmark 1000000</code>.
+ */
+public class GeometryKernelsBenchmark {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        Random random = new Random(42);
+        ShapeStore store = new ShapeStore();
+        List<Triangle> triangles = new ArrayList<>(n);
+        List<Quadrilateral> quads = new ArrayList<>(n);
+        List<Circle> circles = new ArrayList<>(n);
+        while (triangles.size() < n) {
+            double[] xy = corners(random, 3);
+            if (!ShapeValidator.isMember(ShapeValidator.check(xy, 0, xy.length)))
+                continue;
+            Triangle t = new Triangle(TwoDPoint.ofDoubles(xy));
+            triangles.add(t);
+            store.add(t);
+        }
+        while (quads.size() < n) {
+            double[] xy = corners(random, 4);
+            if (!ShapeValidator.isMember(ShapeValidator.check(xy, 0, xy.length)))
+                continue;
+            Quadrilateral q = new Quadrilateral(TwoDPoint.ofDoubles(xy));
+            quads.add(q);
+            store.add(q);
+        }
+        for (int i = 0; i < n; i++) {
+            Circle c = new Circle(random.nextDouble() * 1000, random.nextDouble() * 1000, random.nextDouble() * 10);
+            circles.add(c);
+            store.add(c);
+        }
+
+        Columns t = new Columns(n);
+        Columns q = new Columns(n);
+        Columns c = new Columns(n);
+        t.polygons(store.triX, store.triY, n);
+        q.polygons(store.quadX, store.quadY, n);
+        c.circles(store.circleX, store.circleY, store.radius, n);
+
+        long failures = 0;
+        for (int i = 0; i < n; i++) {
+            failures += t.check(i, triangles.get(i), triangles.get(i).boundingBox());
+            failures += q.check(i, quads.get(i), quads.get(i).boundingBox());
+            failures += c.check(i, circles.get(i), BoundingBox.of(circles.get(i)));
+        }
+        System.out.printf("checked %,d shapes of each kind against the shape classes: %d failures%n", n, failures);
+        if (failures > 0)
+            throw new IllegalStateException("The kernels disagree with the shape classes.");
+
+        //a few untimed rounds of each, so that both are compiled before they are measured
+        double[] out = new double[n];
+        for (int round = 0; round < 5; round++) {
+            GeometryKernels.areas(store.triX, store.triY, n, out);
+            scalarAreas(triangles, out);
+        }
+        long start = System.nanoTime();
+        for (int round = 0; round < 10; round++) {
+            GeometryKernels.areas(store.triX, store.triY, n, out);
+            GeometryKernels.areas(store.quadX, store.quadY, n, out);
+            GeometryKernels.perimeters(store.triX, store.triY, n, out);
+        }
+        long kernels = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int round = 0; round < 10; round++) {
+            scalarAreas(triangles, out);
+            for (int i = 0; i < n; i++) {
+                List<? extends Point> v = quads.get(i).getPosition();
+                out[i] = Geometry.quadrilateralArea(v.get(0).x(), v.get(0).y(), v.get(1).x(), v.get(1).y(),
+                                                    v.get(2).x(), v.get(2).y(), v.get(3).x(), v.get(3).y());
+            }
+            for (int i = 0; i < n; i++) {
+                out[i] = triangles.get(i).perimeter(triangles.get(i).getPosition());
+            }
+        }
+        long scalar = System.nanoTime() - start;
+        System.out.printf("kernels: %.2f ns per shape%n", kernels / 30.0 / n);
+        System.out.printf("scalar:  %.2f ns per shape%n", scalar / 30.0 / n);
+        System.out.printf("speed-up: %.1fx%n", (double) scalar / kernels);
+    }
+
+    private static double[] corners(Random random, int n) {
+        double x = random.nextDouble() * 1000;
+        double y = random.nextDouble() * 1000;
+        double[] xy = new double[2 * n];
+        for (int k = 0; k < n; k++) {
+            xy[2 * k] = x + random.nextDouble() * 20;
+            xy[2 * k + 1] = y + random.nextDouble() * 20;
+        }
+        return xy;
+    }
+
+    private static void scalarAreas(List<Triangle> triangles, double[] out) {
+        for (int i = 0; i < triangles.size(); i++) {
+            out[i] = triangles.get(i).area(triangles.get(i).getPosition());
+        }
+    }
+
+    /**
+     * The output columns of the kernels for one kind of shape.
+     */
+    private static final class Columns {
+        final double[] area;
+        final double[] perimeter;
+        final double[] cx;
+        final double[] cy;
+        final double[] minX;
+        final double[] minY;
+        final double[] maxX;
+        final double[] maxY;
+
+        Columns(int n) {
+            area = new double[n];
+            perimeter = new double[n];
+            cx = new double[n];
+            cy = new double[n];
+            minX = new double[n];
+            minY = new double[n];
+            maxX = new double[n];
+            maxY = new double[n];
+        }
+
+        void polygons(double[][] xs, double[][] ys, int n) {
+            GeometryKernels.areas(xs, ys, n, area);
+            GeometryKernels.perimeters(xs, ys, n, perimeter);
+            GeometryKernels.centroids(xs, ys, n, cx, cy);
+            GeometryKernels.bounds(xs, ys, n, minX, minY, maxX, maxY);
+        }
+
+        void circles(double[] x, double[] y, double[] radius, int n) {
+            GeometryKernels.circleAreas(radius, n, area);
+            GeometryKernels.circlePerimeters(radius, n, perimeter);
+            System.arraycopy(x, 0, cx, 0, n);
+            System.arraycopy(y, 0, cy, 0, n);
+            GeometryKernels.circleBounds(x, y, radius, n, minX, minY, maxX, maxY);
+        }
+
+        /**
+         * @return the number of values at position <code>i</code> that differ from those of the shape by more than
+         * the tolerance
+         */
+        int check(int i, TwoDShape shape, BoundingBox box) {
+            double scale = Math.max(1, shape.perimeter());
+            double[] centroid = centroid(shape);
+            int failures = 0;
+            failures += differ(area[i], shape.area(), scale * scale);
+            failures += differ(perimeter[i], shape.perimeter(), scale);
+            failures += differ(cx[i], centroid[0], scale);
+            failures += differ(cy[i], centroid[1], scale);
+            failures += differ(minX[i], box.minX(), scale);
+            failures += differ(minY[i], box.minY(), scale);
+            failures += differ(maxX[i], box.maxX(), scale);
+            failures += differ(maxY[i], box.maxY(), scale);
+            return failures;
+        }
+
+        private static int differ(double actual, double expected, double scale) {
+            return Math.abs(actual - expected) <= GeometryKernels.TOLERANCE * scale ? 0 : 1;
+        }
+
+        /**
+         * Computes the centroid of a shape independently of the kernels: a triangle's is the mean of its vertices,
+         * and a quadrilateral's is the area-weighted mean of the centroids of the two triangles it splits into along
+         * its first diagonal.
+         */
+        private static double[] centroid(TwoDShape shape) {
+            List<? extends Point> v = ((Positionable) shape).getPosition();
+            if (shape instanceof Circle)
+                return new double[] {v.get(0).x(), v.get(0).y()};
+            if (v.size() == 3)
+                return new double[] {(v.get(0).x() + v.get(1).x() + v.get(2).x()) / 3,
+                                     (v.get(0).y() + v.get(1).y() + v.get(2).y()) / 3};
+            //signed, so that the split is also right for a concave quadrilateral
+            double a1 = Geometry.cross(v.get(0).x(), v.get(0).y(), v.get(1).x(), v.get(1).y(),
+                                       v.get(2).x(), v.get(2).y());
+            double a2 = Geometry.cross(v.get(0).x(), v.get(0).y(), v.get(2).x(), v.get(2).y(),
+                                       v.get(3).x(), v.get(3).y());
+            double x1 = (v.get(0).x() + v.get(1).x() + v.get(2).x()) / 3;
+            double y1 = (v.get(0).y() + v.get(1).y() + v.get(2).y()) / 3;
+            double x2 = (v.get(0).x() + v.get(2).x() + v.get(3).x()) / 3;
+            double y2 = (v.get(0).y() + v.get(2).y() + v.get(3).y()) / 3;
+            return new double[] {(a1 * x1 + a2 * x2) / (a1 + a2), (a1 * y1 + a2 * y2) / (a1 + a2)};
+        }
+    }
+}
@@ -0,0 +1,280 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A load generator for {@link GeometryServer}. It opens a number of connections at once, and on each sends a fixed
+ * number of requests of one batch of random shapes, keeping up to a given number of them in flight, i.e. sent but not
+ * yet answered. It then reports the throughput over all connections, and percentiles of the latency of a request, from
+ * when it was written to when its answer was read, leaving out each connection's warm-up requests.
+ * <p>
+ * Options, all optional:
+ * <ul>
+ *     <li><code>--host=127.0.0.1</code> and <code>--port=7070</code>: the server to load; without a port, a server is
+ *     started in this process on a free port</li>
+ *     <li><code>--concurrency=8</code>: the number of connections</li>
+ *     <li><code>--requests=2000</code> and <code>--warmup=200</code>: the requests per connection, and how many of
+ *     them are left out of the latencies</li>
+ *     <li><code>--batch=100</code>: the shapes per request</li>
+ *     <li><code>--pipeline=4</code>: the most requests in flight per connection; <code>1</code> waits for each answer
+ *     before sending the next request</li>
+ *     <li><code>--kind=triangle</code>: <code>triangle</code>, <code>quadrilateral</code> or <code>circle</code></li>
+ *     <li><code>--operation=metrics</code>: <code>metrics</code>, <code>orderByX</code> or
+ *     <code>orderByArea</code></li>
+ * </ul>
+ */
+public final class GeometryLoadClient {
+
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+
+    private final String host;
+    private final int    port;
+    private final int    requests;
+    private final int    warmup;
+    private final int    pipeline;
+    private final byte[] frame;
+
+    private GeometryLoadClient(String host, int port, int requests, int warmup, int pipeline, byte[] frame) {
+        this.host = host;
+        this.port = port;
+        this.requests = requests;
+        this.warmup = warmup;
+        this.pipeline = pipeline;
+        this.frame = frame;
+    }
+
+    /**
+     * Sends this client's requests over a new connection, writing them from a second thread so that the answers are
+     * read while later requests are still being written.
+     *
+     * @return the latency of each request after the warm-up ones, in nanoseconds
+     */
+    private long[] run() throws Exception {
+        Socket socket = new Socket(host, port);
+        try {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(),
+                                                                             STREAM_BUFFER_SIZE));
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), STREAM_BUFFER_SIZE);
+            AtomicLongArray sent = new AtomicLongArray(requests);
+            Semaphore inFlight = new Semaphore(pipeline);
+
+            Thread writer = new Thread(() -> {
+                byte[] request = frame.clone();
+                ByteBuffer header = ByteBuffer.wrap(request);
+                try {
+                    for (int id = 0; id < requests; id++) {
+                        inFlight.acquire();
+                        header.putInt(4, id);
+                        sent.set(id, System.nanoTime());
+                        out.write(request);
+                        out.flush();
+                    }
+                }
+                catch (IOException | InterruptedException e) {
+                    try {
+                        socket.close();
+                    }
+                    catch (IOException ignored) {
+                        //the reader sees the connection fail in any case
+                    }
+                }
+            }, "geometry-load-writer");
+            writer.setDaemon(true);
+            writer.start();
+
+            long[] latencies = new long[requests - warmup];
+            ByteBuffer response = null;
+            for (int expected = 0; expected < requests; expected++) {
+                int length = in.readInt();
+                response = GeometryProtocol.readFrame(in, length, response);
+                long now = System.nanoTime();
+                int id = response.getInt();
+                if (response.get() != GeometryProtocol.OK) {
+                    byte[] text = new byte[response.getShort()];
+                    response.get(text);
+                    throw new IOException("Request " + id + " failed: " + new String(text, StandardCharsets.UTF_8));
+                }
+                if (id != expected)
+                    throw new IOException("Expected the answer to request " + expected + ", but got " + id);
+                inFlight.release();
+                if (id >= warmup)
+                    latencies[id - warmup] = now - sent.get(id);
+            }
+            writer.join();
+            return latencies;
+        }
+        finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * @return the coordinates of <code>n</code> random shapes of the specified kind, laid out as in a request
+     */
+    private static double[] shapes(byte kind, int n, Random random) {
+        int stride = GeometryProtocol.stride(kind);
+        double[] coordinates = new double[n * stride];
+        for (int i = 0; i < n; i++) {
+            double x = random.nextDouble() * 1000;
+            double y = random.nextDouble() * 1000;
+            if (kind == GeometryProtocol.CIRCLE) {
+                coordinates[3 * i] = x;
+                coordinates[3 * i + 1] = y;
+                coordinates[3 * i + 2] = 1 + random.nextDouble() * 10;
+                continue;
+            }
+            for (int k = 0; k < stride; k += 2) {
+                coordinates[stride * i + k] = x + random.nextDouble() * 20;
+                coordinates[stride * i + k + 1] = y + random.nextDouble() * 20;
+            }
+        }
+        return coordinates;
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0)
+            return 0;
+        int rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = "127.0.0.1";
+        int port = -1;
+        int concurrency = 8;
+        int requests = 2000;
+        int warmup = 200;
+        int batch = 100;
+        int pipeline = 4;
+        String kindName = "triangle";
+        String operationName = "metrics";
+
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            String name = eq < 0 ? arg : arg.substring(0, eq);
+            String value = eq < 0 ? "" : arg.substring(eq + 1);
+            switch (name) {
+                case "--host":
+                    host = value;
+                    break;
+                case "--port":
+                    port = Integer.parseInt(value);
+                    break;
+                case "--concurrency":
+                    concurrency = Integer.parseInt(value);
+                    break;
+                case "--requests":
+                    requests = Integer.parseInt(value);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(value);
+                    break;
+                case "--batch":
+                    batch = Integer.parseInt(value);
+                    break;
+                case "--pipeline":
+                    pipeline = Integer.parseInt(value);
+                    break;
+                case "--kind":
+                    kindName = value;
+                    break;
+                case "--operation":
+                    operationName = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (concurrency < 1 || pipeline < 1 || batch < 0 || warmup < 0 || requests <= warmup)
+            throw new IllegalArgumentException("There must be a connection, a request in flight, and more requests "
+                                               + "than warm-up requests.");
+
+        byte kind;
+        switch (kindName) {
+            case "triangle":
+                kind = GeometryProtocol.TRIANGLE;
+                break;
+            case "quadrilateral":
+                kind = GeometryProtocol.QUADRILATERAL;
+                break;
+            case "circle":
+                kind = GeometryProtocol.CIRCLE;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown kind of shape: " + kindName);
+        }
+        byte operation;
+        switch (operationName) {
+            case "metrics":
+                operation = GeometryProtocol.METRICS;
+                break;
+            case "orderByX":
+                operation = GeometryProtocol.ORDER_BY_X;
+                break;
+            case "orderByArea":
+                operation = GeometryProtocol.ORDER_BY_AREA;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + operationName);
+        }
+
+        GeometryServer server = null;
+        if (port < 0) {
+            server = new GeometryServer(0);
+            port = server.port();
+        }
+        ExecutorService executor = GeometryProtocol.connectionExecutor();
+        try {
+            List<Future<long[]>> results = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int c = 0; c < concurrency; c++) {
+                byte[] frame = GeometryProtocol.request(0, operation, kind, shapes(kind, batch, new Random(c)), batch)
+                                               .array();
+                GeometryLoadClient client = new GeometryLoadClient(host, port, requests, warmup, pipeline, frame);
+                results.add(executor.submit(client::run));
+            }
+            long[] latencies = new long[0];
+            for (Future<long[]> result : results) {
+                long[] l = result.get();
+                int from = latencies.length;
+                latencies = Arrays.copyOf(latencies, from + l.length);
+                System.arraycopy(l, 0, latencies, from, l.length);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Arrays.sort(latencies);
+
+            long total = (long) concurrency * requests;
+            System.out.println(String.format(Locale.ROOT,
+                    "# GeometryLoadClient: Java %s, %d processors, %s %s, batch %d, %d connections, pipeline %d",
+                    System.getProperty("java.version"), Runtime.getRuntime().availableProcessors(), operationName,
+                    kindName, batch, concurrency, pipeline));
+            System.out.println(String.format(Locale.ROOT, "requests: %d in %.3f s, %.1f requests/s, %.4g shapes/s",
+                                             total, seconds, total / seconds, total * batch / seconds));
+            System.out.println(String.format(Locale.ROOT,
+                    "latency (us): p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f",
+                    percentile(latencies, 0.5) / 1e3, percentile(latencies, 0.9) / 1e3,
+                    percentile(latencies, 0.99) / 1e3, percentile(latencies, 0.999) / 1e3,
+                    percentile(latencies, 1) / 1e3));
+        }
+        finally {
+            executor.shutdown();
+            if (server != null)
+                server.close();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The binary framing spoken by {@link GeometryServer} and {@link GeometryLoadClient}. All values are big-endian.
+ * <p>
+ * A request is a frame of <code>int</code> length, followed by that many bytes: the <code>int</code> id of the
+ * request, chosen by the client, the <code>byte</code> operation, the <code>byte</code> kind of shape, the
+ * <code>int</code> number of shapes, and the coordinates of each shape in turn as <code>double</code>s: six for a
+ * triangle, eight for a quadrilateral, and x, y and radius for a circle.
+ * <p>
+ * A response is a frame of <code>int</code> length, followed by the id of its request, a <code>byte</code> status
+ * and the payload of the operation: for {@link #METRICS}, the number of shapes, then the area of each, the perimeter of
+ * each and whether each is valid, as a <code>byte</code>; for {@link #ORDER_BY_X} and {@link #ORDER_BY_AREA}, the
+ * number of shapes, then the position of each shape of the sorted batch in the request, as an <code>int</code>. A
+ * response with status {@link #ERROR} holds a message, as a <code>short</code> number of bytes followed by that many
+ * bytes of UTF-8, after which the server closes the connection.
+ * <p>
+ * A client may send any number of requests without waiting for their responses; the responses come back in the order
+ * of the requests.
+ */
+final class GeometryProtocol {
+
+    static final byte METRICS       = 1;
+    static final byte ORDER_BY_X    = 2;
+    static final byte ORDER_BY_AREA = 3;
+
+    static final byte TRIANGLE      = 0;
+    static final byte QUADRILATERAL = 1;
+    static final byte CIRCLE        = 2;
+
+    static final byte OK    = 0;
+    static final byte ERROR = 1;
+
+    /**
+     * The bytes of a request frame before its coordinates, not counting its length.
+     */
+    static final int REQUEST_HEADER_BYTES = 10;
+
+    /**
+     * The most shapes one request may hold, so that a malformed length cannot make the server allocate without bound.
+     */
+    static final int MAX_SHAPES = 1 << 20;
+
+    private GeometryProtocol() { }
+
+    /**
+     * @return the number of coordinates of one shape of the specified kind, or <code>-1</code> for an unknown kind
+     */
+    static int stride(byte kind) {
+        switch (kind) {
+            case TRIANGLE:
+                return 6;
+            case QUADRILATERAL:
+                return 8;
+            case CIRCLE:
+                return 3;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Writes a request frame for the first <code>n</code> shapes of the specified coordinates.
+     *
+     * @return a buffer holding the whole frame, ready to be written
+     */
+    static ByteBuffer request(int id, byte operation, byte kind, double[] coordinates, int n) {
+        int values = n * stride(kind);
+        ByteBuffer frame = ByteBuffer.allocate(4 + REQUEST_HEADER_BYTES + 8 * values);
+        frame.putInt(REQUEST_HEADER_BYTES + 8 * values).putInt(id).put(operation).put(kind).putInt(n);
+        frame.asDoubleBuffer().put(coordinates, 0, values);
+        frame.position(frame.limit());
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Reads the rest of a frame whose length has been read, into the specified buffer if it is large enough.
+     *
+     * @return a buffer holding the frame, without its length, positioned at its start
+     */
+    static ByteBuffer readFrame(DataInputStream in, int length, ByteBuffer buffer) throws IOException {
+        if (buffer == null || buffer.capacity() < length)
+            buffer = ByteBuffer.allocate(Math.max(length, buffer == null ? 0 : 2 * buffer.capacity()));
+        in.readFully(buffer.array(), 0, length);
+        buffer.clear().limit(length);
+        return buffer;
+    }
+
+    /**
+     * Creates the executor that connections are handled on: one virtual thread per task, where the runtime has them,
+     * and otherwise a cached pool of daemon threads. The virtual-thread executor is looked up reflectively, so that
+     * this compiles and runs on runtimes from before virtual threads.
+     */
+    static ExecutorService connectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "geometry-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,281 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A local server that computes the metrics of batches of shapes for other processes, so that they need not embed this
+ * code and warm it up themselves. It listens on the loopback interface only, and speaks the framing documented by
+ * {@link GeometryProtocol}: each request holds a batch of triangles, quadrilaterals or circles, and is answered with
+ * their areas, perimeters and validity, as computed by {@link ShapeStore}, or with their order by least x-value or by
+ * area, as {@link Ordering.XLocationShapeComparator} and {@link TwoDShape#area()} give it.
+ * <p>
+ * Each connection is served by its own thread, a virtual thread where the runtime has them, which reads requests,
+ * answers them in order and flushes its answers only once no further request is waiting to be read. A client that
+ * pipelines its requests, sending more before the answers to earlier ones arrive, thus gets its answers in as few
+ * writes as possible.
+ * <p>
+ * Run it with <code>java GeometryServer [port]</code>; without a port, or with port <code>0</code>, it picks a free
+ * one and prints it.
+ */
+public final class GeometryServer implements AutoCloseable {
+
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+
+    private final ServerSocket    socket;
+    private final ExecutorService executor;
+    private final Thread          acceptor;
+    private final Set<Socket>     connections = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Starts a server on the specified port of the loopback interface, or on a free port if it is <code>0</code>.
+     *
+     * @throws IOException if the port cannot be bound
+     */
+    public GeometryServer(int port) throws IOException {
+        socket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        executor = GeometryProtocol.connectionExecutor();
+        acceptor = new Thread(this::accept, "geometry-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * @return the port this server listens on
+     */
+    public int port() {
+        return socket.getLocalPort();
+    }
+
+    private void accept() {
+        while (!socket.isClosed()) {
+            try {
+                Socket connection = socket.accept();
+                connection.setTcpNoDelay(true);
+                connections.add(connection);
+                executor.execute(new Connection(connection));
+            }
+            catch (IOException e) {
+                if (!socket.isClosed())
+                    System.out.println(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections and closes those that are open.
+     */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+        for (Socket connection : connections) {
+            connection.close();
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * The requests of one connection, read and answered in order. The buffers of a connection are reused from one
+     * request to the next.
+     */
+    private final class Connection implements Runnable {
+        private final Socket socket;
+        private ByteBuffer   frame;
+        private ByteBuffer   response = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+        private double[]     coordinates = new double[0];
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            try (Socket s = socket;
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(),
+                                                                                  STREAM_BUFFER_SIZE));
+                 OutputStream out = new BufferedOutputStream(s.getOutputStream(), STREAM_BUFFER_SIZE)) {
+                while (true) {
+                    int length;
+                    try {
+                        length = in.readInt();
+                    }
+                    catch (EOFException e) {
+                        break;
+                    }
+                    boolean ok = length >= GeometryProtocol.REQUEST_HEADER_BYTES
+                                 && length <= GeometryProtocol.REQUEST_HEADER_BYTES + 64L * GeometryProtocol.MAX_SHAPES;
+                    if (ok) {
+                        frame = GeometryProtocol.readFrame(in, length, frame);
+                        ok = answer(frame);
+                    }
+                    else
+                        error(-1, "A request cannot be " + length + " bytes long.");
+                    out.write(response.array(), 0, response.limit());
+                    if (!ok)
+                        break;
+                    if (in.available() == 0)
+                        out.flush();
+                }
+            }
+            catch (IOException e) {
+                //the client went away: there is no one left to answer
+            }
+            finally {
+                connections.remove(socket);
+            }
+        }
+
+        /**
+         * Answers the specified request into {@link #response}.
+         *
+         * @return <code>false</code> if the request was malformed, and the connection must be closed
+         */
+        private boolean answer(ByteBuffer request) {
+            int id = request.getInt();
+            byte operation = request.get();
+            byte kind = request.get();
+            int n = request.getInt();
+            int stride = GeometryProtocol.stride(kind);
+            if (stride < 0)
+                return error(id, "Unknown kind of shape: " + kind);
+            if (n < 0 || n > GeometryProtocol.MAX_SHAPES
+                    || request.remaining() != 8L * n * stride)
+                return error(id, "The request does not hold " + n + " shapes of its kind.");
+            if (operation != GeometryProtocol.METRICS && operation != GeometryProtocol.ORDER_BY_X
+                    && operation != GeometryProtocol.ORDER_BY_AREA)
+                return error(id, "Unknown operation: " + operation);
+
+            if (coordinates.length < n * stride)
+                coordinates = new double[Math.max(n * stride, 2 * coordinates.length)];
+            request.asDoubleBuffer().get(coordinates, 0, n * stride);
+            ShapeStore store = operation == GeometryProtocol.ORDER_BY_X ? null : store(kind, coordinates, n);
+
+            if (operation == GeometryProtocol.METRICS) {
+                double[] areas = new double[n];
+                double[] perimeters = new double[n];
+                boolean[] members = new boolean[n];
+                store.areas(areas);
+                store.perimeters(perimeters);
+                store.members(members);
+                ByteBuffer out = begin(id, 4 + 17L * n);
+                out.putInt(n);
+                DoubleBuffer values = out.asDoubleBuffer();
+                values.put(areas, 0, n).put(perimeters, 0, n);
+                out.position(out.position() + 16 * n);
+                for (int i = 0; i < n; i++) {
+                    out.put(members[i] ? (byte) 1 : (byte) 0);
+                }
+                out.flip();
+                return true;
+            }
+
+            long[] keys = new long[n];
+            int[] order = new int[n];
+            if (operation == GeometryProtocol.ORDER_BY_AREA) {
+                double[] areas = new double[n];
+                store.areas(areas);
+                for (int i = 0; i < n; i++) {
+                    keys[i] = KeySort.sortable(areas[i]);
+                }
+            }
+            else {
+                for (int i = 0; i < n; i++) {
+                    keys[i] = KeySort.sortable(leastX(kind, coordinates, i));
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            KeySort.sort(keys, order);
+            ByteBuffer out = begin(id, 4 + 4L * n);
+            out.putInt(n);
+            out.asIntBuffer().put(order, 0, n);
+            out.position(out.position() + 4 * n);
+            out.flip();
+            return true;
+        }
+
+        /**
+         * Clears {@link #response} and writes the head of a successful response with the specified payload length.
+         *
+         * @return the response buffer, positioned at the start of the payload
+         */
+        private ByteBuffer begin(int id, long payload) {
+            int length = (int) (5 + payload);
+            if (response.capacity() < 4 + length)
+                response = ByteBuffer.allocate(Math.max(4 + length, 2 * response.capacity()));
+            response.clear();
+            response.putInt(length).putInt(id).put(GeometryProtocol.OK);
+            return response;
+        }
+
+        private boolean error(int id, String message) {
+            byte[] text = message.getBytes(StandardCharsets.UTF_8);
+            response.clear();
+            response.putInt(7 + text.length).putInt(id).put(GeometryProtocol.ERROR).putShort((short) text.length)
+                    .put(text).flip();
+            return false;
+        }
+    }
+
+    /**
+     * @return a store of the first <code>n</code> shapes of the specified kind, whose coordinates are laid out as in a
+     * request
+     */
+    private static ShapeStore store(byte kind, double[] c, int n) {
+        ShapeStore store = new ShapeStore();
+        for (int i = 0; i < n; i++) {
+            switch (kind) {
+                case GeometryProtocol.TRIANGLE: {
+                    int o = 6 * i;
+                    store.addTriangle(c[o], c[o + 1], c[o + 2], c[o + 3], c[o + 4], c[o + 5]);
+                    break;
+                }
+                case GeometryProtocol.QUADRILATERAL: {
+                    int o = 8 * i;
+                    store.addQuadrilateral(c[o], c[o + 1], c[o + 2], c[o + 3], c[o + 4], c[o + 5], c[o + 6], c[o + 7]);
+                    break;
+                }
+                default: {
+                    int o = 3 * i;
+                    store.addCircle(c[o], c[o + 1], c[o + 2]);
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * @return the least x-value of the i-th shape of the specified kind, as
+     * {@link Ordering.XLocationShapeComparator#leastX} gives it
+     */
+    private static double leastX(byte kind, double[] c, int i) {
+        if (kind == GeometryProtocol.CIRCLE)
+            return c[3 * i] - c[3 * i + 2];
+        int stride = GeometryProtocol.stride(kind);
+        double x = c[stride * i];
+        for (int k = 2; k < stride; k += 2) {
+            x = Math.min(x, c[stride * i + k]);
+        }
+        return x;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        GeometryServer server = new GeometryServer(port);
+        System.out.println("GeometryServer listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":"
+                           + server.port());
+        server.acceptor.join();
+    }
+}
@@ -0,0 +1,206 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A uniform grid over the bounding boxes of two-dimensional shapes. The plane is cut into square cells of a fixed
+ * size, and each shape is listed in every cell its bounding box overlaps. Only cells that hold at least one shape are
+ * kept, so the grid is unbounded. A grid works best when the shapes are of similar size and the cell size is close to
+ * that size; for collections of very mixed sizes, an {@link RTree} is usually the better choice.
+ * <p>
+ * A grid is not safe for concurrent modification, but any number of threads may query it at once.
+ *
+ * @param <T> the type of the indexed shapes
+ */
+public class GridIndex<T extends TwoDShape> implements SpatialIndex<T> {
+
+    private static final class Entry<T> {
+        final T      shape;
+        final double minX;
+        final double minY;
+        final double maxX;
+        final double maxY;
+
+        Entry(T shape, BoundingBox box) {
+            this.shape = shape;
+            this.minX = box.minX();
+            this.minY = box.minY();
+            this.maxX = box.maxX();
+            this.maxY = box.maxY();
+        }
+    }
+
+    private final double cellSize;
+    private final Map<Long, List<Entry<T>>> cells = new HashMap<>();
+    private final Map<T, Entry<T>> entries = new IdentityHashMap<>();
+
+    /**
+     * Creates an empty grid with square cells of the specified size.
+     *
+     * @param cellSize the length of the side of each cell
+     * @throws IllegalArgumentException if the cell size is not a positive number
+     */
+    public GridIndex(double cellSize) {
+        if (!(cellSize > 0) || Double.isInfinite(cellSize))
+            throw new IllegalArgumentException("The cell size of a grid must be a positive number.");
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Creates a grid holding the specified shapes, with a cell size equal to the average extent of their bounding
+     * boxes.
+     *
+     * @param shapes the shapes to index
+     */
+    public GridIndex(Collection<? extends T> shapes) {
+        this(averageExtent(shapes));
+        for (T shape : shapes) {
+            insert(shape);
+        }
+    }
+
+    private static double averageExtent(Collection<? extends TwoDShape> shapes) {
+        double sum = 0;
+        for (TwoDShape shape : shapes) {
+            BoundingBox box = BoundingBox.of(shape);
+            sum += Math.max(box.maxX() - box.minX(), box.maxY() - box.minY());
+        }
+        double average = shapes.isEmpty() ? 0 : sum / shapes.size();
+        return average > 0 ? average : 1;
+    }
+
+    /**
+     * @return the length of the side of each cell of this grid
+     */
+    public double cellSize() {
+        return cellSize;
+    }
+
+    private int cell(double v) {
+        double c = Math.floor(v / cellSize);
+        return c <= Integer.MIN_VALUE ? Integer.MIN_VALUE : c >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) c;
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    @Override
+    public void insert(T shape) {
+        Entry<T> entry = new Entry<>(shape, BoundingBox.of(shape));
+        Entry<T> old = entries.put(shape, entry);
+        if (old != null)
+            unlink(old);
+        int cx1 = cell(entry.maxX), cy1 = cell(entry.maxY);
+        for (int cx = cell(entry.minX); cx <= cx1; cx++) {
+            for (int cy = cell(entry.minY); cy <= cy1; cy++) {
+                cells.computeIfAbsent(key(cx, cy), k -> new ArrayList<>()).add(entry);
+                if (cy == Integer.MAX_VALUE)
+                    break;
+            }
+            if (cx == Integer.MAX_VALUE)
+                break;
+        }
+    }
+
+    @Override
+    public boolean remove(T shape) {
+        Entry<T> entry = entries.remove(shape);
+        if (entry == null)
+            return false;
+        unlink(entry);
+        return true;
+    }
+
+    private void unlink(Entry<T> entry) {
+        int cx1 = cell(entry.maxX), cy1 = cell(entry.maxY);
+        for (int cx = cell(entry.minX); cx <= cx1; cx++) {
+            for (int cy = cell(entry.minY); cy <= cy1; cy++) {
+                long key = key(cx, cy);
+                List<Entry<T>> list = cells.get(key);
+                if (list != null) {
+                    list.remove(entry);
+                    if (list.isEmpty())
+                        cells.remove(key);
+                }
+                if (cy == Integer.MAX_VALUE)
+                    break;
+            }
+            if (cx == Integer.MAX_VALUE)
+                break;
+        }
+    }
+
+    @Override
+    public boolean update(T shape) {
+        if (!entries.containsKey(shape))
+            return false;
+        insert(shape);
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A shape that spans several cells is reported only from the cell that holds the least corner of its overlap with
+     * the window, so no set of already-reported shapes is needed.
+     */
+    @Override
+    public void query(double minX, double minY, double maxX, double maxY, Consumer<? super T> action) {
+        int qx0 = cell(minX), qy0 = cell(minY), qx1 = cell(maxX), qy1 = cell(maxY);
+        long window = ((long) qx1 - qx0 + 1) * ((long) qy1 - qy0 + 1);
+        if (window > cells.size()) {
+            //the window covers more cells than there are occupied cells, so visit the occupied ones instead
+            for (Map.Entry<Long, List<Entry<T>>> cell : cells.entrySet()) {
+                long key = cell.getKey();
+                int cx = (int) (key >> 32), cy = (int) key;
+                if (cx >= qx0 && cx <= qx1 && cy >= qy0 && cy <= qy1)
+                    report(cell.getValue(), cx, cy, minX, minY, maxX, maxY, action);
+            }
+            return;
+        }
+        for (int cx = qx0; cx <= qx1; cx++) {
+            for (int cy = qy0; cy <= qy1; cy++) {
+                List<Entry<T>> list = cells.get(key(cx, cy));
+                if (list != null)
+                    report(list, cx, cy, minX, minY, maxX, maxY, action);
+                if (cy == Integer.MAX_VALUE)
+                    break;
+            }
+            if (cx == Integer.MAX_VALUE)
+                break;
+        }
+    }
+
+    private void report(List<Entry<T>> list, int cx, int cy, double minX, double minY, double maxX, double maxY,
+                        Consumer<? super T> action) {
+        for (int i = 0, n = list.size(); i < n; i++) {
+            Entry<T> e = list.get(i);
+            if (e.minX > maxX || minX > e.maxX || e.minY > maxY || minY > e.maxY)
+                continue;
+            if (cell(Math.max(minX, e.minX)) == cx && cell(Math.max(minY, e.minY)) == cy)
+                action.accept(e.shape);
+        }
+    }
+
+    @Override
+    public void stab(double x, double y, Consumer<? super T> action) {
+        List<Entry<T>> list = cells.get(key(cell(x), cell(y)));
+        if (list == null)
+            return;
+        for (int i = 0, n = list.size(); i < n; i++) {
+            Entry<T> e = list.get(i);
+            if (e.minX <= x && x <= e.maxX && e.minY <= y && y <= e.maxY)
+                action.accept(e.shape);
+        }
+    }
+}
@@ -0,0 +1,460 @@
+import java.util.List;
+
+/**
+ * The narrow phase of collision detection: exact intersection tests and overlap areas for pairs of triangles,
+ * quadrilaterals and circles, e.g. for the candidate pairs reported by {@link BroadPhase}. Shapes are closed, so two
+ * shapes that only touch intersect, with an overlap area of zero.
+ * <p>
+ * Two polygons are tested with the separating axis theorem, which holds for convex polygons only, so a concave
+ * quadrilateral is first split into two triangles along the diagonal from its reflex vertex; the polygons intersect if
+ * any piece of one overlaps any piece of the other. Their overlap area is the sum of the areas of the pairwise
+ * intersections of their pieces, each of which is found by clipping one convex piece against the other. A circle and a
+ * polygon intersect if the polygon contains the center or one of its edges comes within the radius of it, and their
+ * overlap area is summed, with signs, over the triangles that the center makes with each edge, so it needs no
+ * splitting. Two circles overlap in a lens, whose area has a closed form.
+ * <p>
+ * Every test works on <code>double</code> coordinates held in a {@link Workspace}, so testing a pair allocates nothing.
+ * The batch methods take pairs of indices into a {@link ShapeStore}, read the coordinates straight from its columns,
+ * and spread blocks of {@value Blocks#BLOCK_SIZE} pairs across the common fork-join pool, with one workspace per
+ * thread.
+ * <p>
+ * The results are unspecified for shapes that are not valid for their kind.
+ */
+final class Intersections {
+
+    static final int PARALLEL_THRESHOLD = 1 << 12;
+
+    private static final byte POLYGON = 0;
+    private static final byte CIRCLE  = 1;
+
+    private static final ThreadLocal<Workspace> WORKSPACE = ThreadLocal.withInitial(Workspace::new);
+
+    private Intersections() { }
+
+    /**
+     * The two shapes of the pair being tested, and scratch space for clipping. A workspace is used by one thread at a
+     * time.
+     */
+    static final class Workspace {
+        //the kind of each of the two shapes
+        final byte[] kind = new byte[2];
+
+        //the vertices of each polygon, in order
+        final double[][] x = new double[2][4];
+        final double[][] y = new double[2][4];
+        final int[]      sides = new int[2];
+
+        //the center and radius of each circle
+        final double[] cx = new double[2];
+        final double[] cy = new double[2];
+        final double[] r = new double[2];
+
+        //the convex pieces of each polygon: pieces 0 and 1 are those of the first shape, and 2 and 3 of the second
+        final double[][] pieceX = new double[4][4];
+        final double[][] pieceY = new double[4][4];
+        final int[]      pieceSides = new int[4];
+        final int[]      pieces = new int[2];
+
+        //the intersection of two convex pieces has at most as many vertices as the two pieces together
+        private double[] clipX = new double[8];
+        private double[] clipY = new double[8];
+        private double[] nextX = new double[8];
+        private double[] nextY = new double[8];
+    }
+
+    /**
+     * @return <code>true</code> if the two shapes intersect
+     * @throws IllegalArgumentException if either shape is neither a {@link Circle} or another {@link CircleShape},
+     *                                  nor a {@link Positionable} shape or {@link ShapeSnapshot} with three or four
+     *                                  sides
+     */
+    static boolean intersects(TwoDShape a, TwoDShape b) {
+        Workspace w = WORKSPACE.get();
+        load(w, 0, a);
+        load(w, 1, b);
+        return intersects(w);
+    }
+
+    /**
+     * @return the area of the region covered by both shapes
+     * @throws IllegalArgumentException if either shape is neither a {@link Circle} or another {@link CircleShape},
+     *                                  nor a {@link Positionable} shape or {@link ShapeSnapshot} with three or four
+     *                                  sides
+     */
+    static double overlapArea(TwoDShape a, TwoDShape b) {
+        Workspace w = WORKSPACE.get();
+        load(w, 0, a);
+        load(w, 1, b);
+        return overlapArea(w);
+    }
+
+    /**
+     * Tests a batch of pairs of shapes of a store, in parallel if the batch is large. The i-th pair is made of the
+     * shapes at the indices <code>first[i]</code> and <code>second[i]</code>.
+     *
+     * @param out receives whether the shapes of each pair intersect
+     * @return the number of pairs that intersect
+     */
+    static int intersects(ShapeStore store, int[] first, int[] second, int n, boolean[] out) {
+        return Blocks.sum(n, PARALLEL_THRESHOLD, (from, to) -> {
+            Workspace w = WORKSPACE.get();
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                load(w, 0, store, first[i]);
+                load(w, 1, store, second[i]);
+                if (out[i] = intersects(w))
+                    count++;
+            }
+            return count;
+        });
+    }
+
+    /**
+     * Computes the overlap areas of a batch of pairs of shapes of a store, in parallel if the batch is large. The i-th
+     * pair is made of the shapes at the indices <code>first[i]</code> and <code>second[i]</code>.
+     *
+     * @param out receives the overlap area of each pair
+     * @return the number of pairs whose overlap area is positive
+     */
+    static int overlapAreas(ShapeStore store, int[] first, int[] second, int n, double[] out) {
+        return Blocks.sum(n, PARALLEL_THRESHOLD, (from, to) -> {
+            Workspace w = WORKSPACE.get();
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                load(w, 0, store, first[i]);
+                load(w, 1, store, second[i]);
+                if ((out[i] = overlapArea(w)) > 0)
+                    count++;
+            }
+            return count;
+        });
+    }
+
+    private static void load(Workspace w, int side, TwoDShape shape) {
+        if (shape instanceof Circle) {
+            Point center = ((Circle) shape).getPosition().get(0);
+            loadCircle(w, side, center.x(), center.y(), ((Circle) shape).getRadius());
+            return;
+        }
+        if (shape instanceof CircleShape) {
+            CircleShape circle = (CircleShape) shape;
+            loadCircle(w, side, circle.centerX(), circle.centerY(), circle.radius());
+            return;
+        }
+        int sides = shape.numSides();
+        if (!(shape instanceof Positionable || shape instanceof ShapeSnapshot) || (sides != 3 && sides != 4))
+            throw new IllegalArgumentException("Unsupported shape: " + shape);
+        List<? extends Point> vertices = shape instanceof ShapeSnapshot ? ((ShapeSnapshot) shape).vertices()
+                                                                        : ((Positionable) shape).getPosition();
+        for (int k = 0; k < sides; k++) {
+            Point p = vertices.get(k);
+            w.x[side][k] = p.x();
+            w.y[side][k] = p.y();
+        }
+        loadPolygon(w, side, sides);
+    }
+
+    private static void load(Workspace w, int side, ShapeStore store, int index) {
+        int s = store.slots[index];
+        switch (store.kinds[index]) {
+            case ShapeStore.TRIANGLE:
+                for (int k = 0; k < 3; k++) {
+                    w.x[side][k] = store.triX[k][s];
+                    w.y[side][k] = store.triY[k][s];
+                }
+                loadPolygon(w, side, 3);
+                break;
+            case ShapeStore.QUADRILATERAL:
+                for (int k = 0; k < 4; k++) {
+                    w.x[side][k] = store.quadX[k][s];
+                    w.y[side][k] = store.quadY[k][s];
+                }
+                loadPolygon(w, side, 4);
+                break;
+            default:
+                loadCircle(w, side, store.circleX[s], store.circleY[s], store.radius[s]);
+        }
+    }
+
+    private static void loadCircle(Workspace w, int side, double x, double y, double r) {
+        w.kind[side] = CIRCLE;
+        w.cx[side] = x;
+        w.cy[side] = y;
+        w.r[side] = r;
+    }
+
+    /**
+     * Splits the polygon whose vertices have just been loaded into convex pieces: a triangle or a convex
+     * quadrilateral is a single piece, and a concave quadrilateral is split along the diagonal from its reflex vertex.
+     */
+    private static void loadPolygon(Workspace w, int side, int sides) {
+        w.kind[side] = POLYGON;
+        w.sides[side] = sides;
+        double[] x = w.x[side], y = w.y[side];
+        int reflex = -1;
+        if (sides == 4) {
+            //the reflex vertex turns the other way from the polygon as a whole
+            double area2 = Geometry.cross(x[0], y[0], x[1], y[1], x[2], y[2])
+                           + Geometry.cross(x[0], y[0], x[2], y[2], x[3], y[3]);
+            for (int k = 0; k < 4 && reflex < 0; k++) {
+                int prev = (k + 3) & 3, next = (k + 1) & 3;
+                if (Geometry.cross(x[prev], y[prev], x[k], y[k], x[next], y[next]) * area2 < 0)
+                    reflex = k;
+            }
+        }
+        int first = 2 * side;
+        if (reflex < 0) {
+            System.arraycopy(x, 0, w.pieceX[first], 0, sides);
+            System.arraycopy(y, 0, w.pieceY[first], 0, sides);
+            w.pieceSides[first] = sides;
+            w.pieces[side] = 1;
+            return;
+        }
+        for (int k = 0; k < 3; k++) {
+            int a = (reflex + k) & 3;
+            int b = (reflex + 2 + k) & 3;
+            w.pieceX[first][k] = x[a];
+            w.pieceY[first][k] = y[a];
+            w.pieceX[first + 1][k] = x[b];
+            w.pieceY[first + 1][k] = y[b];
+        }
+        w.pieceSides[first] = 3;
+        w.pieceSides[first + 1] = 3;
+        w.pieces[side] = 2;
+    }
+
+    private static boolean intersects(Workspace w) {
+        if (w.kind[0] == CIRCLE && w.kind[1] == CIRCLE) {
+            double dx = w.cx[1] - w.cx[0];
+            double dy = w.cy[1] - w.cy[0];
+            double reach = w.r[0] + w.r[1];
+            return dx * dx + dy * dy <= reach * reach;
+        }
+        if (w.kind[0] == CIRCLE)
+            return circleIntersectsPolygon(w, 0, 1);
+        if (w.kind[1] == CIRCLE)
+            return circleIntersectsPolygon(w, 1, 0);
+        for (int p = 0; p < w.pieces[0]; p++) {
+            for (int q = 2; q < 2 + w.pieces[1]; q++) {
+                if (!separated(w.pieceX[p], w.pieceY[p], w.pieceSides[p], w.pieceX[q], w.pieceY[q], w.pieceSides[q])
+                        && !separated(w.pieceX[q], w.pieceY[q], w.pieceSides[q],
+                                      w.pieceX[p], w.pieceY[p], w.pieceSides[p]))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return <code>true</code> if one of the edge normals of the convex polygon p is an axis on which the projections
+     * of p and q do not meet
+     */
+    private static boolean separated(double[] px, double[] py, int pn, double[] qx, double[] qy, int qn) {
+        for (int i = 0; i < pn; i++) {
+            int j = i + 1 == pn ? 0 : i + 1;
+            double nx = py[i] - py[j];
+            double ny = px[j] - px[i];
+            double pMin = Double.POSITIVE_INFINITY, pMax = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < pn; k++) {
+                double d = nx * px[k] + ny * py[k];
+                pMin = Math.min(pMin, d);
+                pMax = Math.max(pMax, d);
+            }
+            double qMin = Double.POSITIVE_INFINITY, qMax = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < qn; k++) {
+                double d = nx * qx[k] + ny * qy[k];
+                qMin = Math.min(qMin, d);
+                qMax = Math.max(qMax, d);
+            }
+            if (pMax < qMin || qMax < pMin)
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean circleIntersectsPolygon(Workspace w, int circle, int polygon) {
+        double cx = w.cx[circle], cy = w.cy[circle], r = w.r[circle];
+        double[] x = w.x[polygon], y = w.y[polygon];
+        int n = w.sides[polygon];
+        for (int i = 0; i < n; i++) {
+            int j = i + 1 == n ? 0 : i + 1;
+            if (squaredDistance(cx, cy, x[i], y[i], x[j], y[j]) <= r * r)
+                return true;
+        }
+        //no edge comes within the radius, so the circle is either inside the polygon or clear of it
+        int first = 2 * polygon;
+        for (int p = first; p < first + w.pieces[polygon]; p++) {
+            if (contains(w.pieceX[p], w.pieceY[p], w.pieceSides[p], cx, cy))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the square of the distance from (px, py) to the segment from (ax, ay) to (bx, by)
+     */
+    private static double squaredDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax, dy = by - ay;
+        double length2 = dx * dx + dy * dy;
+        double t = length2 == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / length2;
+        t = Math.max(0, Math.min(1, t));
+        double ex = ax + t * dx - px, ey = ay + t * dy - py;
+        return ex * ex + ey * ey;
+    }
+
+    /**
+     * @return <code>true</code> if the convex polygon contains the point, or has it on its boundary
+     */
+    private static boolean contains(double[] x, double[] y, int n, double px, double py) {
+        boolean negative = false, positive = false;
+        for (int i = 0; i < n; i++) {
+            int j = i + 1 == n ? 0 : i + 1;
+            double side = Geometry.cross(x[i], y[i], x[j], y[j], px, py);
+            negative |= side < 0;
+            positive |= side > 0;
+        }
+        return !(negative && positive);
+    }
+
+    private static double overlapArea(Workspace w) {
+        //the exact test rules out most pairs of a broad phase cheaply, and keeps rounding from giving disjoint shapes
+        //a tiny positive area
+        if (!intersects(w))
+            return 0;
+        if (w.kind[0] == CIRCLE && w.kind[1] == CIRCLE)
+            return lensArea(w.cx[0], w.cy[0], w.r[0], w.cx[1], w.cy[1], w.r[1]);
+        if (w.kind[0] == CIRCLE)
+            return circlePolygonArea(w, 0, 1);
+        if (w.kind[1] == CIRCLE)
+            return circlePolygonArea(w, 1, 0);
+        double area = 0;
+        for (int p = 0; p < w.pieces[0]; p++) {
+            for (int q = 2; q < 2 + w.pieces[1]; q++) {
+                area += clippedArea(w, p, q);
+            }
+        }
+        return area;
+    }
+
+    /**
+     * Clips the convex piece p against the convex piece q, with the Sutherland-Hodgman algorithm.
+     *
+     * @return the area of their intersection
+     */
+    private static double clippedArea(Workspace w, int p, int q) {
+        double[] qx = w.pieceX[q], qy = w.pieceY[q];
+        int qn = w.pieceSides[q];
+        double orientation = Geometry.cross(qx[0], qy[0], qx[1], qy[1], qx[2], qy[2]) < 0 ? -1 : 1;
+
+        double[] inX = w.clipX, inY = w.clipY, outX = w.nextX, outY = w.nextY;
+        int n = w.pieceSides[p];
+        System.arraycopy(w.pieceX[p], 0, inX, 0, n);
+        System.arraycopy(w.pieceY[p], 0, inY, 0, n);
+        for (int e = 0; e < qn && n > 0; e++) {
+            int f = e + 1 == qn ? 0 : e + 1;
+            double ax = qx[e], ay = qy[e], bx = qx[f], by = qy[f];
+            int m = 0;
+            for (int i = 0; i < n; i++) {
+                int j = i + 1 == n ? 0 : i + 1;
+                double si = orientation * Geometry.cross(ax, ay, bx, by, inX[i], inY[i]);
+                double sj = orientation * Geometry.cross(ax, ay, bx, by, inX[j], inY[j]);
+                if (si >= 0) {
+                    outX[m] = inX[i];
+                    outY[m++] = inY[i];
+                }
+                if ((si >= 0) != (sj >= 0)) {
+                    double t = si / (si - sj);
+                    outX[m] = inX[i] + t * (inX[j] - inX[i]);
+                    outY[m++] = inY[i] + t * (inY[j] - inY[i]);
+                }
+            }
+            double[] swap = inX;
+            inX = outX;
+            outX = swap;
+            swap = inY;
+            inY = outY;
+            outY = swap;
+            n = m;
+        }
+        double area2 = 0;
+        for (int k = 1; k < n - 1; k++) {
+            area2 += Geometry.cross(inX[0], inY[0], inX[k], inY[k], inX[k + 1], inY[k + 1]);
+        }
+        return Math.abs(area2) / 2;
+    }
+
+    /**
+     * @return the area of the lens in which two circles overlap
+     */
+    static double lensArea(double x1, double y1, double r1, double x2, double y2, double r2) {
+        double d = Math.hypot(x2 - x1, y2 - y1);
+        if (d >= r1 + r2)
+            return 0;
+        if (d <= Math.abs(r1 - r2)) {
+            double r = Math.min(r1, r2);
+            return Math.PI * r * r;
+        }
+        //the lens is two circular segments, each a sector of its circle less the triangle it makes with the center
+        double a1 = Math.acos(clamp((d * d + r1 * r1 - r2 * r2) / (2 * d * r1)));
+        double a2 = Math.acos(clamp((d * d + r2 * r2 - r1 * r1) / (2 * d * r2)));
+        double kite = Math.sqrt(Math.max(0, (-d + r1 + r2) * (d + r1 - r2) * (d - r1 + r2) * (d + r1 + r2)));
+        return r1 * r1 * a1 + r2 * r2 * a2 - kite / 2;
+    }
+
+    private static double clamp(double cosine) {
+        return Math.max(-1, Math.min(1, cosine));
+    }
+
+    /**
+     * Sums, over the edges of the polygon, the signed area of the part of the circle inside the triangle that the
+     * center makes with the edge. The triangles of edges that turn the other way cancel out, so the sum is the overlap
+     * area for concave polygons as well.
+     */
+    private static double circlePolygonArea(Workspace w, int circle, int polygon) {
+        double cx = w.cx[circle], cy = w.cy[circle], r = w.r[circle];
+        double[] x = w.x[polygon], y = w.y[polygon];
+        int n = w.sides[polygon];
+        double area = 0;
+        for (int i = 0; i < n; i++) {
+            int j = i + 1 == n ? 0 : i + 1;
+            area += sectorTriangleArea(x[i] - cx, y[i] - cy, x[j] - cx, y[j] - cy, r);
+        }
+        return Math.abs(area);
+    }
+
+    /**
+     * @return the signed area of the intersection of the circle of radius r centered at the origin with the triangle
+     * made by the origin, a and b; positive when a, b are counter-clockwise about the origin
+     */
+    private static double sectorTriangleArea(double ax, double ay, double bx, double by, double r) {
+        double dx = bx - ax, dy = by - ay;
+        double a = dx * dx + dy * dy;
+        if (a == 0)
+            return 0;
+        //the edge a + t (b - a) crosses the circle where a t^2 + 2 b t + c = 0
+        double b = ax * dx + ay * dy;
+        double c = ax * ax + ay * ay - r * r;
+        double discriminant = b * b - a * c;
+        if (discriminant <= 0)
+            return sector(ax, ay, bx, by, r);
+        double root = Math.sqrt(discriminant);
+        double t1 = Math.max(0, (-b - root) / a);
+        double t2 = Math.min(1, (-b + root) / a);
+        if (t1 >= t2)
+            return sector(ax, ay, bx, by, r);
+        //the part of the edge inside the circle, between p and q, bounds a triangle; the rest bounds two sectors
+        double px = ax + t1 * dx, py = ay + t1 * dy;
+        double qx = ax + t2 * dx, qy = ay + t2 * dy;
+        return sector(ax, ay, px, py, r) + (px * qy - py * qx) / 2 + sector(qx, qy, bx, by, r);
+    }
+
+    /**
+     * @return the signed area of the sector of the circle of radius r centered at the origin between the directions of
+     * a and b
+     */
+    private static double sector(double ax, double ay, double bx, double by, double r) {
+        if ((ax == bx && ay == by) || (ax == 0 && ay == 0) || (bx == 0 && by == 0))
+            return 0;
+        return r * r * Math.atan2(ax * by - ay * bx, ax * bx + ay * by) / 2;
+    }
+}
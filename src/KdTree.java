@@ -0,0 +1,349 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+/**
+ * A KD-tree over a fixed set of points of one dimension (e.g., {@link TwoDPoint}s or {@link ThreeDPoint}s), answering
+ * k-nearest-neighbour and radius queries under the Euclidean distance between two points.
+ * <p>
+ * The tree is stored in flat primitive arrays rather than as linked nodes: the coordinates of all the points are
+ * copied into one <code>double[]</code>, which is then reordered in place so that the node for the range
+ * <code>[lo, hi)</code> is the point at its midpoint, split on the coordinate <code>depth % dimension</code>. Ranges
+ * larger than {@link #PARALLEL_THRESHOLD} are built on the common fork-join pool.
+ * <p>
+ * A tree cannot be changed once built, so any number of threads may query it at once.
+ *
+ * @param <P> the type of the indexed points
+ */
+public class KdTree<P extends Point> {
+
+    static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    private final int      dimension;
+    private final int      size;
+    private final double[] coords; //coords[i * dimension + d] is coordinate d of the i-th point in tree order
+    private final int[]    ids;    //ids[i] is the index, in the original list, of the i-th point in tree order
+    private final List<P>  points;
+
+    /**
+     * Builds a KD-tree over the specified points.
+     *
+     * @param points the points to index, which must all have the same dimension
+     * @throws IllegalArgumentException if the list is empty or the points are of different dimensions
+     */
+    public KdTree(List<? extends P> points) {
+        if (points.isEmpty())
+            throw new IllegalArgumentException("A KD-tree needs at least one point.");
+        this.points = Collections.unmodifiableList(new ArrayList<>(points));
+        this.size = points.size();
+        this.dimension = this.points.get(0).dimension();
+        this.coords = new double[size * dimension];
+        this.ids = new int[size];
+
+        List<P> source = this.points;
+        IntStream.range(0, size).parallel().forEach(i -> {
+            Point p = source.get(i);
+            if (p.dimension() != dimension)
+                throw new IllegalArgumentException("All the points of a KD-tree must have the same dimension.");
+            for (int d = 0; d < dimension; d++) {
+                coords[i * dimension + d] = p.coordinate(d);
+            }
+            ids[i] = i;
+        });
+
+        if (size > PARALLEL_THRESHOLD)
+            ForkJoinPool.commonPool().invoke(new Build(0, size, 0));
+        else
+            build(0, size, 0);
+    }
+
+    /**
+     * @return the number of points in this tree
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the dimension of the points in this tree
+     */
+    public int dimension() {
+        return dimension;
+    }
+
+    private final class Build extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int lo;
+        private final int hi;
+        private final int depth;
+
+        Build(int lo, int hi, int depth) {
+            this.lo = lo;
+            this.hi = hi;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= PARALLEL_THRESHOLD) {
+                build(lo, hi, depth);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            select(lo, hi, mid, depth % dimension);
+            invokeAll(new Build(lo, mid, depth + 1), new Build(mid + 1, hi, depth + 1));
+        }
+    }
+
+    private void build(int lo, int hi, int depth) {
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            select(lo, hi, mid, depth % dimension);
+            build(lo, mid, depth + 1);
+            lo = mid + 1;
+            depth++;
+        }
+    }
+
+    /**
+     * Reorders the range <code>[lo, hi)</code> so that the point at <code>k</code> is the one that would be there if
+     * the range were sorted on coordinate <code>d</code>, with no greater values before it and no smaller values after.
+     */
+    private void select(int lo, int hi, int k, int d) {
+        hi--;
+        while (hi > lo) {
+            int mid = (lo + hi) >>> 1;
+            //median of three as the pivot
+            if (value(mid, d) < value(lo, d))
+                swap(mid, lo);
+            if (value(hi, d) < value(lo, d))
+                swap(hi, lo);
+            if (value(mid, d) < value(hi, d))
+                swap(mid, hi);
+            double pivot = value(hi, d);
+
+            //three-way partition into [lo, lt) < pivot, [lt, gt] == pivot and (gt, hi] > pivot, so that runs of
+            //equal values, as on snapped or lattice points, are settled in one pass rather than one value at a time
+            int lt = lo;
+            int gt = hi;
+            int i = lo;
+            while (i <= gt) {
+                double v = value(i, d);
+                if (v < pivot)
+                    swap(lt++, i++);
+                else if (v > pivot)
+                    swap(i, gt--);
+                else
+                    i++;
+            }
+
+            if (k < lt)
+                hi = lt - 1;
+            else if (k > gt)
+                lo = gt + 1;
+            else
+                return;
+        }
+    }
+
+    private double value(int i, int d) {
+        return coords[i * dimension + d];
+    }
+
+    private void swap(int i, int j) {
+        if (i == j)
+            return;
+        int a = i * dimension;
+        int b = j * dimension;
+        for (int d = 0; d < dimension; d++) {
+            double t = coords[a + d];
+            coords[a + d] = coords[b + d];
+            coords[b + d] = t;
+        }
+        int t = ids[i];
+        ids[i] = ids[j];
+        ids[j] = t;
+    }
+
+    private double distanceSquared(int i, double[] q) {
+        double sum = 0;
+        int base = i * dimension;
+        for (int d = 0; d < dimension; d++) {
+            double diff = coords[base + d] - q[d];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    private double[] query(Point query) {
+        if (query.dimension() != dimension)
+            throw new IllegalArgumentException("The query point must have the same dimension as the tree.");
+        double[] q = new double[dimension];
+        for (int d = 0; d < dimension; d++) {
+            q[d] = query.coordinate(d);
+        }
+        return q;
+    }
+
+    /**
+     * Returns the <code>k</code> points of this tree closest to the specified point, nearest first.
+     *
+     * @param k     the number of points to return; fewer are returned if the tree holds fewer points
+     * @param query the point to search around
+     * @return the nearest points, in increasing order of their distance from <code>query</code>
+     * @throws IllegalArgumentException if <code>k</code> is negative, or the query point is of another dimension
+     */
+    public List<P> nearest(int k, Point query) {
+        int[] found = nearestIndices(k, query);
+        List<P> result = new ArrayList<>(found.length);
+        for (int id : found) {
+            result.add(points.get(id));
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #nearest}, but returns the indices of the points in the list the tree was built from.
+     */
+    public int[] nearestIndices(int k, Point query) {
+        if (k < 0)
+            throw new IllegalArgumentException("The number of neighbours cannot be negative.");
+        double[] q = query(query);
+        Neighbours heap = new Neighbours(Math.min(k, size));
+        if (heap.capacity > 0)
+            nearest(0, size, 0, q, heap);
+        return heap.drain();
+    }
+
+    private void nearest(int lo, int hi, int depth, double[] q, Neighbours heap) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            heap.offer(ids[mid], distanceSquared(mid, q));
+            double diff = q[depth % dimension] - value(mid, depth % dimension);
+            depth++;
+            if (diff < 0) {
+                nearest(lo, mid, depth, q, heap);
+                if (diff * diff > heap.worst())
+                    return;
+                lo = mid + 1;
+            }
+            else {
+                nearest(mid + 1, hi, depth, q, heap);
+                if (diff * diff > heap.worst())
+                    return;
+                hi = mid;
+            }
+        }
+    }
+
+    /**
+     * Returns every point of this tree whose distance from the specified point is at most <code>r</code>.
+     *
+     * @param r     the radius of the search
+     * @param query the point to search around
+     * @return the points within the radius, in no particular order
+     * @throws IllegalArgumentException if the query point is of another dimension
+     */
+    public List<P> withinRadius(double r, Point query) {
+        double[] q = query(query);
+        List<P> result = new ArrayList<>();
+        if (r >= 0)
+            withinRadius(0, size, 0, q, r * r, result);
+        return result;
+    }
+
+    private void withinRadius(int lo, int hi, int depth, double[] q, double r2, List<P> result) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (distanceSquared(mid, q) <= r2)
+                result.add(points.get(ids[mid]));
+            double diff = q[depth % dimension] - value(mid, depth % dimension);
+            depth++;
+            if (diff * diff <= r2) {
+                withinRadius(lo, mid, depth, q, r2, result);
+                lo = mid + 1;
+            }
+            else if (diff < 0)
+                hi = mid;
+            else
+                lo = mid + 1;
+        }
+    }
+
+    /**
+     * A bounded max-heap of candidate neighbours, keyed on their squared distance, held in two primitive arrays.
+     */
+    static final class Neighbours {
+        final int      capacity;
+        final int[]    ids;
+        final double[] distances;
+        int            size;
+
+        Neighbours(int capacity) {
+            this.capacity = capacity;
+            this.ids = new int[capacity];
+            this.distances = new double[capacity];
+        }
+
+        /**
+         * @return the squared distance a candidate must beat to enter the heap
+         */
+        double worst() {
+            return size < capacity ? Double.POSITIVE_INFINITY : distances[0];
+        }
+
+        void offer(int id, double distance) {
+            if (size < capacity) {
+                int i = size++;
+                while (i > 0 && distances[(i - 1) >>> 1] < distance) {
+                    int parent = (i - 1) >>> 1;
+                    ids[i] = ids[parent];
+                    distances[i] = distances[parent];
+                    i = parent;
+                }
+                ids[i] = id;
+                distances[i] = distance;
+            }
+            else if (distance < distances[0]) {
+                siftDown(id, distance, size);
+            }
+        }
+
+        private void siftDown(int id, double distance, int n) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= n)
+                    break;
+                if (child + 1 < n && distances[child + 1] > distances[child])
+                    child++;
+                if (distances[child] <= distance)
+                    break;
+                ids[i] = ids[child];
+                distances[i] = distances[child];
+                i = child;
+            }
+            ids[i] = id;
+            distances[i] = distance;
+        }
+
+        /**
+         * Empties the heap.
+         *
+         * @return the ids in the heap, nearest first
+         */
+        int[] drain() {
+            int[] sorted = new int[size];
+            for (int n = size; n > 0; n--) {
+                sorted[n - 1] = ids[0];
+                siftDown(ids[n - 1], distances[n - 1], n - 1);
+            }
+            size = 0;
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares {@link KdTree} queries against a brute-force scan over the same points, and checks that both give the same
+ * answers. Run with the number of points, the number of queries and <code>k</code> as optional arguments, e.g.
+ * <code>java KdTreeBenchmark 10000000 1000 10</code>.
+ */
+public class KdTreeBenchmark {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int k = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        Random random = new Random(42);
+        double[] xy = new double[2 * n];
+        for (int i = 0; i < xy.length; i++) {
+            xy[i] = random.nextDouble() * 1000;
+        }
+        List<TwoDPoint> points = TwoDPoint.ofDoubles(xy);
+        List<TwoDPoint> targets = new ArrayList<>();
+        for (int i = 0; i < queries; i++) {
+            targets.add(new TwoDPoint(random.nextDouble() * 1000, random.nextDouble() * 1000));
+        }
+        double radius = 1000 * Math.sqrt(k / (Math.PI * n));
+
+        long start = System.nanoTime();
+        KdTree<TwoDPoint> tree = new KdTree<>(points);
+        long build = System.nanoTime() - start;
+        System.out.printf("build of %,d points: %.1f ms%n", n, build / 1e6);
+
+        //one untimed round of each, so that both are compiled before they are measured
+        runTree(tree, targets, k, radius);
+        runBruteForce(points, targets, k, radius);
+
+        start = System.nanoTime();
+        long treeHits = runTree(tree, targets, k, radius);
+        long treeTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        long bruteHits = runBruteForce(points, targets, k, radius);
+        long bruteTime = System.nanoTime() - start;
+
+        System.out.printf("kd-tree:     %.3f ms per query (nearest %d + radius %.3f)%n", treeTime / 1e6 / queries, k,
+                          radius);
+        System.out.printf("brute force: %.3f ms per query%n", bruteTime / 1e6 / queries);
+        System.out.printf("speed-up:    %.1fx%n", (double) bruteTime / treeTime);
+        if (treeHits != bruteHits)
+            throw new IllegalStateException("The KD-tree and the brute-force scan disagree: " + treeHits + " vs. "
+                                                    + bruteHits);
+    }
+
+    /**
+     * @return a checksum of the answers, to compare with {@link #runBruteForce}
+     */
+    private static long runTree(KdTree<TwoDPoint> tree, List<TwoDPoint> targets, int k, double radius) {
+        long checksum = 0;
+        for (TwoDPoint q : targets) {
+            for (int id : tree.nearestIndices(k, q)) {
+                checksum += id;
+            }
+            checksum += tree.withinRadius(radius, q).size();
+        }
+        return checksum;
+    }
+
+    private static long runBruteForce(List<TwoDPoint> points, List<TwoDPoint> targets, int k, double radius) {
+        long checksum = 0;
+        double r2 = radius * radius;
+        for (TwoDPoint q : targets) {
+            KdTree.Neighbours heap = new KdTree.Neighbours(Math.min(k, points.size()));
+            int within = 0;
+            for (int i = 0; i < points.size(); i++) {
+                TwoDPoint p = points.get(i);
+                double dx = p.x() - q.x();
+                double dy = p.y() - q.y();
+                double d2 = dx * dx + dy * dy;
+                heap.offer(i, d2);
+                if (d2 <= r2)
+                    within++;
+            }
+            for (int id : heap.drain()) {
+                checksum += id;
+            }
+            checksum += within;
+        }
+        return checksum;
+    }
+}
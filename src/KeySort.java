@@ -0,0 +1,191 @@
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.IntStream;
+
+/**
+ * A sort engine for orderings that depend on a single <code>double</code> key per element, such as the least x-value
+ * or the area of a shape. Rather than computing the key of both operands on every comparison, as a
+ * {@link Comparator} does, it extracts the key of each element exactly once into a primitive array, sorts the
+ * positions of the elements on that array, and then moves the elements into place. Large inputs are handled by a
+ * parallel merge sort on the common fork-join pool.
+ * <p>
+ * Keys are ordered as by {@link Double#compare}, and the sort is stable.
+ */
+final class KeySort {
+
+    /**
+     * Inputs of at least this many elements have their keys extracted and sorted in parallel.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    private static final int INSERTION_THRESHOLD = 32;
+
+    private KeySort() { }
+
+    /**
+     * A comparator that orders elements by a single <code>double</code> key, so that {@link KeySort} can extract the
+     * key once per element instead of comparing elements pairwise.
+     *
+     * @param <T> the type of the compared elements
+     */
+    interface KeyedComparator<T> extends Comparator<T> {
+
+        /**
+         * @return the key of the specified element
+         */
+        double key(T t);
+
+        @Override
+        default int compare(T o1, T o2) {
+            return Double.compare(key(o1), key(o2));
+        }
+    }
+
+    /**
+     * Sorts the specified list in increasing order of the keys of the specified comparator.
+     */
+    static <T> void sort(List<T> list, KeyedComparator<? super T> comparator) {
+        sortBy(list, comparator::key);
+    }
+
+    /**
+     * Sorts the specified list in increasing order of the specified key.
+     *
+     * @param list the list to sort, in place
+     * @param key  the function that gives the key of each element; it is called exactly once per element
+     */
+    @SuppressWarnings("unchecked")
+    static <T> void sortBy(List<T> list, ToDoubleFunction<? super T> key) {
+        Object[] elements = list.toArray();
+        int n = elements.length;
+        if (n < 2)
+            return;
+
+        ShapeOperationEvent event = ShapeOperationEvent.begin("sort", n);
+        long[] keys = new long[n];
+        int[] order = new int[n];
+        if (n >= PARALLEL_THRESHOLD) {
+            IntStream.range(0, n).parallel().forEach(i -> {
+                keys[i] = sortable(key.applyAsDouble((T) elements[i]));
+                order[i] = i;
+            });
+        }
+        else {
+            for (int i = 0; i < n; i++) {
+                keys[i] = sortable(key.applyAsDouble((T) elements[i]));
+                order[i] = i;
+            }
+        }
+
+        sort(keys, order);
+
+        ListIterator<T> it = list.listIterator();
+        for (int i = 0; i < n; i++) {
+            it.next();
+            it.set((T) elements[order[i]]);
+        }
+        ShapeOperationEvent.end(event);
+    }
+
+    /**
+     * Maps a <code>double</code> to a <code>long</code> such that comparing two mapped values as signed longs gives the
+     * same result as {@link Double#compare} on the original values.
+     */
+    static long sortable(double d) {
+        long bits = Double.doubleToLongBits(d);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    /**
+     * Sorts <code>keys</code> in increasing order, stably, and applies the same reordering to <code>values</code>.
+     */
+    static void sort(long[] keys, int[] values) {
+        int n = keys.length;
+        long[] keyBuffer = new long[n];
+        int[] valueBuffer = new int[n];
+        if (n >= PARALLEL_THRESHOLD)
+            ForkJoinPool.commonPool().invoke(new MergeSort(keys, values, keyBuffer, valueBuffer, 0, n));
+        else
+            mergeSort(keys, values, keyBuffer, valueBuffer, 0, n);
+    }
+
+    private static final class MergeSort extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] keys;
+        private final int[]  values;
+        private final long[] keyBuffer;
+        private final int[]  valueBuffer;
+        private final int    lo;
+        private final int    hi;
+
+        MergeSort(long[] keys, int[] values, long[] keyBuffer, int[] valueBuffer, int lo, int hi) {
+            this.keys = keys;
+            this.values = values;
+            this.keyBuffer = keyBuffer;
+            this.valueBuffer = valueBuffer;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo < PARALLEL_THRESHOLD) {
+                mergeSort(keys, values, keyBuffer, valueBuffer, lo, hi);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new MergeSort(keys, values, keyBuffer, valueBuffer, lo, mid),
+                      new MergeSort(keys, values, keyBuffer, valueBuffer, mid, hi));
+            merge(keys, values, keyBuffer, valueBuffer, lo, mid, hi);
+        }
+    }
+
+    private static void mergeSort(long[] keys, int[] values, long[] keyBuffer, int[] valueBuffer, int lo, int hi) {
+        if (hi - lo <= INSERTION_THRESHOLD) {
+            for (int i = lo + 1; i < hi; i++) {
+                long k = keys[i];
+                int v = values[i];
+                int j = i - 1;
+                while (j >= lo && keys[j] > k) {
+                    keys[j + 1] = keys[j];
+                    values[j + 1] = values[j];
+                    j--;
+                }
+                keys[j + 1] = k;
+                values[j + 1] = v;
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        mergeSort(keys, values, keyBuffer, valueBuffer, lo, mid);
+        mergeSort(keys, values, keyBuffer, valueBuffer, mid, hi);
+        merge(keys, values, keyBuffer, valueBuffer, lo, mid, hi);
+    }
+
+    /**
+     * Merges the sorted ranges <code>[lo, mid)</code> and <code>[mid, hi)</code>, through the buffers.
+     */
+    private static void merge(long[] keys, int[] values, long[] keyBuffer, int[] valueBuffer, int lo, int mid, int hi) {
+        if (keys[mid - 1] <= keys[mid])
+            return;
+        System.arraycopy(keys, lo, keyBuffer, lo, hi - lo);
+        System.arraycopy(values, lo, valueBuffer, lo, hi - lo);
+        int i = lo;
+        int j = mid;
+        for (int k = lo; k < hi; k++) {
+            if (j >= hi || (i < mid && keyBuffer[i] <= keyBuffer[j])) {
+                keys[k] = keyBuffer[i];
+                values[k] = valueBuffer[i++];
+            }
+            else {
+                keys[k] = keyBuffer[j];
+                values[k] = valueBuffer[j++];
+            }
+        }
+    }
+}
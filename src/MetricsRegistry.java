@@ -0,0 +1,283 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional call counts, latencies and allocation estimates for the hot paths of the shapes. The operations that do
+ * work on each call, such as <code>setPosition</code>, <code>isMember</code> and the keys of the {@link Ordering}
+ * comparators, each have a {@link Timer}, which counts on {@link LongAdder}s, so that threads that record at once do
+ * not contend, and keeps a histogram of latencies in power-of-two buckets. {@link #snapshot()} reads all timers at
+ * once. Operations that only return a cached value, such as <code>area()</code>, take less time than reading the clock
+ * would, so they have a {@link Counter} of their calls instead, read by {@link #counts()}.
+ * <p>
+ * Instrumentation is off unless the JVM is started with the system property <code>shapes.metrics</code>:
+ * <code>-Dshapes.metrics=true</code> records counts and latencies, and <code>-Dshapes.metrics=allocation</code> also
+ * records the bytes each call allocates on its thread. The property is read once into a <code>static final</code>
+ * flag, so when it is off the JIT compiler removes the instrumentation from the compiled code altogether. When it is
+ * on, each recorded call costs two reads of the clock, and two reads of the allocation counter of its thread if
+ * allocation is recorded, and each counted call one increment.
+ * <p>
+ * Bulk operations, which take long enough to be seen one by one, such as {@link KeySort#sortBy} and
+ * {@link Snapping#snapAll}, are also reported as {@link ShapeOperationEvent}s to Java Flight Recorder while
+ * instrumentation is on. Calls on a single shape are only counted and timed here, and have no events of their own.
+ */
+public final class MetricsRegistry {
+
+    /**
+     * Whether instrumentation is on.
+     */
+    public static final boolean ENABLED;
+
+    /**
+     * Whether the bytes allocated by each call are recorded as well.
+     */
+    public static final boolean ALLOCATION;
+
+    private static final com.sun.management.ThreadMXBean THREADS;
+
+    static {
+        String mode = System.getProperty("shapes.metrics", "false");
+        ENABLED = mode.equals("true") || mode.equals("allocation");
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        boolean counted = threads instanceof com.sun.management.ThreadMXBean
+                          && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+                          && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled();
+        ALLOCATION = mode.equals("allocation") && counted;
+        THREADS = ALLOCATION ? (com.sun.management.ThreadMXBean) threads : null;
+    }
+
+    private static final ConcurrentMap<String, Timer>   TIMERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+
+    private MetricsRegistry() { }
+
+    /**
+     * @return the timer of the specified name, created on first use
+     */
+    public static Timer timer(String name) {
+        return TIMERS.computeIfAbsent(name, Timer::new);
+    }
+
+    /**
+     * @return the counter of the specified name, created on first use
+     */
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, n -> new Counter());
+    }
+
+    /**
+     * @return the current time, to pass to {@link Timer#stop}, or <code>0</code> if instrumentation is off
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * @return the number of bytes allocated so far by the current thread, to pass to {@link Timer#stop}, or
+     * <code>0</code> if allocation is not recorded
+     */
+    public static long allocated() {
+        return ALLOCATION ? THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    /**
+     * @return the values of every timer that has recorded at least one call, by name
+     */
+    public static SortedMap<String, TimerSnapshot> snapshot() {
+        SortedMap<String, TimerSnapshot> snapshot = new TreeMap<>();
+        for (Map.Entry<String, Timer> entry : TIMERS.entrySet()) {
+            TimerSnapshot values = entry.getValue().snapshot();
+            if (values.count() > 0)
+                snapshot.put(entry.getKey(), values);
+        }
+        return Collections.unmodifiableSortedMap(snapshot);
+    }
+
+    /**
+     * @return the number of calls counted by every counter that has counted at least one, by name
+     */
+    public static SortedMap<String, Long> counts() {
+        SortedMap<String, Long> counts = new TreeMap<>();
+        for (Map.Entry<String, Counter> entry : COUNTERS.entrySet()) {
+            long count = entry.getValue().count.sum();
+            if (count > 0)
+                counts.put(entry.getKey(), count);
+        }
+        return Collections.unmodifiableSortedMap(counts);
+    }
+
+    /**
+     * Resets every timer and counter to zero.
+     */
+    public static void reset() {
+        for (Timer timer : TIMERS.values()) {
+            timer.reset();
+        }
+        for (Counter counter : COUNTERS.values()) {
+            counter.count.reset();
+        }
+    }
+
+    /**
+     * The number of calls of one operation that is too cheap to time.
+     */
+    public static final class Counter {
+        private final LongAdder count = new LongAdder();
+
+        private Counter() { }
+
+        /**
+         * Records one call. This does nothing if instrumentation is off.
+         */
+        public void increment() {
+            if (ENABLED)
+                count.increment();
+        }
+    }
+
+    /**
+     * The counts of one instrumented operation.
+     */
+    public static final class Timer {
+        //bucket b counts the calls that took from 2^(b-1) up to 2^b - 1 nanoseconds, and bucket 0 those that took none
+        private static final int BUCKETS = 64;
+
+        private final String      name;
+        private final LongAdder   count = new LongAdder();
+        private final LongAdder   nanos = new LongAdder();
+        private final LongAdder   bytes = new LongAdder();
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+        private Timer(String name) {
+            this.name = name;
+            for (int b = 0; b < BUCKETS; b++) {
+                buckets[b] = new LongAdder();
+            }
+        }
+
+        /**
+         * Records one call, which started at the specified time and allocation count, e.g.
+         * <pre>
+         *     long start = MetricsRegistry.start();
+         *     long allocated = MetricsRegistry.allocated();
+         *     ...
+         *     TIMER.stop(start, allocated);
+         * </pre>
+         * This does nothing if instrumentation is off.
+         */
+        public void stop(long start, long allocated) {
+            if (!ENABLED)
+                return;
+            long elapsed = Math.max(0, System.nanoTime() - start);
+            count.increment();
+            nanos.add(elapsed);
+            buckets[BUCKETS - Long.numberOfLeadingZeros(elapsed)].increment();
+            if (ALLOCATION)
+                bytes.add(allocated() - allocated);
+        }
+
+        private TimerSnapshot snapshot() {
+            long[] histogram = new long[BUCKETS];
+            for (int b = 0; b < BUCKETS; b++) {
+                histogram[b] = buckets[b].sum();
+            }
+            return new TimerSnapshot(name, count.sum(), nanos.sum(), ALLOCATION ? bytes.sum() : -1, histogram);
+        }
+
+        private void reset() {
+            count.reset();
+            nanos.reset();
+            bytes.reset();
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+        }
+    }
+
+    /**
+     * The values of one timer at one moment. Calls that are recorded while the snapshot is taken may be counted in
+     * some of its values but not in others.
+     */
+    public static final class TimerSnapshot {
+        private final String name;
+        private final long   count;
+        private final long   totalNanos;
+        private final long   allocatedBytes;
+        private final long[] histogram;
+
+        TimerSnapshot(String name, long count, long totalNanos, long allocatedBytes, long[] histogram) {
+            this.name = name;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.histogram = histogram;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /**
+         * @return the number of calls
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * @return the total time spent in the calls, in nanoseconds
+         */
+        public long totalNanos() {
+            return totalNanos;
+        }
+
+        /**
+         * @return the mean time of a call, in nanoseconds, or <code>0</code> if there were no calls
+         */
+        public double meanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * @return an upper bound on the time within which the specified fraction of the calls completed, in
+         * nanoseconds, from the histogram; it is at most twice the exact value
+         */
+        public long percentileNanos(double fraction) {
+            long total = 0;
+            for (long n : histogram) {
+                total += n;
+            }
+            long rank = (long) Math.ceil(fraction * total);
+            long seen = 0;
+            for (int b = 0; b < histogram.length; b++) {
+                seen += histogram[b];
+                if (seen >= rank && seen > 0)
+                    return b == 0 ? 0 : (1L << b) - 1;
+            }
+            return 0;
+        }
+
+        /**
+         * @return the bytes allocated by the calls, or <code>-1</code> if allocation is not recorded
+         */
+        public long allocatedBytes() {
+            return allocatedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s[calls: %d, mean: %.1f ns, p50: %d ns, p99: %d ns, bytes/call: %s]",
+                                 name, count, meanNanos(), percentileNanos(0.5), percentileNanos(0.99),
+                                 allocatedBytes < 0 ? "n/a"
+                                                    : String.format(Locale.ROOT, "%.1f",
+                                                                    (double) allocatedBytes / Math.max(1, count)));
+        }
+    }
+}
@@ -0,0 +1,456 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * A store of two-dimensional shapes whose coordinates are kept outside the Java heap, in direct {@link ByteBuffer}s, so
+ * that the heap holds a handful of buffer objects per kind of shape however many shapes are stored, and the garbage
+ * collector has nothing to trace or copy for them.
+ * <p>
+ * Each kind of shape has its own section of fixed-size records, laid out as documented by {@link BufferShapes}, in
+ * little-endian order as in a {@link ShapeFile}. A section grows by whole chunks of about
+ * {@value #DEFAULT_CHUNK_BYTES} bytes, which are never moved once allocated. The vertices of triangles and
+ * quadrilaterals are put in the order documented by {@link Triangle#getPosition} as they are added. Shapes are indexed
+ * within their kind in the order they were added, and across kinds triangles first, then quadrilaterals, then circles,
+ * as in a {@link ShapeFile}.
+ * <p>
+ * The shapes of a store are read through flyweight views, which read their coordinates from the store on each call;
+ * the bulk passes {@link #areas}, {@link #perimeters}, {@link #totalArea}, {@link #totalPerimeter} and
+ * {@link #countMembers} read the sections directly and create no objects per shape, and run one chunk per task on the
+ * common fork-join pool once a section has at least {@value #PARALLEL_THRESHOLD} records.
+ * <p>
+ * {@link #close()} releases the store: every later call on it throws an {@link IllegalStateException}, and the memory
+ * of its chunks is freed once the views obtained from it are no longer reachable either. A store is not safe for
+ * concurrent modification, but any number of threads may read from it, or through its views, while it is not being
+ * modified.
+ */
+public final class OffHeapShapeStore implements AutoCloseable {
+
+    static final int DEFAULT_CHUNK_BYTES = 1 << 24;
+    static final int PARALLEL_THRESHOLD  = 1 << 15;
+
+    private Section triangleSection;
+    private Section quadSection;
+    private Section circleSection;
+
+    //scratch space used to put the vertices of a new shape in order
+    private final double[] xs = new double[4];
+    private final double[] ys = new double[4];
+
+    public OffHeapShapeStore() {
+        this(DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * Creates a store whose sections grow by chunks of at most the specified number of bytes, rounded down to whole
+     * records.
+     *
+     * @throws IllegalArgumentException if a chunk cannot hold a record of each kind
+     */
+    OffHeapShapeStore(int chunkBytes) {
+        if (chunkBytes < BufferShapes.QUADRILATERAL_BYTES)
+            throw new IllegalArgumentException("A chunk must hold at least one record: " + chunkBytes);
+        triangleSection = new Section(BufferShapes.TRIANGLE_BYTES, chunkBytes);
+        quadSection = new Section(BufferShapes.QUADRILATERAL_BYTES, chunkBytes);
+        circleSection = new Section(BufferShapes.CIRCLE_BYTES, chunkBytes);
+    }
+
+    /**
+     * The records of one kind of shape, in chunks of <code>perChunk</code> records each.
+     */
+    private static final class Section {
+        private final int    recordBytes;
+        private final int    perChunk;
+        private ByteBuffer[] chunks = new ByteBuffer[0];
+        private long         count;
+
+        Section(int recordBytes, int chunkBytes) {
+            this.recordBytes = recordBytes;
+            this.perChunk = chunkBytes / recordBytes;
+        }
+
+        /**
+         * @return the index of a new record at the end of this section, for which a chunk has been allocated
+         */
+        long append() {
+            if (count == (long) chunks.length * perChunk) {
+                chunks = Arrays.copyOf(chunks, chunks.length + 1);
+                chunks[chunks.length - 1] = ByteBuffer.allocateDirect(perChunk * recordBytes)
+                                                      .order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return count++;
+        }
+
+        ByteBuffer chunk(long i) {
+            if (i < 0 || i >= count)
+                throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length " + count);
+            return chunks[(int) (i / perChunk)];
+        }
+
+        int offset(long i) {
+            return (int) (i % perChunk) * recordBytes;
+        }
+
+        /**
+         * @return the number of records in chunk <code>c</code>
+         */
+        int records(int c) {
+            return (int) Math.min(perChunk, count - (long) c * perChunk);
+        }
+
+        /**
+         * @return the number of chunks that hold records
+         */
+        int used() {
+            return (int) ((count + perChunk - 1) / perChunk);
+        }
+
+        long bytes() {
+            return (long) chunks.length * perChunk * recordBytes;
+        }
+    }
+
+    private static Section section(Section s) {
+        if (s == null)
+            throw new IllegalStateException("The off-heap store is closed.");
+        return s;
+    }
+
+    /**
+     * Adds a triangle with the specified vertices to this store.
+     *
+     * @return the index of the new triangle among the triangles of this store
+     */
+    public long addTriangle(double x1, double y1, double x2, double y2, double x3, double y3) {
+        Section s = section(triangleSection);
+        xs[0] = x1; xs[1] = x2; xs[2] = x3;
+        ys[0] = y1; ys[1] = y2; ys[2] = y3;
+        Geometry.clockwise(xs, ys, 3);
+        long i = s.append();
+        putVertices(s.chunk(i), s.offset(i), 3);
+        return i;
+    }
+
+    /**
+     * Adds a quadrilateral with the specified vertices to this store.
+     *
+     * @return the index of the new quadrilateral among the quadrilaterals of this store
+     */
+    public long addQuadrilateral(double x1, double y1, double x2, double y2,
+                                 double x3, double y3, double x4, double y4) {
+        Section s = section(quadSection);
+        xs[0] = x1; xs[1] = x2; xs[2] = x3; xs[3] = x4;
+        ys[0] = y1; ys[1] = y2; ys[2] = y3; ys[3] = y4;
+        Geometry.clockwise(xs, ys, 4);
+        long i = s.append();
+        putVertices(s.chunk(i), s.offset(i), 4);
+        return i;
+    }
+
+    private void putVertices(ByteBuffer buffer, int offset, int n) {
+        for (int k = 0; k < n; k++) {
+            buffer.putDouble(offset + 16 * k, xs[k]);
+            buffer.putDouble(offset + 16 * k + 8, ys[k]);
+        }
+    }
+
+    /**
+     * Adds a circle centered at (x, y) of radius r to this store.
+     *
+     * @return the index of the new circle among the circles of this store
+     */
+    public long addCircle(double x, double y, double r) {
+        Section s = section(circleSection);
+        long i = s.append();
+        BufferShapes.putCircle(s.chunk(i), s.offset(i), x, y, r);
+        return i;
+    }
+
+    /**
+     * Copies the specified shape into this store.
+     *
+     * @param shape a {@link Triangle}, {@link Quadrilateral} or {@link Circle}
+     * @return the index of the copy among the shapes of its kind in this store
+     * @throws IllegalArgumentException if the shape is of any other type
+     */
+    public long add(TwoDShape shape) {
+        if (shape instanceof Circle) {
+            Circle c = (Circle) shape;
+            Point center = c.getPosition().get(0);
+            return addCircle(center.x(), center.y(), c.getRadius());
+        }
+        if (shape instanceof Triangle) {
+            List<? extends Point> v = ((Triangle) shape).getPosition();
+            Point a = v.get(0);
+            Point b = v.get(1);
+            Point c = v.get(2);
+            return addTriangle(a.x(), a.y(), b.x(), b.y(), c.x(), c.y());
+        }
+        if (shape instanceof Quadrilateral) {
+            List<? extends Point> v = ((Quadrilateral) shape).getPosition();
+            Point a = v.get(0);
+            Point b = v.get(1);
+            Point c = v.get(2);
+            Point d = v.get(3);
+            return addQuadrilateral(a.x(), a.y(), b.x(), b.y(), c.x(), c.y(), d.x(), d.y());
+        }
+        throw new IllegalArgumentException("Only triangles, quadrilaterals and circles can be stored.");
+    }
+
+    public long triangleCount() {
+        return section(triangleSection).count;
+    }
+
+    public long quadrilateralCount() {
+        return section(quadSection).count;
+    }
+
+    public long circleCount() {
+        return section(circleSection).count;
+    }
+
+    /**
+     * @return the number of shapes in this store
+     */
+    public long size() {
+        return triangleCount() + quadrilateralCount() + circleCount();
+    }
+
+    /**
+     * @return the number of bytes of memory allocated outside the heap for this store
+     */
+    public long offHeapBytes() {
+        return section(triangleSection).bytes() + section(quadSection).bytes() + section(circleSection).bytes();
+    }
+
+    /**
+     * @return a view of the i-th triangle of this store
+     */
+    public TwoDShape triangle(long i) {
+        Section s = section(triangleSection);
+        return BufferShapes.triangle(s.chunk(i), s.offset(i));
+    }
+
+    /**
+     * @return a view of the i-th quadrilateral of this store
+     */
+    public TwoDShape quadrilateral(long i) {
+        Section s = section(quadSection);
+        return BufferShapes.quadrilateral(s.chunk(i), s.offset(i));
+    }
+
+    /**
+     * @return a view of the i-th circle of this store
+     */
+    public TwoDShape circle(long i) {
+        Section s = section(circleSection);
+        return BufferShapes.circle(s.chunk(i), s.offset(i));
+    }
+
+    /**
+     * @return a view of the shape at the specified index across all kinds of shapes
+     */
+    public TwoDShape get(long index) {
+        long triangles = triangleCount();
+        long quads = quadrilateralCount();
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size());
+        if (index < triangles)
+            return triangle(index);
+        if (index < triangles + quads)
+            return quadrilateral(index - triangles);
+        return circle(index - triangles - quads);
+    }
+
+    /**
+     * @return a list of views of all the shapes in this store, which creates each view as it is accessed and reflects
+     * any shapes added later
+     * @throws IllegalStateException if the store holds more shapes than a list can
+     */
+    public List<TwoDShape> asList() {
+        section(triangleSection);
+        return new AbstractList<TwoDShape>() {
+            @Override
+            public TwoDShape get(int index) {
+                return OffHeapShapeStore.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                long size = OffHeapShapeStore.this.size();
+                if (size > Integer.MAX_VALUE)
+                    throw new IllegalStateException("Too many shapes for a list: " + size);
+                return (int) size;
+            }
+        };
+    }
+
+    /**
+     * A pass over the records of one chunk.
+     */
+    @FunctionalInterface
+    private interface ChunkPass {
+        /**
+         * @param first the index, across all kinds, of the shape of the first record of the chunk
+         * @return a partial result, to be summed over all chunks
+         */
+        double run(ByteBuffer chunk, int records, long first);
+    }
+
+    /**
+     * Runs the pass over every chunk of the section, in parallel if the section is large enough.
+     *
+     * @param first the index, across all kinds, of the first shape of the section
+     * @return the sum of the results of the pass
+     */
+    private static double pass(Section s, long first, ChunkPass pass) {
+        int chunks = s.used();
+        if (s.count >= PARALLEL_THRESHOLD)
+            return IntStream.range(0, chunks).parallel()
+                            .mapToDouble(c -> pass.run(s.chunks[c], s.records(c), first + (long) c * s.perChunk))
+                            .sum();
+        double sum = 0;
+        for (int c = 0; c < chunks; c++) {
+            sum += pass.run(s.chunks[c], s.records(c), first + (long) c * s.perChunk);
+        }
+        return sum;
+    }
+
+    private static double triangleArea(ByteBuffer b, int o) {
+        return Geometry.triangleArea(b.getDouble(o), b.getDouble(o + 8), b.getDouble(o + 16), b.getDouble(o + 24),
+                                     b.getDouble(o + 32), b.getDouble(o + 40));
+    }
+
+    private static double quadrilateralArea(ByteBuffer b, int o) {
+        return Geometry.quadrilateralArea(b.getDouble(o), b.getDouble(o + 8), b.getDouble(o + 16), b.getDouble(o + 24),
+                                          b.getDouble(o + 32), b.getDouble(o + 40), b.getDouble(o + 48),
+                                          b.getDouble(o + 56));
+    }
+
+    private static double circleArea(ByteBuffer b, int o) {
+        double r = b.getDouble(o + 16);
+        return Math.PI * r * r;
+    }
+
+    private static double trianglePerimeter(ByteBuffer b, int o) {
+        return Geometry.trianglePerimeter(b.getDouble(o), b.getDouble(o + 8), b.getDouble(o + 16), b.getDouble(o + 24),
+                                          b.getDouble(o + 32), b.getDouble(o + 40));
+    }
+
+    private static double quadrilateralPerimeter(ByteBuffer b, int o) {
+        return Geometry.quadrilateralPerimeter(b.getDouble(o), b.getDouble(o + 8), b.getDouble(o + 16),
+                                               b.getDouble(o + 24), b.getDouble(o + 32), b.getDouble(o + 40),
+                                               b.getDouble(o + 48), b.getDouble(o + 56));
+    }
+
+    private static double circlePerimeter(ByteBuffer b, int o) {
+        return 2 * Math.PI * b.getDouble(o + 16);
+    }
+
+    /**
+     * A metric of one record at a byte offset of a chunk.
+     */
+    @FunctionalInterface
+    private interface RecordMetric {
+        double of(ByteBuffer chunk, int offset);
+    }
+
+    /**
+     * Computes the metric of every record of the section into <code>out</code>, at the index of its shape across
+     * all kinds, or sums it if <code>out</code> is <code>null</code>.
+     */
+    private static double metric(Section s, long first, RecordMetric metric, double[] out) {
+        int bytes = s.recordBytes;
+        return pass(s, first, (chunk, records, start) -> {
+            double sum = 0;
+            for (int i = 0, o = 0; i < records; i++, o += bytes) {
+                double value = metric.of(chunk, o);
+                if (out != null)
+                    out[(int) (start + i)] = value;
+                sum += value;
+            }
+            return sum;
+        });
+    }
+
+    private double metrics(String operation, RecordMetric triangles, RecordMetric quads, RecordMetric circles,
+                           double[] out) {
+        Section t = section(triangleSection), q = section(quadSection), c = section(circleSection);
+        long n = t.count + q.count + c.count;
+        if (out != null && n > out.length)
+            throw new IllegalArgumentException("The output array is shorter than the store: " + out.length);
+        ShapeOperationEvent event = ShapeOperationEvent.begin(operation, n);
+        double result = metric(t, 0, triangles, out) + metric(q, t.count, quads, out)
+                        + metric(c, t.count + q.count, circles, out);
+        ShapeOperationEvent.end(event);
+        return result;
+    }
+
+    /**
+     * Computes the area of every shape in this store.
+     *
+     * @param out the array to fill, indexed as by {@link #get(long)}; its length must be at least {@link #size()}
+     */
+    public void areas(double[] out) {
+        metrics("offHeapAreas", OffHeapShapeStore::triangleArea, OffHeapShapeStore::quadrilateralArea,
+                OffHeapShapeStore::circleArea, out);
+    }
+
+    /**
+     * Computes the perimeter of every shape in this store.
+     *
+     * @param out the array to fill, indexed as by {@link #get(long)}; its length must be at least {@link #size()}
+     */
+    public void perimeters(double[] out) {
+        metrics("offHeapPerimeters", OffHeapShapeStore::trianglePerimeter, OffHeapShapeStore::quadrilateralPerimeter,
+                OffHeapShapeStore::circlePerimeter, out);
+    }
+
+    /**
+     * @return the sum of the areas of the shapes in this store
+     */
+    public double totalArea() {
+        return metrics("offHeapTotalArea", OffHeapShapeStore::triangleArea, OffHeapShapeStore::quadrilateralArea,
+                       OffHeapShapeStore::circleArea, null);
+    }
+
+    /**
+     * @return the sum of the perimeters of the shapes in this store
+     */
+    public double totalPerimeter() {
+        return metrics("offHeapTotalPerimeter", OffHeapShapeStore::trianglePerimeter,
+                       OffHeapShapeStore::quadrilateralPerimeter, OffHeapShapeStore::circlePerimeter, null);
+    }
+
+    /**
+     * Runs the <code>isMember</code> rules of {@link Triangle}, {@link Quadrilateral} and {@link Circle} over every
+     * shape in this store.
+     *
+     * @return the number of valid shapes
+     */
+    public long countMembers() {
+        RecordMetric triangles = (b, o) -> ShapeValidator.isMember(
+                ShapeValidator.triangle(b.getDouble(o), b.getDouble(o + 8), b.getDouble(o + 16),
+                                        b.getDouble(o + 24), b.getDouble(o + 32), b.getDouble(o + 40))) ? 1 : 0;
+        RecordMetric quads = (b, o) -> ShapeValidator.isMember(
+                ShapeValidator.quadrilateral(b.getDouble(o), b.getDouble(o + 8), b.getDouble(o + 16),
+                                             b.getDouble(o + 24), b.getDouble(o + 32), b.getDouble(o + 40),
+                                             b.getDouble(o + 48), b.getDouble(o + 56))) ? 1 : 0;
+        RecordMetric circles = (b, o) -> b.getDouble(o + 16) > 0 ? 1 : 0;
+        return (long) metrics("offHeapMembers", triangles, quads, circles, null);
+    }
+
+    /**
+     * Releases this store. Its memory is freed once the views obtained from it are no longer reachable either, which
+     * is when the garbage collector frees the underlying buffers.
+     */
+    @Override
+    public void close() {
+        triangleSection = null;
+        quadSection = null;
+        circleSection = null;
+    }
+}
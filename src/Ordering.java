@@ -6,34 +6,49 @@ public class Ordering {
     /**
      * A comparator for two-dimensional shapes, based on the vertex with the least x-value. That is, sorting with this
      * comparator must order all the shapes in a collection in increasing order of their least x-valued vertex.
+     * <p>
+     * The comparator is keyed on the least x-value, so {@link KeySort#sort} can sort with it while computing that
+     * value only once per shape.
      */
-    static class XLocationShapeComparator implements Comparator<TwoDShape> {
+    static class XLocationShapeComparator implements KeySort.KeyedComparator<TwoDShape> {
+        private static final MetricsRegistry.Timer KEY = MetricsRegistry.timer("ordering.shapeLeastX");
+
         @Override
-        public int compare(TwoDShape o1, TwoDShape o2) {
-            TwoDShape[] shapes = {o1, o2};
-            double[] xs = new double[2];
-            for (int i = 0; i < 2; i++) {
-                if (shapes[i] instanceof Triangle) {
-                    Point least = ((Triangle) shapes[i]).getPosition().get(0);
-                    xs[i] = least.coordinates()[0];
-                }
-                else if (shapes[i] instanceof Quadrilateral) {
-                    Point least = ((Quadrilateral) shapes[i]).getPosition().get(0);
-                    xs[i] = least.coordinates()[0];
-                }
-                else if (shapes[i] instanceof Circle) {
-                    Point least = ((Circle) shapes[i]).getPosition().get(0);
-                    xs[i] = least.coordinates()[0] - ((Circle) shapes[i]).getRadius();
-                }
+        public double key(TwoDShape shape) {
+            long start = MetricsRegistry.start();
+            long allocated = MetricsRegistry.allocated();
+            double key = leastX(shape);
+            KEY.stop(start, allocated);
+            return key;
+        }
+
+        /**
+         * @return the least x-value of the specified shape, read from the least x-valued vertex of a triangle or
+         * quadrilateral and from the center and radius of a circle, and from the bounding box of any other shape
+         */
+        static double leastX(TwoDShape shape) {
+            if (shape instanceof Triangle)
+                return ((Triangle) shape).getPosition().get(0).x();
+            else if (shape instanceof Quadrilateral)
+                return ((Quadrilateral) shape).getPosition().get(0).x();
+            else if (shape instanceof Circle) {
+                Point center = ((Circle) shape).getPosition().get(0);
+                return center.x() - ((Circle) shape).getRadius();
             }
-            return (int) (xs[0] - xs[1]);
+            return shape.boundingBox().minX();
         }
     }
 
-    static class XLocationPointComparator implements Comparator<TwoDPoint> {
+    static class XLocationPointComparator implements KeySort.KeyedComparator<TwoDPoint> {
+        private static final MetricsRegistry.Timer KEY = MetricsRegistry.timer("ordering.pointX");
+
         @Override
-        public int compare(TwoDPoint o1, TwoDPoint o2) {
-            return (int) (o1.coordinates()[0] - o2.coordinates()[0]);
+        public double key(TwoDPoint p) {
+            long start = MetricsRegistry.start();
+            long allocated = MetricsRegistry.allocated();
+            double key = p.x();
+            KEY.stop(start, allocated);
+            return key;
         }
     }
 
@@ -61,13 +76,13 @@ public class Ordering {
         copy(new ArrayList<Circle>(), shapes); // note-1 //
 
         // sorting 2d shapes according to various criteria
-        shapes.sort(new XLocationShapeComparator());
-        Collections.sort(shapes, TwoDShape::compareTo); // TODO: Must sort the two-dimensional shapes in increasing of their area
+        KeySort.sort(shapes, new XLocationShapeComparator());
+        KeySort.sortBy(shapes, TwoDShape::area); // TODO: Must sort the two-dimensional shapes in increasing of their area
 
         // sorting 2d points according to various criteria
         // TODO: Implement a static nested class so that uncommenting the following line works. The XLocationPointComparator must sort all the points in a collection in increasing order of their x-values.
-        points.sort(new XLocationPointComparator());
-        Collections.sort(points, Point::compareTo); // TODO: Must sort the points in increasing order of their distance from the origin
+        KeySort.sort(points, new XLocationPointComparator());
+        KeySort.sortBy(points, Point::distance); // TODO: Must sort the points in increasing order of their distance from the origin
 
 
 
@@ -133,15 +148,12 @@ public class Ordering {
      * @param aList    the list of provided two-dimensional shape instances
      * @param aPrinter the specified printer instance
      * @return the least element from <code>aList</code>, as per the natural ordering of the shapes
+     * @see ShapeReduction#printAll
      */
     static TwoDShape printAllAndReturnLeast(List<? extends TwoDShape> aList, AbstractPrinter<TwoDShape> aPrinter) {
-        TwoDShape least = aList.get(0);
-        for (TwoDShape t : aList) {
-            if (least.compareTo(t) > 0)
-                least = t;
-            aPrinter.print(t);
-        }
-        return least;
+        if (aList.isEmpty())
+            throw new IndexOutOfBoundsException("There is no least element in an empty list.");
+        return ShapeReduction.printAll(aList, aPrinter, 0).least();
     }
 }
 
@@ -8,10 +8,49 @@ public interface Point {
      */
     double[] coordinates();
 
+    /**
+     * @return the number of coordinates of this point (i.e., the dimension of its geometric space).
+     */
+    default int dimension() {
+        return coordinates().length;
+    }
+
+    /**
+     * Returns a single coordinate of this point without copying all of them into a new array.
+     *
+     * @param i the index of the coordinate, where <code>0</code> is the x-coordinate.
+     * @return the coordinate of this point at index <code>i</code>.
+     * @throws IndexOutOfBoundsException if <code>i</code> is not less than the dimension of this point.
+     */
+    default double coordinate(int i) {
+        return coordinates()[i];
+    }
+
+    /**
+     * @return the x-coordinate of this point.
+     */
+    default double x() {
+        return coordinate(0);
+    }
+
+    /**
+     * @return the y-coordinate of this point.
+     */
+    default double y() {
+        return coordinate(1);
+    }
+
+    /**
+     * @return the z-coordinate of this point, or <code>0</code> if this point has fewer than three coordinates.
+     */
+    default double z() {
+        return dimension() > 2 ? coordinate(2) : 0;
+    }
+
     default double distance() {
         double sum = 0;
-        for (int i = 0; i < coordinates().length; i++) {
-            sum += coordinates()[i];
+        for (int i = 0, n = dimension(); i < n; i++) {
+            sum += coordinate(i);
         }
         return Math.sqrt(sum);
     }
@@ -0,0 +1,158 @@
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of canonical {@link TwoDPoint} instances, so that shapes whose vertices repeat the same coordinates,
+ * as snapped shapes on a small integer lattice do, can share one point object per coordinate pair instead of holding
+ * copies of their own.
+ * <p>
+ * The cache is a two-way set-associative table: each coordinate pair hashes to a pair of adjacent slots, the first of
+ * which holds the most recently added point of the pair. A new point goes into the first slot and moves the point there
+ * to the second, evicting the point that was in the second. Lookups and replacements are plain reads and writes of an
+ * {@link AtomicReferenceArray}, so the cache takes no lock and any number of threads may use it at once. A race on a
+ * pair of slots may make two threads create equal points, or evict a point early, but never hands out a point with
+ * coordinates other than the ones asked for. The table never grows, so its memory is fixed at creation, and points
+ * that are no longer in it are left to the garbage collector like any other.
+ * <p>
+ * Hits and misses are counted on {@link LongAdder}s, which stay cheap when many threads count at once.
+ */
+public class PointInterner {
+
+    private final AtomicReferenceArray<TwoDPoint> table;
+    private final int                             mask;
+    private final LongAdder                       hits = new LongAdder();
+    private final LongAdder                       misses = new LongAdder();
+
+    /**
+     * Creates an empty cache with at least the specified number of slots, rounded up to a power of two, and to at least
+     * two.
+     *
+     * @throws IllegalArgumentException if the capacity is not positive, or greater than <code>2^30</code>
+     */
+    public PointInterner(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30)
+            throw new IllegalArgumentException("The capacity of an interner must be between 1 and 2^30: " + capacity);
+        int slots = Math.max(2, Integer.highestOneBit(capacity));
+        if (slots < capacity)
+            slots <<= 1;
+        table = new AtomicReferenceArray<>(slots);
+        mask = slots - 1;
+    }
+
+    /**
+     * @return the number of slots of this cache
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return the cached point at (x, y), or a new one, which is then cached
+     */
+    public TwoDPoint intern(double x, double y) {
+        int slot = slot(x, y);
+        TwoDPoint cached = lookup(slot, x, y);
+        if (cached != null)
+            return cached;
+        TwoDPoint point = new TwoDPoint(x, y);
+        add(slot, point);
+        return point;
+    }
+
+    /**
+     * @return the cached point equal to the specified point, or the point itself, which is then cached
+     */
+    public TwoDPoint intern(TwoDPoint point) {
+        int slot = slot(point.x(), point.y());
+        TwoDPoint cached = lookup(slot, point.x(), point.y());
+        if (cached != null)
+            return cached;
+        add(slot, point);
+        return point;
+    }
+
+    /**
+     * @return the point at (x, y) in the pair of slots starting at <code>slot</code>, or <code>null</code>, counting
+     * the lookup as a hit or a miss
+     */
+    private TwoDPoint lookup(int slot, double x, double y) {
+        TwoDPoint first = table.get(slot);
+        if (first != null && same(first, x, y)) {
+            hits.increment();
+            return first;
+        }
+        TwoDPoint second = table.get(slot + 1);
+        if (second != null && same(second, x, y)) {
+            hits.increment();
+            return second;
+        }
+        misses.increment();
+        return null;
+    }
+
+    private void add(int slot, TwoDPoint point) {
+        TwoDPoint first = table.get(slot);
+        if (first != null)
+            table.set(slot + 1, first);
+        table.set(slot, point);
+    }
+
+    private static boolean same(TwoDPoint p, double x, double y) {
+        return Double.compare(p.x(), x) == 0 && Double.compare(p.y(), y) == 0;
+    }
+
+    /**
+     * Mixes the bits of both coordinates, so that the points of a small lattice, whose coordinates differ only in a
+     * few high-order bits, spread over the whole table.
+     *
+     * @return the first of the pair of slots of (x, y)
+     */
+    private int slot(double x, double y) {
+        long h = Double.doubleToLongBits(x) * 0x9E3779B97F4A7C15L + Double.doubleToLongBits(y);
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 32;
+        return (int) h & mask & ~1;
+    }
+
+    /**
+     * @return the number of lookups that found a cached point
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of lookups that did not find a cached point
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the fraction of lookups that found a cached point, or <code>0</code> if there were none
+     */
+    public double hitRate() {
+        long hits = hits();
+        long lookups = hits + misses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Empties this cache and resets its counts.
+     */
+    public void clear() {
+        for (int i = 0; i <= mask; i++) {
+            table.set(i, null);
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "PointInterner[capacity: %d, hits: %d, misses: %d, hit rate: %.3f]",
+                             capacity(), hits(), misses(), hitRate());
+    }
+}
@@ -2,12 +2,22 @@ import java.util.*;
 
 public class Quadrilateral implements TwoDShape, Positionable {
 
+    private static final MetricsRegistry.Timer SET_POSITION = MetricsRegistry.timer("quadrilateral.setPosition");
+    private static final MetricsRegistry.Timer IS_MEMBER    = MetricsRegistry.timer("quadrilateral.isMember");
+    private static final MetricsRegistry.Counter AREA       = MetricsRegistry.counter("quadrilateral.area");
+
     List<TwoDPoint> vertices;
 
+    //derived from the vertices whenever the position is set, so that repeated queries need not recompute them
+    private List<TwoDPoint> position;
+    private double          area;
+    private double          perimeter;
+    private BoundingBox     bounds;
+
     public Quadrilateral(List<TwoDPoint> vertices) {
         try {
             if (isMember(vertices))
-                this.vertices = vertices;
+                update(vertices);
             else
                 throw new IllegalArgumentException("Invalid inputs for a quadrilateral.");
         }
@@ -25,31 +35,14 @@ public class Quadrilateral implements TwoDShape, Positionable {
      */
     @Override
     public void setPosition(List<? extends Point> points) {
-        double[] centroid = new double[2];
-        for (int i = 0; i < 2; i++) {
-            for (int j = 0; j < 4; j++) {
-                centroid[i] += points.get(j).coordinates()[i];
-            }
-            centroid[i] = centroid[i] / 4;
-        }
-
-        double[] angles = new double[4];
-        HashMap<Double, TwoDPoint> reference = new HashMap<>();
-        for (int i = 0; i < 4; i++) {
-            double x = points.get(i).coordinates()[0];
-            double y = points.get(i).coordinates()[1];
-            angles[i] = Math.atan2(x - centroid[0], y - centroid[1]);
-            reference.put(angles[i], (TwoDPoint) points.get(i));
-        }
-
-        Arrays.sort(angles);
-        //Collections.reverse(Arrays.asList(angles));
-
-        List<TwoDPoint> temp = new ArrayList<>();
+        long start = MetricsRegistry.start();
+        long allocated = MetricsRegistry.allocated();
+        List<TwoDPoint> corners = new ArrayList<>(4);
         for (int i = 0; i < 4; i++) {
-            temp.add(reference.get(angles[i]));
+            corners.add((TwoDPoint) points.get(i));
         }
-        vertices = temp;
+        update(corners);
+        SET_POSITION.stop(start, allocated);
     }
 
     /**
@@ -61,48 +54,33 @@ public class Quadrilateral implements TwoDShape, Positionable {
      */
     @Override
     public List<? extends Point> getPosition() {
-        List<TwoDPoint> temp = vertices;
-        //this contains the indices of the vertices with the same minimum x value
-        ArrayList<Integer> minXi = new ArrayList<>();
-
-        //the 0th x is taken out so that in finding the min x values, there will be no error
-        double minx = vertices.get(0).coordinates()[0];
-        minXi.add(0);
-
-        //find the minimum x values
-        for (int i = 1; i < 4; i++) {
-            double x = vertices.get(i).coordinates()[0];
-            if (x < minx) {
-                minx = x;
-                //because a new minimum was found, clear minXi to store the index of a new minimum x
-                minXi.clear();
-                minXi.add(i);
-            }
-            else if (x == minx)
-                minXi.add(i);
-        }
-
-        //the only values within minXi should be equal, because there can only be one minimum value and its duplicates.
-        double miny = vertices.get(minXi.get(0)).coordinates()[1];
-        int minyIndex = minXi.get(0);
-
-        //find the minimum y value
-        for (int i = 1; i < minXi.size(); i++) {
-            double y = vertices.get(i).coordinates()[1];
-            if (y < miny) {
-                miny = y;
-                minyIndex = i;
-            }
-        }
+        return position;
+    }
 
-        setPosition(vertices);
-        List<TwoDPoint> clockwise = new ArrayList<>();
+    /**
+     * Puts the specified corners in the order documented by {@link #getPosition()}, and computes the values derived
+     * from them once, so that later calls to {@link #area()}, {@link #perimeter()}, {@link #getPosition()} and
+     * {@link #boundingBox()} need not.
+     *
+     * @param corners the vertices of this quadrilateral, in any order.
+     */
+    private void update(List<TwoDPoint> corners) {
+        vertices = Geometry.clockwise(corners, 4);
+        position = Collections.unmodifiableList(vertices);
+        bounds = Geometry.bounds(vertices, 4);
+        TwoDPoint p0 = vertices.get(0), p1 = vertices.get(1), p2 = vertices.get(2), p3 = vertices.get(3);
+        area = Geometry.quadrilateralArea(p0.x(), p0.y(), p1.x(), p1.y(), p2.x(), p2.y(), p3.x(), p3.y());
+        perimeter = Geometry.quadrilateralPerimeter(p0.x(), p0.y(), p1.x(), p1.y(), p2.x(), p2.y(), p3.x(), p3.y());
+    }
 
-        for (int i = 0; i < 4; i++) {
-            clockwise.add(vertices.get((minyIndex + i) % 4));
-        }
-        vertices = temp;
-        return clockwise;
+    /**
+     * @return an immutable copy of this quadrilateral, which may be shared between threads
+     * @throws IllegalStateException if this quadrilateral was never given a valid position
+     */
+    public QuadrilateralSnapshot snapshot() {
+        if (vertices == null)
+            throw new IllegalStateException("An invalid quadrilateral has no snapshot.");
+        return new QuadrilateralSnapshot(position, area, perimeter, bounds);
     }
 
     /**
@@ -119,38 +97,18 @@ public class Quadrilateral implements TwoDShape, Positionable {
      *
      * @param vertices the list of vertices to check against, where each vertex is a <code>Point</code> type.
      * @return <code>true</code> if <code>vertices</code> is a valid collection of points for a quadrilateral, and
-     * <code>false</code> otherwise. For example, if three of the four vertices are in a straight line is invalid.
+     * <code>false</code> otherwise. For example, if three of the four vertices are in a straight line is invalid. A list
+     * of fewer than four points is invalid.
      */
     @Override
     public boolean isMember(List<? extends Point> vertices) {
-        List<TwoDPoint> temp = this.vertices;
-        setPosition(vertices); //sets all points in quadrilateral clockwise
-
-        //triangle of points 1 2 3
-        List<TwoDPoint> points0 = this.vertices.subList(0,3);
-        Triangle triangle0 = new Triangle(points0);
-
-        //triangle of points 1 2 4
-        List<TwoDPoint> points1 = new ArrayList<>();
-        points1.add(this.vertices.get(0));
-        points1.add(this.vertices.get(1));
-        points1.add(this.vertices.get(3));
-        Triangle triangle1 = new Triangle(points1);
-
-        //triangle of points 2 3 4
-        List<TwoDPoint> points2= this.vertices.subList(1,4);
-        Triangle triangle2 = new Triangle(points2);
-
-        //triangle of points 1 3 4
-        List<TwoDPoint> points3 = new ArrayList<>();
-        points3.add(this.vertices.get(0));
-        points3.add(this.vertices.get(2));
-        points3.add(this.vertices.get(3));
-        Triangle triangle3 = new Triangle(points3);
-
-        this.vertices = temp;
-
-        return triangle0.isMember(points0) && triangle1.isMember(points1) && triangle2.isMember(points2) && triangle3.isMember(points3);
+        long start = MetricsRegistry.start();
+        long allocated = MetricsRegistry.allocated();
+        //no three of the vertices may be in a straight line. This does not depend on the order of the vertices, so
+        //edges that cross in the given order are fine: the vertices are put in clockwise order before they are used.
+        boolean member = ShapeValidator.isMember(ShapeValidator.check(vertices, 4));
+        IS_MEMBER.stop(start, allocated);
+        return member;
     }
 
     /**
@@ -161,77 +119,78 @@ public class Quadrilateral implements TwoDShape, Positionable {
      * Snapping is an in-place procedure, and the current instance is modified.
      */
     public void snap() {
-        List<TwoDPoint> v = new ArrayList<>();
-        double[] xcoords = new double[4];
-        double[] ycoords = new double[4];
-        for (int i = 0; i < 4; i++) {
-            xcoords[i] = vertices.get(i).coordinates()[0];
-            ycoords[i] = vertices.get(i).coordinates()[1];
-        }
+        trySnap();
+    }
 
-        for (int i = 0; i < 4; i++) {
-            xcoords[i] = Math.round(xcoords[i]);
-            ycoords[i] = Math.round(ycoords[i]);
-            TwoDPoint rounded = new TwoDPoint(xcoords[i], ycoords[i]);
-            v.add(rounded);
-        }
-        vertices = v;
+    /**
+     * Snaps this quadrilateral as documented by {@link #snap()}.
+     *
+     * @return <code>false</code> if snapping would have made this quadrilateral invalid, in which case it is left
+     * unchanged
+     */
+    boolean trySnap() {
+        List<TwoDPoint> v = Snapping.round(vertices, 4);
+        if (!ShapeValidator.isMember(ShapeValidator.check(v, 4)))
+            return false;
+        if (v != vertices)
+            update(v);
+        return true;
     }
 
     /**
      * @return the area of this quadrilateral
      */
     public double area() {
-        List<TwoDPoint> temp = this.vertices;
-        setPosition(vertices);
-
-        List<TwoDPoint> points0 = this.vertices.subList(0,3);
-        Triangle triangle0 = new Triangle(points0);
-
-        List<TwoDPoint> points1 = new ArrayList<>();
-        points1.add(this.vertices.get(0));
-        points1.add(this.vertices.get(2));
-        points1.add(this.vertices.get(3));
-        Triangle triangle1 = new Triangle(points1);
-
-        this.vertices = temp;
-        return triangle0.area() + triangle1.area();
+        AREA.increment();
+        return area;
     }
 
     /**
      * @return the perimeter (i.e., the total length of the boundary) of this quadrilateral
      */
     public double perimeter() {
-        List<TwoDPoint> temp = this.vertices;
-        setPosition(vertices);
-        double perimeter = 0;
-        for (int i = 0; i < 4; i++) {
-            if (i == 3)
-                perimeter += Math.hypot(vertices.get(i).coordinates()[0] - vertices.get(0).coordinates()[0], vertices.get(i).coordinates()[1] - vertices.get(0).coordinates()[1]);
-            else
-                perimeter += Math.hypot(vertices.get(i).coordinates()[0] - vertices.get(i + 1).coordinates()[0], vertices.get(i).coordinates()[1] - vertices.get(i + 1).coordinates()[1]);
-        }
-        this.vertices = temp;
         return perimeter;
     }
 
-    public String toString() {
-        List<TwoDPoint> temp = vertices;
-        setPosition(vertices);
+    /**
+     * @return the smallest axis-aligned box that contains this quadrilateral
+     */
+    @Override
+    public BoundingBox boundingBox() {
+        return bounds;
+    }
+
+    /**
+     * @return <code>true</code> if this quadrilateral contains the point (x, y), or has it on its boundary
+     */
+    @Override
+    public boolean contains(double x, double y) {
+        TwoDPoint a = vertices.get(0);
+        TwoDPoint b = vertices.get(1);
+        TwoDPoint c = vertices.get(2);
+        TwoDPoint d = vertices.get(3);
+        return Geometry.quadrilateralContains(a.x(), a.y(), b.x(), b.y(), c.x(), c.y(), d.x(), d.y(), x, y);
+    }
 
-        double x1 = vertices.get(0).coordinates()[0];
-        double y1 = vertices.get(0).coordinates()[1];
+    public String toString() {
+        return toString(vertices);
+    }
 
-        double x2 = vertices.get(1).coordinates()[0];
-        double y2 = vertices.get(1).coordinates()[1];
+    /**
+     * @return the specified vertices, formatted as by {@link #toString()}
+     */
+    static String toString(List<? extends Point> vertices) {
+        double x1 = vertices.get(0).x();
+        double y1 = vertices.get(0).y();
 
-        double x3 = vertices.get(2).coordinates()[0];
-        double y3 = vertices.get(2).coordinates()[1];
+        double x2 = vertices.get(1).x();
+        double y2 = vertices.get(1).y();
 
-        double x4 = vertices.get(3).coordinates()[0];
-        double y4 = vertices.get(3).coordinates()[1];
+        double x3 = vertices.get(2).x();
+        double y3 = vertices.get(2).y();
 
-        vertices = temp;
+        double x4 = vertices.get(3).x();
+        double y4 = vertices.get(3).y();
 
         return "Quadrilateral[(" + x1 + ", " + y1 + "), (" + x2 + ", " + y2 + "), (" + x3 + ", " + y3 + "), (" + x4 + ", " + y4 + ")]";
     }
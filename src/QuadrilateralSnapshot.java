@@ -0,0 +1,122 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable quadrilateral, as documented by {@link ShapeSnapshot}. Two snapshots are equal if their vertices are.
+ */
+public final class QuadrilateralSnapshot implements ShapeSnapshot {
+
+    private final List<TwoDPoint> vertices;
+    private final double          area;
+    private final double          perimeter;
+    private final BoundingBox     bounds;
+
+    /**
+     * Takes the vertices, already in clockwise order, and the values derived from them as they are, so that a
+     * snapshot of a {@link Quadrilateral} need not compute them again.
+     */
+    QuadrilateralSnapshot(List<? extends TwoDPoint> vertices, double area, double perimeter, BoundingBox bounds) {
+        this.vertices = Collections.unmodifiableList(new ArrayList<>(vertices));
+        this.area = area;
+        this.perimeter = perimeter;
+        this.bounds = bounds;
+    }
+
+    /**
+     * @return a quadrilateral with the first four of the specified points as its vertices, in any order
+     * @throws IllegalArgumentException if the points are not {@link TwoDPoint} instances, or not a valid
+     *                                  quadrilateral, as by {@link Quadrilateral#isMember}
+     */
+    public static QuadrilateralSnapshot of(List<? extends Point> points) {
+        if (!ShapeValidator.isMember(ShapeValidator.check(points, 4)))
+            throw new IllegalArgumentException("Invalid inputs for a quadrilateral.");
+        List<TwoDPoint> corners = new ArrayList<>(4);
+        for (int i = 0; i < 4; i++) {
+            if (!(points.get(i) instanceof TwoDPoint))
+                throw new IllegalArgumentException("The input does not consist of TwoDPoint instances.");
+            corners.add((TwoDPoint) points.get(i));
+        }
+        List<TwoDPoint> v = Geometry.clockwise(corners, 4);
+        TwoDPoint p0 = v.get(0), p1 = v.get(1), p2 = v.get(2), p3 = v.get(3);
+        return new QuadrilateralSnapshot(
+                v,
+                Geometry.quadrilateralArea(p0.x(), p0.y(), p1.x(), p1.y(), p2.x(), p2.y(), p3.x(), p3.y()),
+                Geometry.quadrilateralPerimeter(p0.x(), p0.y(), p1.x(), p1.y(), p2.x(), p2.y(), p3.x(), p3.y()),
+                Geometry.bounds(v, 4));
+    }
+
+    @Override
+    public List<TwoDPoint> vertices() {
+        return vertices;
+    }
+
+    @Override
+    public QuadrilateralSnapshot withPosition(List<? extends Point> points) {
+        return of(points);
+    }
+
+    @Override
+    public QuadrilateralSnapshot snapped() {
+        List<TwoDPoint> v = Snapping.round(vertices, 4);
+        if (v == vertices || !ShapeValidator.isMember(ShapeValidator.check(v, 4)))
+            return this;
+        return of(v);
+    }
+
+    /**
+     * @return a new mutable quadrilateral with the vertices of this snapshot
+     */
+    public Quadrilateral toQuadrilateral() {
+        return new Quadrilateral(new ArrayList<>(vertices));
+    }
+
+    @Override
+    public int numSides() {
+        return 4;
+    }
+
+    @Override
+    public boolean isMember(List<? extends Point> vertices) {
+        return ShapeValidator.isMember(ShapeValidator.check(vertices, 4));
+    }
+
+    @Override
+    public double area() {
+        return area;
+    }
+
+    @Override
+    public double perimeter() {
+        return perimeter;
+    }
+
+    @Override
+    public BoundingBox boundingBox() {
+        return bounds;
+    }
+
+    @Override
+    public boolean contains(double x, double y) {
+        TwoDPoint a = vertices.get(0);
+        TwoDPoint b = vertices.get(1);
+        TwoDPoint c = vertices.get(2);
+        TwoDPoint d = vertices.get(3);
+        return Geometry.quadrilateralContains(a.x(), a.y(), b.x(), b.y(), c.x(), c.y(), d.x(), d.y(), x, y);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof QuadrilateralSnapshot && vertices.equals(((QuadrilateralSnapshot) o).vertices);
+    }
+
+    @Override
+    public int hashCode() {
+        return vertices.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return Quadrilateral.toString(vertices);
+    }
+}
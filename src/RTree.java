@@ -0,0 +1,347 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * An R-tree over the bounding boxes of two-dimensional shapes. A tree built from a collection is bulk-loaded with
+ * Sort-Tile-Recursive (STR) packing, which fills every node and keeps sibling nodes from overlapping much. Later
+ * insertions descend to the child whose box grows the least and split overfull nodes along the axis with the larger
+ * spread. Removal shrinks the boxes on the way back up and drops empty nodes, but does not rebalance underfull ones,
+ * so a tree that has seen heavy churn can be rebuilt from its shapes to restore the packed layout.
+ * <p>
+ * An R-tree is not safe for concurrent modification, but any number of threads may query it at once.
+ *
+ * @param <T> the type of the indexed shapes
+ */
+public class RTree<T extends TwoDShape> implements SpatialIndex<T> {
+
+    static final int MAX_ENTRIES = 16;
+
+    private static final class Node {
+        final boolean  leaf;
+        int            count;
+        final double[] minX     = new double[MAX_ENTRIES + 1];
+        final double[] minY     = new double[MAX_ENTRIES + 1];
+        final double[] maxX     = new double[MAX_ENTRIES + 1];
+        final double[] maxY     = new double[MAX_ENTRIES + 1];
+        final Object[] children = new Object[MAX_ENTRIES + 1];
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+        }
+
+        void add(Object child, double x0, double y0, double x1, double y1) {
+            minX[count] = x0;
+            minY[count] = y0;
+            maxX[count] = x1;
+            maxY[count] = y1;
+            children[count++] = child;
+        }
+
+        void removeAt(int i) {
+            int tail = --count - i;
+            System.arraycopy(minX, i + 1, minX, i, tail);
+            System.arraycopy(minY, i + 1, minY, i, tail);
+            System.arraycopy(maxX, i + 1, maxX, i, tail);
+            System.arraycopy(maxY, i + 1, maxY, i, tail);
+            System.arraycopy(children, i + 1, children, i, tail);
+            children[count] = null;
+        }
+
+        /**
+         * Sets the box of entry <code>i</code> to the box that covers every entry of the specified child node.
+         */
+        void cover(int i, Node child) {
+            cover(child, minX, minY, maxX, maxY, i);
+        }
+
+        /**
+         * Stores, at index <code>i</code> of the specified arrays, the box that covers every entry of the node.
+         */
+        static void cover(Node node, double[] x0, double[] y0, double[] x1, double[] y1, int i) {
+            double loX = Double.POSITIVE_INFINITY, loY = Double.POSITIVE_INFINITY;
+            double hiX = Double.NEGATIVE_INFINITY, hiY = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < node.count; k++) {
+                loX = Math.min(loX, node.minX[k]);
+                loY = Math.min(loY, node.minY[k]);
+                hiX = Math.max(hiX, node.maxX[k]);
+                hiY = Math.max(hiY, node.maxY[k]);
+            }
+            x0[i] = loX;
+            y0[i] = loY;
+            x1[i] = hiX;
+            y1[i] = hiY;
+        }
+    }
+
+    private Node root = new Node(true);
+    private final Map<T, BoundingBox> boxes = new IdentityHashMap<>();
+
+    /**
+     * Creates an empty R-tree.
+     */
+    public RTree() {
+    }
+
+    /**
+     * Creates an R-tree holding the specified shapes, bulk-loaded with STR packing.
+     *
+     * @param shapes the shapes to index
+     */
+    public RTree(Collection<? extends T> shapes) {
+        int n = 0;
+        Object[] refs = new Object[shapes.size()];
+        double[] x0 = new double[refs.length], y0 = new double[refs.length];
+        double[] x1 = new double[refs.length], y1 = new double[refs.length];
+        for (T shape : shapes) {
+            BoundingBox box = BoundingBox.of(shape);
+            if (boxes.put(shape, box) != null)
+                continue;
+            refs[n] = shape;
+            x0[n] = box.minX();
+            y0[n] = box.minY();
+            x1[n] = box.maxX();
+            y1[n] = box.maxY();
+            n++;
+        }
+        if (n == 0)
+            return;
+
+        boolean leaf = true;
+        Node[] level;
+        do {
+            level = pack(refs, x0, y0, x1, y1, n, leaf);
+            n = level.length;
+            refs = level;
+            x0 = new double[n];
+            y0 = new double[n];
+            x1 = new double[n];
+            y1 = new double[n];
+            for (int i = 0; i < n; i++) {
+                Node.cover(level[i], x0, y0, x1, y1, i);
+            }
+            leaf = false;
+        } while (n > 1);
+        root = level[0];
+    }
+
+    /**
+     * Packs one level of the tree: the entries are sorted by the x-value of their centers and cut into vertical
+     * slices, and each slice is sorted by the y-value of the centers and cut into full nodes.
+     */
+    private static Node[] pack(Object[] refs, double[] x0, double[] y0, double[] x1, double[] y1, int n,
+                               boolean leaf) {
+        int nodes = (n + MAX_ENTRIES - 1) / MAX_ENTRIES;
+        int slices = (int) Math.ceil(Math.sqrt(nodes));
+        int perSlice = slices * MAX_ENTRIES;
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(x0[a] + x1[a], x0[b] + x1[b]));
+        for (int from = 0; from < n; from += perSlice) {
+            Arrays.sort(order, from, Math.min(n, from + perSlice),
+                        (a, b) -> Double.compare(y0[a] + y1[a], y0[b] + y1[b]));
+        }
+
+        Node[] level = new Node[nodes];
+        int k = 0;
+        for (int from = 0; from < n; from += perSlice) {
+            int to = Math.min(n, from + perSlice);
+            for (int start = from; start < to; start += MAX_ENTRIES) {
+                Node node = new Node(leaf);
+                for (int i = start; i < Math.min(to, start + MAX_ENTRIES); i++) {
+                    int e = order[i];
+                    node.add(refs[e], x0[e], y0[e], x1[e], y1[e]);
+                }
+                level[k++] = node;
+            }
+        }
+        return k == nodes ? level : Arrays.copyOf(level, k);
+    }
+
+    @Override
+    public void insert(T shape) {
+        BoundingBox box = BoundingBox.of(shape);
+        BoundingBox old = boxes.put(shape, box);
+        if (old != null)
+            detach(shape, old);
+        Node sibling = insert(root, shape, box.minX(), box.minY(), box.maxX(), box.maxY());
+        if (sibling != null) {
+            Node grown = new Node(false);
+            grown.add(root, 0, 0, 0, 0);
+            grown.cover(0, root);
+            grown.add(sibling, 0, 0, 0, 0);
+            grown.cover(1, sibling);
+            root = grown;
+        }
+    }
+
+    /**
+     * Inserts an entry below the specified node.
+     *
+     * @return the new sibling of <code>node</code> if it had to be split, or <code>null</code>
+     */
+    private static Node insert(Node node, Object ref, double x0, double y0, double x1, double y1) {
+        if (node.leaf) {
+            node.add(ref, x0, y0, x1, y1);
+            return node.count > MAX_ENTRIES ? split(node) : null;
+        }
+
+        int best = 0;
+        double bestGrowth = Double.POSITIVE_INFINITY;
+        double bestArea = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < node.count; i++) {
+            double area = (node.maxX[i] - node.minX[i]) * (node.maxY[i] - node.minY[i]);
+            double grown = (Math.max(x1, node.maxX[i]) - Math.min(x0, node.minX[i]))
+                    * (Math.max(y1, node.maxY[i]) - Math.min(y0, node.minY[i]));
+            double growth = grown - area;
+            if (growth < bestGrowth || (growth == bestGrowth && area < bestArea)) {
+                best = i;
+                bestGrowth = growth;
+                bestArea = area;
+            }
+        }
+
+        Node child = (Node) node.children[best];
+        Node sibling = insert(child, ref, x0, y0, x1, y1);
+        node.cover(best, child);
+        if (sibling == null)
+            return null;
+        node.add(sibling, 0, 0, 0, 0);
+        node.cover(node.count - 1, sibling);
+        return node.count > MAX_ENTRIES ? split(node) : null;
+    }
+
+    /**
+     * Splits an overfull node in two along the axis on which the centers of its entries are the most spread out.
+     *
+     * @return the new node, which holds the upper half of the entries
+     */
+    private static Node split(Node node) {
+        int n = node.count;
+        double loX = Double.POSITIVE_INFINITY, hiX = Double.NEGATIVE_INFINITY;
+        double loY = Double.POSITIVE_INFINITY, hiY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            double cx = node.minX[i] + node.maxX[i];
+            double cy = node.minY[i] + node.maxY[i];
+            loX = Math.min(loX, cx);
+            hiX = Math.max(hiX, cx);
+            loY = Math.min(loY, cy);
+            hiY = Math.max(hiY, cy);
+        }
+        boolean byX = hiX - loX >= hiY - loY;
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        if (byX)
+            Arrays.sort(order, (a, b) -> Double.compare(node.minX[a] + node.maxX[a], node.minX[b] + node.maxX[b]));
+        else
+            Arrays.sort(order, (a, b) -> Double.compare(node.minY[a] + node.maxY[a], node.minY[b] + node.maxY[b]));
+
+        Node lower = new Node(node.leaf);
+        Node upper = new Node(node.leaf);
+        for (int i = 0; i < n; i++) {
+            int e = order[i];
+            (i < n / 2 ? lower : upper).add(node.children[e], node.minX[e], node.minY[e], node.maxX[e], node.maxY[e]);
+        }
+
+        node.count = 0;
+        Arrays.fill(node.children, null);
+        for (int i = 0; i < lower.count; i++) {
+            node.add(lower.children[i], lower.minX[i], lower.minY[i], lower.maxX[i], lower.maxY[i]);
+        }
+        return upper;
+    }
+
+    @Override
+    public boolean remove(T shape) {
+        BoundingBox box = boxes.remove(shape);
+        if (box == null)
+            return false;
+        detach(shape, box);
+        return true;
+    }
+
+    /**
+     * Removes the entry of the specified shape from the tree, and shortens the tree if its root is left with a single
+     * child.
+     */
+    private void detach(Object shape, BoundingBox box) {
+        remove(root, shape, box);
+        if (!root.leaf && root.count == 1)
+            root = (Node) root.children[0];
+        else if (root.count == 0)
+            root = new Node(true);
+    }
+
+    /**
+     * Removes the specified shape, with the specified box, from below the specified node.
+     *
+     * @return <code>true</code> if the shape was found
+     */
+    private static boolean remove(Node node, Object shape, BoundingBox box) {
+        for (int i = 0; i < node.count; i++) {
+            if (node.minX[i] > box.minX() || node.minY[i] > box.minY()
+                    || node.maxX[i] < box.maxX() || node.maxY[i] < box.maxY())
+                continue;
+            if (node.leaf) {
+                if (node.children[i] == shape) {
+                    node.removeAt(i);
+                    return true;
+                }
+            }
+            else {
+                Node child = (Node) node.children[i];
+                if (remove(child, shape, box)) {
+                    if (child.count == 0)
+                        node.removeAt(i);
+                    else
+                        node.cover(i, child);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean update(T shape) {
+        if (!boxes.containsKey(shape))
+            return false;
+        insert(shape);
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return boxes.size();
+    }
+
+    @Override
+    public void query(double minX, double minY, double maxX, double maxY, Consumer<? super T> action) {
+        query(root, minX, minY, maxX, maxY, action);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void query(Node node, double minX, double minY, double maxX, double maxY, Consumer<? super T> action) {
+        for (int i = 0; i < node.count; i++) {
+            if (node.minX[i] > maxX || minX > node.maxX[i] || node.minY[i] > maxY || minY > node.maxY[i])
+                continue;
+            if (node.leaf)
+                action.accept((T) node.children[i]);
+            else
+                query((Node) node.children[i], minX, minY, maxX, maxY, action);
+        }
+    }
+
+    @Override
+    public void stab(double x, double y, Consumer<? super T> action) {
+        query(root, x, y, x, y, action);
+    }
+}
@@ -0,0 +1,532 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Measures the cost of the public operations of the shapes, the points and {@link Ordering}, over generated
+ * collections of several sizes and mixes of shapes. For each case, it reports the throughput in operations per second,
+ * the average time per operation, and the bytes allocated per operation, where one operation is one call on one
+ * element of the collection (one <code>area()</code> call, or one element of a sort). The <code>narrow</code> cases
+ * run {@link Intersections} over the candidate pairs that {@link BroadPhase} finds among the shapes, and count one
+ * operation per pair.
+ * <p>
+ * Each case is run repeatedly for a warm-up period, so that it is compiled before it is measured, and then for a
+ * measurement period. Allocation is read from the per-thread allocation counters of the JVM, summed over all live
+ * threads, so it includes the work of the fork-join pool.
+ * <p>
+ * Options, all optional:
+ * <ul>
+ *     <li><code>--sizes=1000,100000</code>: the sizes of the collections</li>
+ *     <li><code>--mixes=1:1:1,3:1:0</code>: the relative numbers of triangles, quadrilaterals and circles</li>
+ *     <li><code>--cases=triangle,ordering.sort</code>: run only the cases whose names start with one of these</li>
+ *     <li><code>--warmup=1</code> and <code>--time=1</code>: the warm-up and measurement periods of each case, in
+ *     seconds</li>
+ *     <li><code>--out=results.txt</code>: also write the results to this file, in the format read by
+ *     <code>--baseline</code></li>
+ *     <li><code>--baseline=benchmarks/baseline.txt</code>: compare with earlier results, and exit with status 1 if any
+ *     case has become slower per operation by more than the tolerance</li>
+ *     <li><code>--tolerance=0.25</code>: the allowed slow-down against the baseline, as a fraction</li>
+ * </ul>
+ * For example, <code>java ShapeBenchmark --baseline=benchmarks/baseline.txt</code>.
+ */
+public class ShapeBenchmark {
+
+    private static final String HEADER = String.format("%-34s %8s %7s %14s %12s %10s", "# case", "size", "mix",
+                                                       "ops/s", "ns/op", "B/op");
+
+    //consumes the results of each case, so that the JIT cannot remove the work as dead code
+    private static volatile double sink;
+
+    /**
+     * A benchmarked operation, run over a whole fixture per call.
+     */
+    private static final class Case {
+        final String                    name;
+        final ToIntFunction<Fixture>    operations;
+        final ToDoubleFunction<Fixture> body;
+
+        Case(String name, ToIntFunction<Fixture> operations, ToDoubleFunction<Fixture> body) {
+            this.name = name;
+            this.operations = operations;
+            this.body = body;
+        }
+    }
+
+    /**
+     * The collections the cases run over.
+     */
+    static final class Fixture {
+        final int                 size;
+        final String              mix;
+        final List<TwoDShape>     shapes = new ArrayList<>();
+        final List<Triangle>      triangles = new ArrayList<>();
+        final List<Quadrilateral> quadrilaterals = new ArrayList<>();
+        final List<Circle>        circles = new ArrayList<>();
+        final List<TwoDPoint>     points = new ArrayList<>();
+        private Pairs             pairs;
+        private ContainmentGrid<TwoDShape> grid;
+
+        /**
+         * Generates <code>size</code> shapes, in random order, and as many points, from a fixed seed.
+         *
+         * @param mix the relative numbers of triangles, quadrilaterals and circles, e.g. <code>1:1:1</code>
+         */
+        Fixture(int size, String mix) {
+            this.size = size;
+            this.mix = mix;
+            String[] parts = mix.split(":");
+            if (parts.length != 3)
+                throw new IllegalArgumentException("A mix must have the form t:q:c, e.g. 1:1:1: " + mix);
+            int t = Integer.parseInt(parts[0]);
+            int q = Integer.parseInt(parts[1]);
+            int c = Integer.parseInt(parts[2]);
+            if (t < 0 || q < 0 || c < 0 || t + q + c == 0)
+                throw new IllegalArgumentException("A mix must have non-negative parts, not all zero: " + mix);
+
+            Random random = new Random(42);
+            for (int i = 0; i < size; i++) {
+                int kind = random.nextInt(t + q + c);
+                double x = random.nextDouble() * 1000;
+                double y = random.nextDouble() * 1000;
+                TwoDShape shape;
+                if (kind < t) {
+                    List<TwoDPoint> vertices;
+                    do {
+                        vertices = around(random, x, y, 3);
+                    } while (!ShapeValidator.isMember(ShapeValidator.check(vertices, 3)));
+                    Triangle triangle = new Triangle(vertices);
+                    triangles.add(triangle);
+                    shape = triangle;
+                }
+                else if (kind < t + q) {
+                    List<TwoDPoint> vertices;
+                    do {
+                        vertices = around(random, x, y, 4);
+                    } while (!ShapeValidator.isMember(ShapeValidator.check(vertices, 4)));
+                    Quadrilateral quadrilateral = new Quadrilateral(vertices);
+                    quadrilaterals.add(quadrilateral);
+                    shape = quadrilateral;
+                }
+                else {
+                    Circle circle = new Circle(x, y, 1 + random.nextDouble() * 10);
+                    circles.add(circle);
+                    shape = circle;
+                }
+                shapes.add(shape);
+                points.add(new TwoDPoint(random.nextDouble() * 1000, random.nextDouble() * 1000));
+            }
+        }
+
+        /**
+         * @return the candidate pairs among the shapes, found on first use, as only the narrow-phase cases need them
+         */
+        Pairs pairs() {
+            if (pairs == null)
+                pairs = new Pairs(shapes, size);
+            return pairs;
+        }
+
+        /**
+         * @return a containment grid over the shapes, built on first use
+         */
+        ContainmentGrid<TwoDShape> grid() {
+            if (grid == null)
+                grid = new ContainmentGrid<>(shapes);
+            return grid;
+        }
+
+        private static List<TwoDPoint> around(Random random, double x, double y, int n) {
+            List<TwoDPoint> vertices = new ArrayList<>(n);
+            for (int k = 0; k < n; k++) {
+                vertices.add(new TwoDPoint(x + random.nextDouble() * 20, y + random.nextDouble() * 20));
+            }
+            return vertices;
+        }
+    }
+
+    /**
+     * The candidate pairs that a {@link BroadPhase} finds among the shapes of a fixture, grouped by the kinds of their
+     * shapes, as pairs of indices into a {@link ShapeStore} that holds copies of the shapes. At most
+     * <code>limit</code> pairs of each kind are kept.
+     */
+    static final class Pairs {
+        static final String[] KINDS = {"triangles", "quadrilaterals", "circlePolygon", "circles"};
+
+        final ShapeStore store = new ShapeStore();
+        final int[][]    first = new int[KINDS.length][];
+        final int[][]    second = new int[KINDS.length][];
+        final int[]      count = new int[KINDS.length];
+        final boolean[]  intersects;
+        final double[]   areas;
+
+        Pairs(List<TwoDShape> shapes, int limit) {
+            Map<TwoDShape, Integer> indices = new IdentityHashMap<>();
+            for (TwoDShape shape : shapes) {
+                indices.put(shape, store.add(shape));
+            }
+            for (int k = 0; k < KINDS.length; k++) {
+                first[k] = new int[limit];
+                second[k] = new int[limit];
+            }
+            new BroadPhase<>(shapes).forEachPair((a, b) -> {
+                int k = kind(a, b);
+                if (k < 0 || count[k] == limit)
+                    return;
+                first[k][count[k]] = indices.get(a);
+                second[k][count[k]++] = indices.get(b);
+            });
+            intersects = new boolean[limit];
+            areas = new double[limit];
+        }
+
+        /**
+         * @return the position in {@link #KINDS} of the kind of the pair, or <code>-1</code> for a triangle and a
+         * quadrilateral
+         */
+        private static int kind(TwoDShape a, TwoDShape b) {
+            boolean circleA = a instanceof Circle, circleB = b instanceof Circle;
+            if (circleA && circleB)
+                return 3;
+            if (circleA || circleB)
+                return 2;
+            if (a instanceof Triangle && b instanceof Triangle)
+                return 0;
+            if (a instanceof Quadrilateral && b instanceof Quadrilateral)
+                return 1;
+            return -1;
+        }
+    }
+
+    /**
+     * @return every benchmarked case, in the order they are run
+     */
+    private static List<Case> cases() {
+        List<Case> cases = new ArrayList<>();
+        cases.add(new Case("triangle.area", f -> f.triangles.size(), f -> {
+            double sum = 0;
+            for (Triangle t : f.triangles) {
+                sum += t.area();
+            }
+            return sum;
+        }));
+        cases.add(new Case("triangle.perimeter", f -> f.triangles.size(), f -> {
+            double sum = 0;
+            for (Triangle t : f.triangles) {
+                sum += t.perimeter();
+            }
+            return sum;
+        }));
+        cases.add(new Case("triangle.isMember", f -> f.triangles.size(), f -> {
+            int valid = 0;
+            for (Triangle t : f.triangles) {
+                if (t.isMember(t.getPosition()))
+                    valid++;
+            }
+            return valid;
+        }));
+        cases.add(new Case("triangle.setPosition", f -> f.triangles.size(), f -> {
+            for (Triangle t : f.triangles) {
+                t.setPosition(t.getPosition());
+            }
+            return f.triangles.isEmpty() ? 0 : f.triangles.get(0).area();
+        }));
+        cases.add(new Case("quadrilateral.area", f -> f.quadrilaterals.size(), f -> {
+            double sum = 0;
+            for (Quadrilateral q : f.quadrilaterals) {
+                sum += q.area();
+            }
+            return sum;
+        }));
+        cases.add(new Case("quadrilateral.isMember", f -> f.quadrilaterals.size(), f -> {
+            int valid = 0;
+            for (Quadrilateral q : f.quadrilaterals) {
+                if (q.isMember(q.getPosition()))
+                    valid++;
+            }
+            return valid;
+        }));
+        cases.add(new Case("quadrilateral.getPosition", f -> f.quadrilaterals.size(), f -> {
+            double sum = 0;
+            for (Quadrilateral q : f.quadrilaterals) {
+                sum += q.getPosition().get(3).y();
+            }
+            return sum;
+        }));
+        cases.add(new Case("quadrilateral.setPosition", f -> f.quadrilaterals.size(), f -> {
+            for (Quadrilateral q : f.quadrilaterals) {
+                q.setPosition(q.getPosition());
+            }
+            return f.quadrilaterals.isEmpty() ? 0 : f.quadrilaterals.get(0).area();
+        }));
+        cases.add(new Case("circle.area", f -> f.circles.size(), f -> {
+            double sum = 0;
+            for (Circle c : f.circles) {
+                sum += c.area();
+            }
+            return sum;
+        }));
+        cases.add(new Case("point.distance", f -> f.points.size(), f -> {
+            double sum = 0;
+            for (TwoDPoint p : f.points) {
+                sum += p.distance();
+            }
+            return sum;
+        }));
+        cases.add(new Case("ordering.sort.shapesByX", f -> f.size, f -> {
+            List<TwoDShape> copy = new ArrayList<>(f.shapes);
+            KeySort.sort(copy, new Ordering.XLocationShapeComparator());
+            return Ordering.XLocationShapeComparator.leastX(copy.get(0));
+        }));
+        cases.add(new Case("ordering.sort.shapesByXComparator", f -> f.size, f -> {
+            List<TwoDShape> copy = new ArrayList<>(f.shapes);
+            copy.sort(new Ordering.XLocationShapeComparator());
+            return Ordering.XLocationShapeComparator.leastX(copy.get(0));
+        }));
+        cases.add(new Case("ordering.sort.shapesByArea", f -> f.size, f -> {
+            List<TwoDShape> copy = new ArrayList<>(f.shapes);
+            KeySort.sortBy(copy, TwoDShape::area);
+            return copy.get(0).area();
+        }));
+        cases.add(new Case("ordering.sort.pointsByX", f -> f.size, f -> {
+            List<TwoDPoint> copy = new ArrayList<>(f.points);
+            KeySort.sort(copy, new Ordering.XLocationPointComparator());
+            return copy.get(0).x();
+        }));
+        cases.add(new Case("ordering.sort.pointsByDistance", f -> f.size, f -> {
+            List<TwoDPoint> copy = new ArrayList<>(f.points);
+            KeySort.sortBy(copy, Point::distance);
+            return copy.get(0).x();
+        }));
+        cases.add(new Case("ordering.printAllAndReturnLeast", f -> f.size, f -> {
+            int[] printed = new int[1];
+            AbstractPrinter<TwoDShape> printer = new AbstractPrinter<TwoDShape>() {
+                @Override
+                void print(TwoDShape s) {
+                    printed[0]++;
+                }
+            };
+            return Ordering.printAllAndReturnLeast(f.shapes, printer).area() + printed[0];
+        }));
+        cases.add(new Case("reduction.summarize", f -> f.size, f -> ShapeReduction.summarize(f.shapes, 10).areaSum()));
+        cases.add(new Case("containment.classify", f -> f.points.size(), f -> f.grid().classify(f.points)[0]));
+        for (int k = 0; k < Pairs.KINDS.length; k++) {
+            int kind = k;
+            cases.add(new Case("narrow.intersects." + Pairs.KINDS[kind], f -> f.pairs().count[kind], f -> {
+                Pairs p = f.pairs();
+                return Intersections.intersects(p.store, p.first[kind], p.second[kind], p.count[kind], p.intersects);
+            }));
+            cases.add(new Case("narrow.overlapArea." + Pairs.KINDS[kind], f -> f.pairs().count[kind], f -> {
+                Pairs p = f.pairs();
+                return Intersections.overlapAreas(p.store, p.first[kind], p.second[kind], p.count[kind], p.areas);
+            }));
+        }
+        return cases;
+    }
+
+    /**
+     * One line of results.
+     */
+    private static final class Result {
+        final String name;
+        final int    size;
+        final String mix;
+        final double opsPerSecond;
+        final double nanosPerOp;
+        final double bytesPerOp;
+
+        Result(String name, int size, String mix, double opsPerSecond, double nanosPerOp, double bytesPerOp) {
+            this.name = name;
+            this.size = size;
+            this.mix = mix;
+            this.opsPerSecond = opsPerSecond;
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        String key() {
+            return name + " " + size + " " + mix;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-34s %8d %7s %14.4g %12.3f %10.1f", name, size, mix, opsPerSecond,
+                                 nanosPerOp, bytesPerOp);
+        }
+    }
+
+    /**
+     * Runs the specified case over the fixture for the warm-up period, and then measures it for the measurement
+     * period.
+     *
+     * @return the results, or <code>null</code> if the fixture has no elements for the case to run over
+     */
+    private static Result measure(Case c, Fixture f, long warmupNanos, long measureNanos) {
+        int operations = c.operations.applyAsInt(f);
+        if (operations == 0)
+            return null;
+
+        double consumed = 0;
+        long start = System.nanoTime();
+        do {
+            consumed += c.body.applyAsDouble(f);
+        } while (System.nanoTime() - start < warmupNanos);
+
+        long calls = 0;
+        long allocated = allocatedBytes();
+        start = System.nanoTime();
+        long elapsed;
+        do {
+            consumed += c.body.applyAsDouble(f);
+            calls++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < measureNanos);
+        allocated = allocatedBytes() - allocated;
+        sink = consumed;
+
+        double ops = (double) calls * operations;
+        return new Result(c.name, f.size, f.mix, ops / (elapsed / 1e9), elapsed / ops,
+                          allocated < 0 ? Double.NaN : allocated / ops);
+    }
+
+    /**
+     * @return the number of bytes allocated so far by all live threads, or <code>-1</code> if the JVM does not count
+     * allocations per thread
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean))
+            return -1;
+        com.sun.management.ThreadMXBean counters = (com.sun.management.ThreadMXBean) threads;
+        if (!counters.isThreadAllocatedMemorySupported() || !counters.isThreadAllocatedMemoryEnabled())
+            return -1;
+        long total = 0;
+        for (long bytes : counters.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0)
+                total += bytes;
+        }
+        return total;
+    }
+
+    /**
+     * Reads the time per operation of each case from a results file written with <code>--out</code>.
+     */
+    private static Map<String, Double> readBaseline(Path file) throws IOException {
+        Map<String, Double> baseline = new HashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] fields = line.split("\\s+");
+            if (fields.length < 6)
+                continue;
+            baseline.put(fields[0] + " " + fields[1] + " " + fields[2], Double.parseDouble(fields[4]));
+        }
+        return baseline;
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Integer> sizes = new ArrayList<>();
+        List<String> mixes = new ArrayList<>();
+        List<String> filters = new ArrayList<>();
+        double warmup = 1;
+        double time = 1;
+        double tolerance = 0.25;
+        Path out = null;
+        Path baselineFile = null;
+
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            String name = eq < 0 ? arg : arg.substring(0, eq);
+            String value = eq < 0 ? "" : arg.substring(eq + 1);
+            switch (name) {
+                case "--sizes":
+                    for (String s : value.split(",")) {
+                        sizes.add(Integer.parseInt(s.trim()));
+                    }
+                    break;
+                case "--mixes":
+                    Collections.addAll(mixes, value.split(","));
+                    break;
+                case "--cases":
+                    Collections.addAll(filters, value.split(","));
+                    break;
+                case "--warmup":
+                    warmup = Double.parseDouble(value);
+                    break;
+                case "--time":
+                    time = Double.parseDouble(value);
+                    break;
+                case "--tolerance":
+                    tolerance = Double.parseDouble(value);
+                    break;
+                case "--out":
+                    out = Paths.get(value);
+                    break;
+                case "--baseline":
+                    baselineFile = Paths.get(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (sizes.isEmpty())
+            Collections.addAll(sizes, 1_000, 100_000);
+        if (mixes.isEmpty())
+            Collections.addAll(mixes, "1:1:1", "3:1:0");
+        Map<String, Double> baseline = baselineFile == null ? Collections.emptyMap() : readBaseline(baselineFile);
+
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format(Locale.ROOT, "# ShapeBenchmark: Java %s, %d processors, warm-up %s s, measurement %s s",
+                                System.getProperty("java.version"), Runtime.getRuntime().availableProcessors(),
+                                warmup, time));
+        lines.add(HEADER);
+        lines.forEach(System.out::println);
+
+        int regressions = 0;
+        for (int size : sizes) {
+            for (String mix : mixes) {
+                Fixture fixture = new Fixture(size, mix);
+                for (Case c : cases()) {
+                    if (!filters.isEmpty() && filters.stream().noneMatch(c.name::startsWith))
+                        continue;
+                    Result result = measure(c, fixture, (long) (warmup * 1e9), (long) (time * 1e9));
+                    if (result == null)
+                        continue;
+                    lines.add(result.toString());
+                    String line = result.toString();
+                    Double before = baseline.get(result.key());
+                    if (before != null) {
+                        double ratio = result.nanosPerOp / before;
+                        line += String.format(Locale.ROOT, "   %5.2fx baseline", ratio);
+                        if (ratio > 1 + tolerance) {
+                            line += "   REGRESSION";
+                            regressions++;
+                        }
+                    }
+                    System.out.println(line);
+                }
+            }
+        }
+
+        if (out != null)
+            Files.write(out, lines, StandardCharsets.UTF_8);
+        if (regressions > 0) {
+            System.err.println(regressions + " case(s) slower than the baseline by more than " + tolerance * 100 + "%");
+            System.exit(1);
+        }
+    }
+}
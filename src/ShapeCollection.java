@@ -0,0 +1,625 @@
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A live collection of two-dimensional shapes that keeps the answers to the usual questions about it current as it
+ * changes, instead of rescanning it for each: the number of shapes, the sums of their areas and perimeters, the least
+ * shape, as {@link Ordering#printAllAndReturnLeast} finds it, and the shapes in order of area or of least x-value, with
+ * the rank of a value and the number and total area of the shapes within a range of values.
+ * <p>
+ * The shapes are kept in two balanced binary search trees, one keyed on area and one on least x-value, whose nodes
+ * also hold the size and the sums of their subtrees; every question is thus answered in <code>O(log n)</code>, and so
+ * is every change. Shapes with equal keys are ordered as they were added, so that the least shape is the first one
+ * added of those with the least area, as in {@link ShapeReduction}. The least x-value of a shape is the least x-value
+ * of its {@link TwoDShape#boundingBox()}.
+ * <p>
+ * The trees are persistent: a change never modifies a node, but builds new nodes along the path it changes and shares
+ * the rest. A change therefore publishes a new {@link Snapshot} with a single volatile write, and any number of
+ * readers read snapshots without locks and always see one consistent state of the collection, which later changes do
+ * not affect. Changes are made one at a time, under the lock of the collection.
+ * <p>
+ * The collection holds the shapes themselves, compared by identity, and records their areas and least x-values when
+ * they are added. A shape that is moved must therefore be moved through {@link #setPosition} or {@link #snap}, or be
+ * passed to {@link #refresh} after it was moved in any other way. A snapshot records the keys of its shapes as they
+ * were when it was taken, but the shapes it returns are the live shapes.
+ */
+public class ShapeCollection {
+
+    //addAll rebuilds the trees when it adds more than 1/REBUILD_RATIO of the size of the collection
+    private static final int REBUILD_RATIO = 8;
+
+    private final Map<TwoDShape, Entry> entries = new IdentityHashMap<>();
+    private long                        added;
+    private volatile Snapshot           current = new Snapshot(null, null, 0);
+
+    /**
+     * The keys of one shape, as recorded when it was added or last refreshed. The sequence number orders shapes with
+     * equal keys by the time they were added.
+     */
+    private static final class Entry {
+        final TwoDShape shape;
+        final long      sequence;
+        final double    area;
+        final double    perimeter;
+        final double    leastX;
+
+        Entry(TwoDShape shape, long sequence) {
+            this.shape = shape;
+            this.sequence = sequence;
+            this.area = shape.area();
+            this.perimeter = shape.perimeter();
+            this.leastX = shape.boundingBox().minX();
+        }
+    }
+
+    /**
+     * @return the current state of this collection
+     */
+    public Snapshot snapshot() {
+        return current;
+    }
+
+    /**
+     * @return the number of shapes in this collection
+     */
+    public int size() {
+        return current.size();
+    }
+
+    /**
+     * @return the sum of the areas of the shapes in this collection
+     */
+    public double totalArea() {
+        return current.totalArea();
+    }
+
+    /**
+     * @return the least shape in this collection, as documented by {@link Snapshot#least()}
+     */
+    public TwoDShape least() {
+        return current.least();
+    }
+
+    /**
+     * Adds the specified shape to this collection, unless it is already in it.
+     *
+     * @return <code>true</code> if the shape was added
+     */
+    public synchronized boolean add(TwoDShape shape) {
+        if (entries.containsKey(shape))
+            return false;
+        Entry entry = new Entry(shape, added++);
+        entries.put(shape, entry);
+        Snapshot s = current;
+        current = new Snapshot(Node.insert(s.byArea, entry.area, entry), Node.insert(s.byLeastX, entry.leastX, entry),
+                               s.version + 1);
+        return true;
+    }
+
+    /**
+     * Adds each of the specified shapes that is not already in this collection, and publishes them all at once. If
+     * there are many shapes to add compared to the size of the collection, the trees are rebuilt from sorted entries
+     * instead of being added to one shape at a time.
+     *
+     * @return the number of shapes that were added
+     */
+    public synchronized int addAll(Collection<? extends TwoDShape> shapes) {
+        Snapshot s = current;
+        Node byArea = s.byArea;
+        Node byLeastX = s.byLeastX;
+        boolean rebuild = shapes.size() > Node.size(byArea) / REBUILD_RATIO;
+        int count = 0;
+        for (TwoDShape shape : shapes) {
+            if (entries.containsKey(shape))
+                continue;
+            Entry entry = new Entry(shape, added++);
+            entries.put(shape, entry);
+            if (!rebuild) {
+                byArea = Node.insert(byArea, entry.area, entry);
+                byLeastX = Node.insert(byLeastX, entry.leastX, entry);
+            }
+            count++;
+        }
+        if (count == 0)
+            return 0;
+        if (rebuild) {
+            Entry[] all = inSequence(entries.values().toArray(new Entry[0]));
+            byArea = Node.build(sorted(all, true), true, 0, all.length);
+            byLeastX = Node.build(sorted(all, false), false, 0, all.length);
+        }
+        current = new Snapshot(byArea, byLeastX, s.version + 1);
+        return count;
+    }
+
+    /**
+     * @return the specified entries in order of sequence number
+     */
+    private static Entry[] inSequence(Entry[] entries) {
+        int n = entries.length;
+        long[] keys = new long[n];
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = entries[i].sequence;
+            order[i] = i;
+        }
+        KeySort.sort(keys, order);
+        Entry[] sorted = new Entry[n];
+        for (int i = 0; i < n; i++) {
+            sorted[i] = entries[order[i]];
+        }
+        return sorted;
+    }
+
+    /**
+     * @param entries entries in order of sequence number
+     * @return the entries in order of area, if <code>byArea</code> is set, or else of least x-value, and then of
+     * sequence number
+     */
+    private static Entry[] sorted(Entry[] entries, boolean byArea) {
+        int n = entries.length;
+        long[] keys = new long[n];
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = KeySort.sortable(byArea ? entries[i].area : entries[i].leastX);
+            order[i] = i;
+        }
+        //the sort is stable, so ties stay in order of sequence number
+        KeySort.sort(keys, order);
+        Entry[] sorted = new Entry[n];
+        for (int i = 0; i < n; i++) {
+            sorted[i] = entries[order[i]];
+        }
+        return sorted;
+    }
+
+    /**
+     * Removes the specified shape from this collection, if it is in it.
+     *
+     * @return <code>true</code> if the shape was removed
+     */
+    public synchronized boolean remove(TwoDShape shape) {
+        Entry entry = entries.remove(shape);
+        if (entry == null)
+            return false;
+        Snapshot s = current;
+        current = new Snapshot(Node.delete(s.byArea, entry.area, entry.sequence),
+                               Node.delete(s.byLeastX, entry.leastX, entry.sequence), s.version + 1);
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if the specified shape is in this collection
+     */
+    public synchronized boolean contains(TwoDShape shape) {
+        return entries.containsKey(shape);
+    }
+
+    /**
+     * Sets the position of the specified shape, as by {@link Positionable#setPosition}, and updates this collection
+     * with its new keys.
+     *
+     * @throws IllegalArgumentException if the shape is not in this collection, or is not {@link Positionable}
+     */
+    public synchronized void setPosition(TwoDShape shape, List<? extends Point> points) {
+        Entry entry = entry(shape);
+        if (!(shape instanceof Positionable))
+            throw new IllegalArgumentException("The shape cannot be moved.");
+        ((Positionable) shape).setPosition(points);
+        publish(entry);
+    }
+
+    /**
+     * Snaps the specified shape, as by {@link Triangle#snap()} or {@link Quadrilateral#snap()}, and updates this
+     * collection with its new keys. Other shapes are not snapped.
+     *
+     * @return <code>false</code> if snapping would have made the shape invalid, in which case it is left unchanged
+     * @throws IllegalArgumentException if the shape is not in this collection
+     */
+    public synchronized boolean snap(TwoDShape shape) {
+        Entry entry = entry(shape);
+        boolean snapped = trySnap(shape);
+        publish(entry);
+        return snapped;
+    }
+
+    /**
+     * Snaps every triangle and quadrilateral in this collection, and publishes the result at once.
+     *
+     * @return the number of shapes that were left unchanged because snapping would have made them invalid
+     */
+    public synchronized int snapAll() {
+        Snapshot s = current;
+        Node byArea = s.byArea;
+        Node byLeastX = s.byLeastX;
+        int rejected = 0;
+        for (Map.Entry<TwoDShape, Entry> e : entries.entrySet()) {
+            TwoDShape shape = e.getKey();
+            if (!(shape instanceof Triangle || shape instanceof Quadrilateral))
+                continue;
+            if (!trySnap(shape))
+                rejected++;
+            Entry old = e.getValue();
+            Entry fresh = new Entry(shape, old.sequence);
+            if (fresh.area != old.area || fresh.perimeter != old.perimeter || fresh.leastX != old.leastX) {
+                e.setValue(fresh);
+                byArea = Node.insert(Node.delete(byArea, old.area, old.sequence), fresh.area, fresh);
+                byLeastX = Node.insert(Node.delete(byLeastX, old.leastX, old.sequence), fresh.leastX, fresh);
+            }
+        }
+        current = new Snapshot(byArea, byLeastX, s.version + 1);
+        return rejected;
+    }
+
+    private static boolean trySnap(TwoDShape shape) {
+        if (shape instanceof Triangle)
+            return ((Triangle) shape).trySnap();
+        if (shape instanceof Quadrilateral)
+            return ((Quadrilateral) shape).trySnap();
+        return true;
+    }
+
+    /**
+     * Updates this collection with the current keys of the specified shape, after it was moved other than through
+     * this collection.
+     *
+     * @throws IllegalArgumentException if the shape is not in this collection
+     */
+    public synchronized void refresh(TwoDShape shape) {
+        publish(entry(shape));
+    }
+
+    private Entry entry(TwoDShape shape) {
+        Entry entry = entries.get(shape);
+        if (entry == null)
+            throw new IllegalArgumentException("The shape is not in this collection.");
+        return entry;
+    }
+
+    /**
+     * Replaces the recorded keys of the shape of the specified entry with its current keys.
+     */
+    private void publish(Entry old) {
+        Entry fresh = new Entry(old.shape, old.sequence);
+        entries.put(old.shape, fresh);
+        Snapshot s = current;
+        current = new Snapshot(Node.insert(Node.delete(s.byArea, old.area, old.sequence), fresh.area, fresh),
+                               Node.insert(Node.delete(s.byLeastX, old.leastX, old.sequence), fresh.leastX, fresh),
+                               s.version + 1);
+    }
+
+    /**
+     * One state of a {@link ShapeCollection}. A snapshot never changes, so it may be read by any number of threads at
+     * once; its methods take <code>O(log n)</code> time, unless stated otherwise.
+     */
+    public static final class Snapshot {
+        private final Node byArea;
+        private final Node byLeastX;
+        private final long version;
+
+        private Snapshot(Node byArea, Node byLeastX, long version) {
+            this.byArea = byArea;
+            this.byLeastX = byLeastX;
+            this.version = version;
+        }
+
+        /**
+         * @return the number of changes made to the collection before this snapshot was taken
+         */
+        public long version() {
+            return version;
+        }
+
+        /**
+         * @return the number of shapes; in constant time
+         */
+        public int size() {
+            return Node.size(byArea);
+        }
+
+        /**
+         * @return the sum of the areas of the shapes; in constant time
+         */
+        public double totalArea() {
+            return Node.areaSum(byArea);
+        }
+
+        /**
+         * @return the sum of the perimeters of the shapes; in constant time
+         */
+        public double totalPerimeter() {
+            return Node.perimeterSum(byArea);
+        }
+
+        /**
+         * @return the first shape added of those with the least area, or <code>null</code> if there are none
+         */
+        public TwoDShape least() {
+            Node n = byArea;
+            if (n == null)
+                return null;
+            while (n.left != null) {
+                n = n.left;
+            }
+            return n.entry.shape;
+        }
+
+        /**
+         * @return the first shape added of those with the greatest area, or <code>null</code> if there are none
+         */
+        public TwoDShape greatest() {
+            Node n = byArea;
+            if (n == null)
+                return null;
+            while (n.right != null) {
+                n = n.right;
+            }
+            return Node.select(byArea, Node.countLess(byArea, n.key)).entry.shape;
+        }
+
+        /**
+         * @return the shape at the specified position in increasing order of area
+         * @throws IndexOutOfBoundsException if there is no such position
+         */
+        public TwoDShape byArea(int rank) {
+            return Node.select(byArea, checkRank(rank)).entry.shape;
+        }
+
+        /**
+         * @return the shape at the specified position in increasing order of least x-value
+         * @throws IndexOutOfBoundsException if there is no such position
+         */
+        public TwoDShape byLeastX(int rank) {
+            return Node.select(byLeastX, checkRank(rank)).entry.shape;
+        }
+
+        private int checkRank(int rank) {
+            if (rank < 0 || rank >= size())
+                throw new IndexOutOfBoundsException("Rank " + rank + " out of bounds for size " + size());
+            return rank;
+        }
+
+        /**
+         * @return the number of shapes whose area is less than the specified area
+         */
+        public int rankByArea(double area) {
+            return Node.countLess(byArea, area);
+        }
+
+        /**
+         * @return the number of shapes whose least x-value is less than the specified value
+         */
+        public int rankByLeastX(double x) {
+            return Node.countLess(byLeastX, x);
+        }
+
+        /**
+         * @return the number of shapes whose area is at least <code>from</code> and less than <code>to</code>
+         */
+        public int countByArea(double from, double to) {
+            return Math.max(0, Node.countLess(byArea, to) - Node.countLess(byArea, from));
+        }
+
+        /**
+         * @return the number of shapes whose least x-value is at least <code>from</code> and less than <code>to</code>
+         */
+        public int countByLeastX(double from, double to) {
+            return Math.max(0, Node.countLess(byLeastX, to) - Node.countLess(byLeastX, from));
+        }
+
+        /**
+         * @return the sum of the areas of the shapes whose area is at least <code>from</code> and less than
+         * <code>to</code>
+         */
+        public double areaByArea(double from, double to) {
+            return Math.max(0, Node.areaSumLess(byArea, to) - Node.areaSumLess(byArea, from));
+        }
+
+        /**
+         * @return the sum of the areas of the shapes whose least x-value is at least <code>from</code> and less than
+         * <code>to</code>
+         */
+        public double areaByLeastX(double from, double to) {
+            return Math.max(0, Node.areaSumLess(byLeastX, to) - Node.areaSumLess(byLeastX, from));
+        }
+
+        /**
+         * @return an unmodifiable view of the shapes in increasing order of area; each <code>get</code> takes
+         * <code>O(log n)</code> time
+         */
+        public List<TwoDShape> sortedByArea() {
+            return view(byArea);
+        }
+
+        /**
+         * @return an unmodifiable view of the shapes in increasing order of least x-value; each <code>get</code> takes
+         * <code>O(log n)</code> time
+         */
+        public List<TwoDShape> sortedByLeastX() {
+            return view(byLeastX);
+        }
+
+        private static List<TwoDShape> view(Node root) {
+            return new AbstractList<TwoDShape>() {
+                @Override
+                public TwoDShape get(int index) {
+                    if (index < 0 || index >= size())
+                        throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size());
+                    return Node.select(root, index).entry.shape;
+                }
+
+                @Override
+                public int size() {
+                    return Node.size(root);
+                }
+            };
+        }
+    }
+
+    /**
+     * A node of a persistent AVL tree of entries, ordered by key and then by sequence number. Nodes are never
+     * modified; every operation that changes a tree returns the root of a new tree.
+     */
+    private static final class Node {
+        final double key;
+        final Entry  entry;
+        final Node   left;
+        final Node   right;
+        final int    size;
+        final int    height;
+        final double areaSum;
+        final double perimeterSum;
+
+        Node(double key, Entry entry, Node left, Node right) {
+            this.key = key;
+            this.entry = entry;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + 1 + size(right);
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.areaSum = areaSum(left) + entry.area + areaSum(right);
+            this.perimeterSum = perimeterSum(left) + entry.perimeter + perimeterSum(right);
+        }
+
+        static int size(Node n) {
+            return n == null ? 0 : n.size;
+        }
+
+        static int height(Node n) {
+            return n == null ? 0 : n.height;
+        }
+
+        static double areaSum(Node n) {
+            return n == null ? 0 : n.areaSum;
+        }
+
+        static double perimeterSum(Node n) {
+            return n == null ? 0 : n.perimeterSum;
+        }
+
+        private static int compare(double key, long sequence, Node n) {
+            int c = Double.compare(key, n.key);
+            return c != 0 ? c : Long.compare(sequence, n.entry.sequence);
+        }
+
+        static Node insert(Node n, double key, Entry entry) {
+            if (n == null)
+                return new Node(key, entry, null, null);
+            if (compare(key, entry.sequence, n) < 0)
+                return balance(n.key, n.entry, insert(n.left, key, entry), n.right);
+            return balance(n.key, n.entry, n.left, insert(n.right, key, entry));
+        }
+
+        static Node delete(Node n, double key, long sequence) {
+            if (n == null)
+                return null;
+            int c = compare(key, sequence, n);
+            if (c < 0)
+                return balance(n.key, n.entry, delete(n.left, key, sequence), n.right);
+            if (c > 0)
+                return balance(n.key, n.entry, n.left, delete(n.right, key, sequence));
+            if (n.left == null)
+                return n.right;
+            if (n.right == null)
+                return n.left;
+            Node successor = n.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            return balance(successor.key, successor.entry, n.left, deleteMin(n.right));
+        }
+
+        /**
+         * @return a balanced tree of the entries <code>[from, to)</code>, which are in order of area, if
+         * <code>byArea</code> is set, or else of least x-value
+         */
+        static Node build(Entry[] sorted, boolean byArea, int from, int to) {
+            if (from >= to)
+                return null;
+            int mid = (from + to) >>> 1;
+            Entry entry = sorted[mid];
+            return new Node(byArea ? entry.area : entry.leastX, entry, build(sorted, byArea, from, mid),
+                            build(sorted, byArea, mid + 1, to));
+        }
+
+        private static Node deleteMin(Node n) {
+            if (n.left == null)
+                return n.right;
+            return balance(n.key, n.entry, deleteMin(n.left), n.right);
+        }
+
+        /**
+         * @return a new node of the specified key and entry over the specified subtrees, rotated so that the heights
+         * of its subtrees differ by at most one, given that they differed by at most two
+         */
+        private static Node balance(double key, Entry entry, Node left, Node right) {
+            int hl = height(left), hr = height(right);
+            if (hl > hr + 1) {
+                if (height(left.left) >= height(left.right))
+                    return new Node(left.key, left.entry, left.left, new Node(key, entry, left.right, right));
+                Node lr = left.right;
+                return new Node(lr.key, lr.entry, new Node(left.key, left.entry, left.left, lr.left),
+                                new Node(key, entry, lr.right, right));
+            }
+            if (hr > hl + 1) {
+                if (height(right.right) >= height(right.left))
+                    return new Node(right.key, right.entry, new Node(key, entry, left, right.left), right.right);
+                Node rl = right.left;
+                return new Node(rl.key, rl.entry, new Node(key, entry, left, rl.left),
+                                new Node(right.key, right.entry, rl.right, right.right));
+            }
+            return new Node(key, entry, left, right);
+        }
+
+        /**
+         * @return the node at the specified position in order, which must exist
+         */
+        static Node select(Node n, int rank) {
+            while (true) {
+                int l = size(n.left);
+                if (rank < l)
+                    n = n.left;
+                else if (rank > l) {
+                    rank -= l + 1;
+                    n = n.right;
+                }
+                else
+                    return n;
+            }
+        }
+
+        /**
+         * @return the number of nodes whose key is less than the specified key
+         */
+        static int countLess(Node n, double key) {
+            int count = 0;
+            while (n != null) {
+                if (Double.compare(n.key, key) < 0) {
+                    count += size(n.left) + 1;
+                    n = n.right;
+                }
+                else
+                    n = n.left;
+            }
+            return count;
+        }
+
+        /**
+         * @return the sum of the areas of the nodes whose key is less than the specified key
+         */
+        static double areaSumLess(Node n, double key) {
+            double sum = 0;
+            while (n != null) {
+                if (Double.compare(n.key, key) < 0) {
+                    sum += areaSum(n.left) + n.entry.area;
+                    n = n.right;
+                }
+                else
+                    n = n.left;
+            }
+            return sum;
+        }
+    }
+}
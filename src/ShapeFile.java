@@ -0,0 +1,389 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * A compact binary file of two-dimensional shapes, read through memory mapping so that opening a file takes constant
+ * time and almost no heap, however many shapes it holds.
+ * <p>
+ * A file starts with a header of {@value #HEADER_BYTES} bytes: the magic number <code>SHPF</code>, the format version,
+ * and the number of triangles, quadrilaterals and circles, in that order, followed by zeros. The header is followed by
+ * one section per kind of shape, in the same order, of fixed-size records of little-endian <code>double</code>s as
+ * described in {@link BufferShapes}. The vertices of triangles and quadrilaterals are stored in the order documented by
+ * {@link Triangle#getPosition} and {@link Quadrilateral#getPosition}.
+ * <p>
+ * The shapes of an open file are flyweight views over the mapped sections: they read their coordinates from the file
+ * on each call and cannot be moved. Shapes are indexed triangles first, then quadrilaterals, then circles.
+ */
+public final class ShapeFile implements AutoCloseable {
+
+    static final int MAGIC        = 'S' | 'H' << 8 | 'P' << 16 | 'F' << 24;
+    static final int VERSION      = 1;
+    static final int HEADER_BYTES = 64;
+
+    /**
+     * The most bytes mapped by a single buffer. A buffer can only address <code>Integer.MAX_VALUE</code> bytes, so
+     * larger sections are mapped in several chunks.
+     */
+    static final long CHUNK_BYTES = 1L << 30;
+
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private final long triangles;
+    private final long quads;
+    private final long circles;
+
+    private Section triangleSection;
+    private Section quadSection;
+    private Section circleSection;
+
+    private ShapeFile(long triangles, long quads, long circles, Section triangleSection, Section quadSection,
+                      Section circleSection) {
+        this.triangles = triangles;
+        this.quads = quads;
+        this.circles = circles;
+        this.triangleSection = triangleSection;
+        this.quadSection = quadSection;
+        this.circleSection = circleSection;
+    }
+
+    /**
+     * Maps the specified shape file into memory, read-only.
+     *
+     * @throws IOException if the file cannot be read, is not a shape file, or is shorter than its header says
+     */
+    public static ShapeFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0)
+                    throw new IOException("Not a shape file: " + file);
+            }
+            if (header.getInt(0) != MAGIC)
+                throw new IOException("Not a shape file: " + file);
+            if (header.getInt(4) != VERSION)
+                throw new IOException("Unsupported shape file version " + header.getInt(4) + ": " + file);
+            long triangles = header.getLong(8);
+            long quads = header.getLong(16);
+            long circles = header.getLong(24);
+            if (triangles < 0 || quads < 0 || circles < 0)
+                throw new IOException("Corrupt shape file header: " + file);
+
+            //the end of the last section is checked against the file before anything is mapped
+            long triangleBytes;
+            long quadBytes;
+            long end;
+            try {
+                triangleBytes = Math.multiplyExact(triangles, (long) BufferShapes.TRIANGLE_BYTES);
+                quadBytes = Math.multiplyExact(quads, (long) BufferShapes.QUADRILATERAL_BYTES);
+                long circleBytes = Math.multiplyExact(circles, (long) BufferShapes.CIRCLE_BYTES);
+                end = Math.addExact(Math.addExact(Math.addExact(HEADER_BYTES, triangleBytes), quadBytes), circleBytes);
+            }
+            catch (ArithmeticException e) {
+                throw new IOException("Corrupt shape file header: " + file);
+            }
+            if (channel.size() < end)
+                throw new IOException("Truncated shape file: " + file);
+
+            long position = HEADER_BYTES;
+            Section t = new Section(channel, position, triangles, BufferShapes.TRIANGLE_BYTES);
+            position += triangleBytes;
+            Section q = new Section(channel, position, quads, BufferShapes.QUADRILATERAL_BYTES);
+            position += quadBytes;
+            Section c = new Section(channel, position, circles, BufferShapes.CIRCLE_BYTES);
+            return new ShapeFile(triangles, quads, circles, t, q, c);
+        }
+    }
+
+    /**
+     * @return the number of shapes in this file
+     */
+    public long size() {
+        return triangles + quads + circles;
+    }
+
+    public long triangleCount() {
+        return triangles;
+    }
+
+    public long quadrilateralCount() {
+        return quads;
+    }
+
+    public long circleCount() {
+        return circles;
+    }
+
+    /**
+     * @return a view of the i-th triangle of this file
+     */
+    public TwoDShape triangle(long i) {
+        Section s = section(triangleSection);
+        return BufferShapes.triangle(s.chunk(i), s.offset(i));
+    }
+
+    /**
+     * @return a view of the i-th quadrilateral of this file
+     */
+    public TwoDShape quadrilateral(long i) {
+        Section s = section(quadSection);
+        return BufferShapes.quadrilateral(s.chunk(i), s.offset(i));
+    }
+
+    /**
+     * @return a view of the i-th circle of this file
+     */
+    public TwoDShape circle(long i) {
+        Section s = section(circleSection);
+        return BufferShapes.circle(s.chunk(i), s.offset(i));
+    }
+
+    /**
+     * @return a view of the shape at the specified index across all kinds of shapes
+     */
+    public TwoDShape get(long index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size());
+        if (index < triangles)
+            return triangle(index);
+        if (index < triangles + quads)
+            return quadrilateral(index - triangles);
+        return circle(index - triangles - quads);
+    }
+
+    /**
+     * @return a read-only list of views of all the shapes in this file, which creates each view as it is accessed
+     * @throws IllegalStateException if the file holds more shapes than a list can
+     */
+    public List<TwoDShape> asList() {
+        if (size() > Integer.MAX_VALUE)
+            throw new IllegalStateException("Too many shapes for a list: " + size());
+        int n = (int) size();
+        return new AbstractList<TwoDShape>() {
+            @Override
+            public TwoDShape get(int index) {
+                return ShapeFile.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return n;
+            }
+        };
+    }
+
+    /**
+     * Releases the mappings of this file. The memory is unmapped once the views obtained from it are no longer
+     * reachable either, which is when the garbage collector frees the underlying buffers.
+     */
+    @Override
+    public void close() {
+        triangleSection = null;
+        quadSection = null;
+        circleSection = null;
+    }
+
+    private static Section section(Section s) {
+        if (s == null)
+            throw new IllegalStateException("The shape file is closed.");
+        return s;
+    }
+
+    /**
+     * The mapped records of one kind of shape.
+     */
+    private static final class Section {
+        private final ByteBuffer[] chunks;
+        private final int          perChunk; //the number of records in each chunk
+        private final int          recordBytes;
+        private final long         count;
+
+        Section(FileChannel channel, long position, long count, int recordBytes) throws IOException {
+            this.count = count;
+            this.recordBytes = recordBytes;
+            this.perChunk = (int) (CHUNK_BYTES / recordBytes);
+            int n = (int) ((count + perChunk - 1) / perChunk);
+            this.chunks = new ByteBuffer[n];
+            for (int c = 0; c < n; c++) {
+                long records = Math.min(perChunk, count - (long) c * perChunk);
+                chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, position + (long) c * perChunk * recordBytes,
+                                        records * recordBytes)
+                                   .order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        ByteBuffer chunk(long i) {
+            if (i < 0 || i >= count)
+                throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length " + count);
+            return chunks[(int) (i / perChunk)];
+        }
+
+        int offset(long i) {
+            return (int) (i % perChunk) * recordBytes;
+        }
+    }
+
+    /**
+     * Writes the specified shapes to a new shape file, replacing the file if it already exists. The shapes are
+     * iterated twice: once to count them, and once to write them.
+     * <p>
+     * Triangles and quadrilaterals are told apart by their number of sides, and their vertices are read from their
+     * position or, for a {@link ShapeSnapshot}, from its vertices, so the views of a {@link ShapeStore} or of an open
+     * shape file, and snapshots, can be written as well as {@link Triangle}s and {@link Quadrilateral}s. A circle is a
+     * {@link Circle} or any other {@link CircleShape}.
+     *
+     * @throws IllegalArgumentException if one of the shapes is not a triangle, a quadrilateral or a circle
+     * @throws IOException              if the file cannot be written
+     */
+    public static void write(Path file, Iterable<? extends TwoDShape> shapes) throws IOException {
+        long triangles = 0;
+        long quads = 0;
+        long circles = 0;
+        for (TwoDShape s : shapes) {
+            int sides = sides(s);
+            if (sides == 3)
+                triangles++;
+            else if (sides == 4)
+                quads++;
+            else
+                circles++;
+        }
+
+        try (FileChannel channel = create(file, triangles, quads, circles)) {
+            long position = HEADER_BYTES;
+            SectionWriter t = new SectionWriter(channel, position);
+            position += triangles * BufferShapes.TRIANGLE_BYTES;
+            SectionWriter q = new SectionWriter(channel, position);
+            position += quads * BufferShapes.QUADRILATERAL_BYTES;
+            SectionWriter c = new SectionWriter(channel, position);
+
+            for (TwoDShape s : shapes) {
+                int sides = sides(s);
+                if (sides == 3)
+                    t.putPolygon(vertices(s), 3);
+                else if (sides == 4)
+                    q.putPolygon(vertices(s), 4);
+                else if (s instanceof Circle) {
+                    Circle circle = (Circle) s;
+                    Point center = circle.getPosition().get(0);
+                    c.put(center.x()).put(center.y()).put(circle.getRadius());
+                }
+                else {
+                    CircleShape circle = (CircleShape) s;
+                    c.put(circle.centerX()).put(circle.centerY()).put(circle.radius());
+                }
+            }
+            t.flush();
+            q.flush();
+            c.flush();
+        }
+    }
+
+    /**
+     * @return the number of sides of the specified shape, or <code>0</code> for a circle
+     * @throws IllegalArgumentException if the shape cannot be written to a shape file
+     */
+    private static int sides(TwoDShape s) {
+        if (s instanceof Circle || s instanceof CircleShape)
+            return 0;
+        int sides = s.numSides();
+        if ((sides == 3 || sides == 4) && (s instanceof Positionable || s instanceof ShapeSnapshot))
+            return sides;
+        throw new IllegalArgumentException("Cannot write a shape of type " + s.getClass().getName());
+    }
+
+    /**
+     * @return the vertices of the specified triangle or quadrilateral, in the order of its position
+     */
+    private static List<? extends Point> vertices(TwoDShape s) {
+        if (s instanceof ShapeSnapshot)
+            return ((ShapeSnapshot) s).vertices();
+        return ((Positionable) s).getPosition();
+    }
+
+    /**
+     * Writes the shapes of the specified store to a new shape file, replacing the file if it already exists.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file, ShapeStore store) throws IOException {
+        try (FileChannel channel = create(file, store.triangles, store.quads, store.circles)) {
+            SectionWriter out = new SectionWriter(channel, HEADER_BYTES);
+            for (int i = 0; i < store.triangles; i++) {
+                for (int k = 0; k < 3; k++) {
+                    out.put(store.triX[k][i]).put(store.triY[k][i]);
+                }
+            }
+            for (int i = 0; i < store.quads; i++) {
+                for (int k = 0; k < 4; k++) {
+                    out.put(store.quadX[k][i]).put(store.quadY[k][i]);
+                }
+            }
+            for (int i = 0; i < store.circles; i++) {
+                out.put(store.circleX[i]).put(store.circleY[i]).put(store.radius[i]);
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Creates or truncates the specified file, and writes the header.
+     */
+    private static FileChannel create(Path file, long triangles, long quads, long circles) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                               StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putLong(triangles).putLong(quads).putLong(circles);
+        header.clear();
+        try {
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+        catch(IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Writes <code>double</code>s to consecutive positions of a channel, through a buffer.
+     */
+    private static final class SectionWriter {
+        private final FileChannel channel;
+        private final ByteBuffer  buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long              position;
+
+        SectionWriter(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        SectionWriter put(double d) throws IOException {
+            if (!buffer.hasRemaining())
+                flush();
+            buffer.putDouble(d);
+            return this;
+        }
+
+        void putPolygon(List<? extends Point> vertices, int n) throws IOException {
+            for (int k = 0; k < n; k++) {
+                put(vertices.get(k).x()).put(vertices.get(k).y());
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+    }
+}
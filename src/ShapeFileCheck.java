@@ -0,0 +1,83 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that shapes survive a round trip through a {@link ShapeFile}: a {@link ShapeStore} of random triangles,
+ * quadrilaterals and circles is written from the store itself, from the views of its shapes and from snapshots of
+ * those views, and the views of the file read back are written again. All four files must be byte-for-byte equal, and
+ * each shape read back must format itself as the shape it was written from. Run with the number of shapes as an optional argument, e.g.
+ * <code>java ShapeFileCheck 100000</code>.
+ */
+public class ShapeFileCheck {
+
+    public static void main(String[] args) throws IOException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+
+        Random random = new Random(42);
+        ShapeStore store = new ShapeStore();
+        for (int i = 0; i < n; i++) {
+            double x = random.nextDouble() * 1000;
+            double y = random.nextDouble() * 1000;
+            switch (random.nextInt(3)) {
+                case 0:
+                    store.addTriangle(x, y, x + random.nextDouble() * 20, y, x, y + random.nextDouble() * 20);
+                    break;
+                case 1:
+                    store.addQuadrilateral(x, y, x + 10, y, x + 10 + random.nextDouble(), y + 10, x, y + 10);
+                    break;
+                default:
+                    store.addCircle(x, y, random.nextDouble() * 10);
+            }
+        }
+        //the order of a shape file: triangles first, then quadrilaterals, then circles
+        List<String> expected = new ArrayList<>(n);
+        for (String kind : new String[] {"Triangle", "Quadrilateral", "Circle"}) {
+            for (TwoDShape shape : store.asList()) {
+                if (shape.toString().startsWith(kind))
+                    expected.add(shape.toString());
+            }
+        }
+
+        Path fromStore = Files.createTempFile("shapes", ".shp");
+        Path fromViews = Files.createTempFile("shapes", ".shp");
+        Path fromSnapshots = Files.createTempFile("shapes", ".shp");
+        Path fromFile = Files.createTempFile("shapes", ".shp");
+        long failures = 0;
+        try {
+            ShapeFile.write(fromStore, store);
+            ShapeFile.write(fromViews, store.asList());
+            ShapeFile.write(fromSnapshots, ShapeSnapshot.ofAll(store.asList()));
+            try (ShapeFile file = ShapeFile.open(fromViews)) {
+                List<TwoDShape> shapes = file.asList();
+                if (shapes.size() != n)
+                    failures++;
+                for (int i = 0; i < Math.min(n, shapes.size()); i++) {
+                    if (!shapes.get(i).toString().equals(expected.get(i)))
+                        failures++;
+                }
+                ShapeFile.write(fromFile, shapes);
+            }
+            byte[] bytes = Files.readAllBytes(fromStore);
+            if (!Arrays.equals(bytes, Files.readAllBytes(fromViews)))
+                failures++;
+            if (!Arrays.equals(bytes, Files.readAllBytes(fromSnapshots)))
+                failures++;
+            if (!Arrays.equals(bytes, Files.readAllBytes(fromFile)))
+                failures++;
+        }
+        finally {
+            Files.delete(fromStore);
+            Files.delete(fromViews);
+            Files.delete(fromSnapshots);
+            Files.delete(fromFile);
+        }
+        System.out.printf("round-tripped %,d shapes through a shape file: %d failures%n", n, failures);
+        if (failures > 0)
+            throw new IllegalStateException("The shapes read back differ from the shapes written.");
+    }
+}
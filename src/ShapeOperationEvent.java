@@ -0,0 +1,45 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for one bulk operation over many shapes, such as a sort or a snapping pass, with its
+ * duration and the number of elements it ran over. Events are only created while {@link MetricsRegistry#ENABLED} is
+ * on and the event is enabled in the recording, e.g. by <code>-XX:StartFlightRecording</code>.
+ */
+@Name("shapes.Operation")
+@Label("Shape Operation")
+@Category("Shapes")
+@Description("A bulk operation over many shapes")
+final class ShapeOperationEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Elements")
+    long elements;
+
+    /**
+     * @return a started event for the specified operation, or <code>null</code> if it would not be recorded
+     */
+    static ShapeOperationEvent begin(String operation, long elements) {
+        if (!MetricsRegistry.ENABLED)
+            return null;
+        ShapeOperationEvent event = new ShapeOperationEvent();
+        if (!event.isEnabled())
+            return null;
+        event.operation = operation;
+        event.elements = elements;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the specified event, if it was started, and writes it to the recording.
+     */
+    static void end(ShapeOperationEvent event) {
+        if (event != null)
+            event.commit();
+    }
+}
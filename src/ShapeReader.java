@@ -0,0 +1,398 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Reads two-dimensional shapes from a text file of coordinates, one shape per line, without loading the file into
+ * memory. A line of three numbers is a circle (x, y, radius), a line of six numbers is a triangle and a line of eight
+ * numbers is a quadrilateral, given as x-y pairs of vertices in any order. Numbers may be separated by commas,
+ * semicolons, spaces or tabs, so both CSV files and whitespace-separated files can be read. Blank lines and lines
+ * starting with <code>#</code> are skipped.
+ * <p>
+ * The input is read in chunks of {@value #CHUNK_SIZE} bytes and parsed into batches of {@value #BATCH_SIZE} records.
+ * While one batch is being parsed, the previous batch is validated with the <code>isMember</code> rules of
+ * {@link Circle}, {@link Triangle} and {@link Quadrilateral}, through {@link ShapeValidator} for polygons, and its
+ * shapes are constructed, in parallel. At most two
+ * batches are held at a time, whatever the size of the input. The shapes are then passed to the consumer in the order
+ * of the input, on the calling thread, and every line that is not a valid shape is reported to a
+ * {@link RejectHandler} instead.
+ */
+public final class ShapeReader {
+
+    static final int CHUNK_SIZE      = 1 << 16;
+    static final int BATCH_SIZE      = 1 << 12;
+    static final int MAX_LINE_LENGTH = 1 << 16;
+
+    private static final int MAX_COORDINATES = 8;
+
+    //exact powers of ten, for the fast path of parseDouble
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private ShapeReader() { }
+
+    /**
+     * Receives the lines of the input that are not valid shapes.
+     */
+    @FunctionalInterface
+    public interface RejectHandler {
+
+        /**
+         * @param line   the number of the rejected line, starting from 1
+         * @param reason why the line was rejected
+         */
+        void reject(long line, String reason);
+    }
+
+    /**
+     * Reads the shapes in the specified file.
+     *
+     * @param file     the file to read
+     * @param consumer receives each valid shape, in the order of the file
+     * @param rejects  receives each invalid line, in the order of the file
+     * @return the number of shapes passed to the consumer
+     * @throws IOException if the file cannot be read
+     */
+    public static long read(Path file, Consumer<? super TwoDShape> consumer, RejectHandler rejects) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in, consumer, rejects);
+        }
+    }
+
+    /**
+     * Reads the shapes in the specified stream, up to its end. The stream is not closed.
+     *
+     * @param in       the stream to read, as ASCII or UTF-8 text
+     * @param consumer receives each valid shape, in the order of the stream
+     * @param rejects  receives each invalid line, in the order of the stream
+     * @return the number of shapes passed to the consumer
+     * @throws IOException if the stream cannot be read
+     */
+    public static long read(InputStream in, Consumer<? super TwoDShape> consumer, RejectHandler rejects)
+            throws IOException {
+        Pipeline pipeline = new Pipeline(consumer, rejects);
+        byte[] chunk = new byte[CHUNK_SIZE];
+        //the start of a line that continues into the next chunk
+        byte[] carry = new byte[256];
+        int carried = 0;
+        boolean overlong = false;
+        long line = 0;
+
+        int n;
+        while ((n = in.read(chunk)) >= 0) {
+            int start = 0;
+            for (int i = 0; i < n; i++) {
+                if (chunk[i] != '\n')
+                    continue;
+                line++;
+                if (overlong)
+                    pipeline.reject(line, "line is longer than " + MAX_LINE_LENGTH + " bytes");
+                else if (carried == 0)
+                    pipeline.parse(chunk, start, i, line);
+                else {
+                    carry = append(carry, carried, chunk, start, i);
+                    pipeline.parse(carry, 0, carried + i - start, line);
+                }
+                carried = 0;
+                overlong = false;
+                start = i + 1;
+            }
+            if (!overlong && carried + n - start > MAX_LINE_LENGTH)
+                overlong = true;
+            if (!overlong) {
+                carry = append(carry, carried, chunk, start, n);
+                carried += n - start;
+            }
+        }
+        if (overlong)
+            pipeline.reject(line + 1, "line is longer than " + MAX_LINE_LENGTH + " bytes");
+        else if (carried > 0)
+            pipeline.parse(carry, 0, carried, line + 1);
+        return pipeline.finish();
+    }
+
+    /**
+     * Copies <code>src[from, to)</code> to the end of the first <code>length</code> bytes of <code>dst</code>, growing
+     * it if needed.
+     *
+     * @return the destination, or its replacement if it had to grow
+     */
+    private static byte[] append(byte[] dst, int length, byte[] src, int from, int to) {
+        int needed = length + to - from;
+        if (needed > dst.length) {
+            byte[] grown = new byte[Math.max(needed, dst.length * 2)];
+            System.arraycopy(dst, 0, grown, 0, length);
+            dst = grown;
+        }
+        System.arraycopy(src, from, dst, length, to - from);
+        return dst;
+    }
+
+    private static boolean isSeparator(byte b) {
+        return b == ',' || b == ';' || b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * Parses the decimal number in <code>bytes[from, to)</code>. Numbers of at most 15 significant digits with a small
+     * enough exponent, which covers ordinary coordinates, are converted exactly with one multiplication or division;
+     * anything else is handed to {@link Double#parseDouble}, so the result is always correctly rounded.
+     *
+     * @throws NumberFormatException if the bytes are not a number
+     */
+    static double parseDouble(byte[] bytes, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean any = false;
+        for (; i < to && isDigit(bytes[i]); i++) {
+            any = true;
+            int d = bytes[i] - '0';
+            if (mantissa == 0 && d == 0)
+                continue;
+            if (digits == 15)
+                return parseSlowly(bytes, from, to);
+            mantissa = mantissa * 10 + d;
+            digits++;
+        }
+        if (i < to && bytes[i] == '.') {
+            for (i++; i < to && isDigit(bytes[i]); i++) {
+                any = true;
+                int d = bytes[i] - '0';
+                exponent--;
+                if (mantissa == 0 && d == 0)
+                    continue;
+                if (digits == 15)
+                    return parseSlowly(bytes, from, to);
+                mantissa = mantissa * 10 + d;
+                digits++;
+            }
+        }
+        if (!any)
+            return parseSlowly(bytes, from, to);
+        if (i < to && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+                negativeExponent = bytes[i] == '-';
+                i++;
+            }
+            if (i == to)
+                return parseSlowly(bytes, from, to);
+            int e = 0;
+            for (; i < to && isDigit(bytes[i]); i++) {
+                if (e > 1000)
+                    return parseSlowly(bytes, from, to);
+                e = e * 10 + bytes[i] - '0';
+            }
+            exponent += negativeExponent ? -e : e;
+        }
+        if (i != to)
+            return parseSlowly(bytes, from, to);
+
+        double value;
+        if (mantissa == 0)
+            value = 0;
+        else if (exponent >= 0 && exponent < POWERS_OF_TEN.length)
+            value = mantissa * POWERS_OF_TEN[exponent];
+        else if (exponent < 0 && -exponent < POWERS_OF_TEN.length)
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        else
+            return parseSlowly(bytes, from, to);
+        return negative ? -value : value;
+    }
+
+    private static double parseSlowly(byte[] bytes, int from, int to) {
+        return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * The parsed records of consecutive lines, and after validation, their shapes or the reasons they were rejected.
+     */
+    private static final class Batch {
+        final double[]    coordinates = new double[BATCH_SIZE * MAX_COORDINATES];
+        final int[]       counts      = new int[BATCH_SIZE];
+        final long[]      lines       = new long[BATCH_SIZE];
+        final String[]    errors      = new String[BATCH_SIZE];
+        final TwoDShape[] shapes      = new TwoDShape[BATCH_SIZE];
+        int               size;
+
+        Batch validate() {
+            IntStream.range(0, size).parallel().forEach(this::validate);
+            return this;
+        }
+
+        private void validate(int i) {
+            if (errors[i] != null)
+                return;
+            int base = i * MAX_COORDINATES;
+            switch (counts[i]) {
+                case 3:
+                    Circle circle = new Circle(coordinates[base], coordinates[base + 1], coordinates[base + 2]);
+                    if (circle.isMember(circle.getPosition()))
+                        shapes[i] = circle;
+                    else
+                        errors[i] = "not a circle: the radius is not positive";
+                    break;
+                case 6:
+                case 8:
+                    byte code = ShapeValidator.check(coordinates, base, counts[i]);
+                    String kind = counts[i] == 6 ? "triangle" : "quadrilateral";
+                    if (!ShapeValidator.isMember(code))
+                        errors[i] = "not a " + kind + ": " + ShapeValidator.describe(code);
+                    else if (counts[i] == 6)
+                        shapes[i] = new Triangle(points(base, 3));
+                    else
+                        shapes[i] = new Quadrilateral(points(base, 4));
+                    break;
+                default:
+                    errors[i] = "expected 3, 6 or 8 numbers but found " + counts[i];
+            }
+        }
+
+        private List<TwoDPoint> points(int base, int n) {
+            List<TwoDPoint> points = new ArrayList<>(n);
+            for (int k = 0; k < n; k++) {
+                points.add(new TwoDPoint(coordinates[base + 2 * k], coordinates[base + 2 * k + 1]));
+            }
+            return points;
+        }
+    }
+
+    /**
+     * Parses lines into the current batch, hands each full batch over to be validated, and passes the shapes of the
+     * previous batch on once they are ready.
+     */
+    private static final class Pipeline {
+        private final Consumer<? super TwoDShape> consumer;
+        private final RejectHandler               rejects;
+
+        private Batch                    current = new Batch();
+        private CompletableFuture<Batch> pending;
+        private long                     accepted;
+
+        Pipeline(Consumer<? super TwoDShape> consumer, RejectHandler rejects) {
+            this.consumer = consumer;
+            this.rejects = rejects;
+        }
+
+        /**
+         * Splits <code>bytes[from, to)</code> into numbers and adds them to the current batch as one record, unless
+         * the line is blank or a comment.
+         */
+        void parse(byte[] bytes, int from, int to, long line) {
+            Batch batch = current;
+            int base = batch.size * MAX_COORDINATES;
+            int count = 0;
+            String error = null;
+            int i = from;
+            while (true) {
+                while (i < to && isSeparator(bytes[i])) {
+                    i++;
+                }
+                if (i >= to)
+                    break;
+                if (count == 0 && bytes[i] == '#')
+                    return;
+                int start = i;
+                while (i < to && !isSeparator(bytes[i])) {
+                    i++;
+                }
+                if (count >= MAX_COORDINATES) {
+                    count++; //only counted, so that the record can be reported with the number of numbers it has
+                    continue;
+                }
+                try {
+                    double d = parseDouble(bytes, start, i);
+                    if (Double.isNaN(d) || Double.isInfinite(d)) {
+                        error = "not a finite number: " + new String(bytes, start, i - start,
+                                                                      StandardCharsets.UTF_8);
+                        break;
+                    }
+                    batch.coordinates[base + count++] = d;
+                }
+                catch(NumberFormatException e) {
+                    error = "not a number: " + new String(bytes, start, i - start, StandardCharsets.UTF_8);
+                    break;
+                }
+            }
+            if (count == 0 && error == null)
+                return;
+            add(line, count, error);
+        }
+
+        void reject(long line, String reason) {
+            add(line, 0, reason);
+        }
+
+        private void add(long line, int count, String error) {
+            Batch batch = current;
+            batch.lines[batch.size] = line;
+            batch.counts[batch.size] = count;
+            batch.errors[batch.size] = error;
+            if (++batch.size == BATCH_SIZE)
+                submit();
+        }
+
+        /**
+         * Starts validating the current batch, then passes on the previous batch and parses into its space next.
+         */
+        private void submit() {
+            Batch full = current;
+            CompletableFuture<Batch> next = CompletableFuture.supplyAsync(full::validate);
+            if (pending != null) {
+                current = pending.join();
+                emit(current);
+            }
+            else
+                current = new Batch();
+            pending = next;
+        }
+
+        private void emit(Batch batch) {
+            for (int i = 0; i < batch.size; i++) {
+                if (batch.errors[i] != null)
+                    rejects.reject(batch.lines[i], batch.errors[i]);
+                else {
+                    consumer.accept(batch.shapes[i]);
+                    accepted++;
+                }
+                batch.errors[i] = null;
+                batch.shapes[i] = null;
+            }
+            batch.size = 0;
+        }
+
+        long finish() {
+            if (current.size > 0)
+                submit();
+            if (pending != null) {
+                emit(pending.join());
+                pending = null;
+            }
+            return accepted;
+        }
+    }
+}
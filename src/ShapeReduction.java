@@ -0,0 +1,306 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Single-pass reductions over collections of two-dimensional shapes: the number of shapes, the sums of their areas and
+ * perimeters, the shapes with the least and the greatest area, and the <code>k</code> shapes with the greatest area.
+ * The area and the perimeter of each shape are evaluated exactly once per pass.
+ * <p>
+ * The least shape is the first shape, in the order of the collection, that no other shape has a smaller area than;
+ * that is, the shape {@link Ordering#printAllAndReturnLeast} returns.
+ */
+final class ShapeReduction {
+
+    /**
+     * The number of shapes whose areas are computed together, in parallel, while the previous block is printed.
+     */
+    static final int BLOCK_SIZE = 1 << 12;
+
+    private ShapeReduction() { }
+
+    /**
+     * Reduces the specified shapes in one parallel pass, split by the spliterator of the list across the common
+     * fork-join pool.
+     *
+     * @param shapes the shapes to reduce
+     * @param k      the number of shapes with the greatest area to keep
+     * @return the summary of the shapes
+     */
+    static Summary summarize(List<? extends TwoDShape> shapes, int k) {
+        Collector<TwoDShape, Accumulator, Summary> collector = Collector.of(
+                () -> new Accumulator(k),
+                (acc, shape) -> acc.add(shape, shape.area(), shape.perimeter()),
+                Accumulator::combine,
+                Accumulator::finish);
+        ShapeOperationEvent event = ShapeOperationEvent.begin("summarize", shapes.size());
+        Summary summary = StreamSupport.stream(shapes.spliterator(), true).collect(collector);
+        ShapeOperationEvent.end(event);
+        return summary;
+    }
+
+    /**
+     * Passes each of the specified shapes to the printer, in order, and reduces them at the same time. The areas and
+     * perimeters of one block of {@link #BLOCK_SIZE} shapes are computed in parallel while the block before it is
+     * being printed, so at most two blocks are held in memory at a time.
+     *
+     * @param shapes  the shapes to print and reduce
+     * @param printer the printer to pass each shape to
+     * @param k       the number of shapes with the greatest area to keep
+     * @return the summary of the shapes
+     */
+    static Summary printAll(Iterable<? extends TwoDShape> shapes, AbstractPrinter<TwoDShape> printer, int k) {
+        Accumulator acc = new Accumulator(k);
+        Iterator<? extends TwoDShape> it = shapes.iterator();
+        CompletableFuture<Block> pending = Block.measureNext(it);
+        while (pending != null) {
+            Block block = pending.join();
+            pending = Block.measureNext(it);
+            for (int i = 0; i < block.size; i++) {
+                printer.print(block.shapes[i]);
+                acc.add(block.shapes[i], block.areas[i], block.perimeters[i]);
+            }
+        }
+        return acc.finish();
+    }
+
+    /**
+     * A run of consecutive shapes, with their areas and perimeters.
+     */
+    private static final class Block {
+        final TwoDShape[] shapes;
+        final double[]    areas;
+        final double[]    perimeters;
+        final int         size;
+
+        private Block(TwoDShape[] shapes, int size) {
+            this.shapes = shapes;
+            this.size = size;
+            this.areas = new double[size];
+            this.perimeters = new double[size];
+        }
+
+        /**
+         * Takes the next block of shapes from the iterator, and starts computing their areas and perimeters.
+         *
+         * @return the block, once measured, or <code>null</code> if the iterator has no more shapes
+         */
+        static CompletableFuture<Block> measureNext(Iterator<? extends TwoDShape> it) {
+            if (!it.hasNext())
+                return null;
+            TwoDShape[] shapes = new TwoDShape[BLOCK_SIZE];
+            int n = 0;
+            while (n < BLOCK_SIZE && it.hasNext()) {
+                shapes[n++] = it.next();
+            }
+            Block block = new Block(shapes, n);
+            return CompletableFuture.supplyAsync(() -> {
+                IntStream.range(0, block.size).parallel().forEach(i -> {
+                    block.areas[i] = block.shapes[i].area();
+                    block.perimeters[i] = block.shapes[i].perimeter();
+                });
+                return block;
+            });
+        }
+    }
+
+    /**
+     * The mutable state of a reduction over part of a collection. Accumulators of adjacent parts are combined left to
+     * right, so ties are resolved in favour of the shape that comes first.
+     */
+    private static final class Accumulator {
+        long      count;
+        double    areaSum;
+        double    perimeterSum;
+        TwoDShape least;
+        double    leastArea = Double.POSITIVE_INFINITY;
+        TwoDShape greatest;
+        double    greatestArea = Double.NEGATIVE_INFINITY;
+
+        //a min-heap on area of the k greatest shapes seen so far
+        final int         k;
+        final TwoDShape[] top;
+        final double[]    topAreas;
+        int               topSize;
+
+        Accumulator(int k) {
+            if (k < 0)
+                throw new IllegalArgumentException("The number of shapes to keep cannot be negative.");
+            this.k = k;
+            this.top = new TwoDShape[k];
+            this.topAreas = new double[k];
+        }
+
+        void add(TwoDShape shape, double area, double perimeter) {
+            count++;
+            areaSum += area;
+            perimeterSum += perimeter;
+            if (least == null || area < leastArea) {
+                least = shape;
+                leastArea = area;
+            }
+            if (greatest == null || area > greatestArea) {
+                greatest = shape;
+                greatestArea = area;
+            }
+            offer(shape, area);
+        }
+
+        private void offer(TwoDShape shape, double area) {
+            if (topSize < k) {
+                int i = topSize++;
+                while (i > 0 && topAreas[(i - 1) >>> 1] > area) {
+                    int parent = (i - 1) >>> 1;
+                    top[i] = top[parent];
+                    topAreas[i] = topAreas[parent];
+                    i = parent;
+                }
+                top[i] = shape;
+                topAreas[i] = area;
+            }
+            else if (k > 0 && area > topAreas[0]) {
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= k)
+                        break;
+                    if (child + 1 < k && topAreas[child + 1] < topAreas[child])
+                        child++;
+                    if (topAreas[child] >= area)
+                        break;
+                    top[i] = top[child];
+                    topAreas[i] = topAreas[child];
+                    i = child;
+                }
+                top[i] = shape;
+                topAreas[i] = area;
+            }
+        }
+
+        Accumulator combine(Accumulator right) {
+            count += right.count;
+            areaSum += right.areaSum;
+            perimeterSum += right.perimeterSum;
+            if (right.least != null && (least == null || right.leastArea < leastArea)) {
+                least = right.least;
+                leastArea = right.leastArea;
+            }
+            if (right.greatest != null && (greatest == null || right.greatestArea > greatestArea)) {
+                greatest = right.greatest;
+                greatestArea = right.greatestArea;
+            }
+            for (int i = 0; i < right.topSize; i++) {
+                offer(right.top[i], right.topAreas[i]);
+            }
+            return this;
+        }
+
+        Summary finish() {
+            Integer[] order = new Integer[topSize];
+            for (int i = 0; i < topSize; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(topAreas[b], topAreas[a]));
+            List<TwoDShape> greatestK = new ArrayList<>(topSize);
+            for (Integer i : order) {
+                greatestK.add(top[i]);
+            }
+            return new Summary(count, areaSum, perimeterSum, least, leastArea, greatest, greatestArea,
+                               Collections.unmodifiableList(greatestK));
+        }
+    }
+
+    /**
+     * The result of a reduction over a collection of two-dimensional shapes.
+     */
+    static final class Summary {
+        private final long            count;
+        private final double          areaSum;
+        private final double          perimeterSum;
+        private final TwoDShape       least;
+        private final double          leastArea;
+        private final TwoDShape       greatest;
+        private final double          greatestArea;
+        private final List<TwoDShape> top;
+
+        Summary(long count, double areaSum, double perimeterSum, TwoDShape least, double leastArea,
+                TwoDShape greatest, double greatestArea, List<TwoDShape> top) {
+            this.count = count;
+            this.areaSum = areaSum;
+            this.perimeterSum = perimeterSum;
+            this.least = least;
+            this.leastArea = leastArea;
+            this.greatest = greatest;
+            this.greatestArea = greatestArea;
+            this.top = top;
+        }
+
+        /**
+         * @return the number of shapes reduced
+         */
+        long count() {
+            return count;
+        }
+
+        /**
+         * @return the sum of the areas of all the shapes
+         */
+        double areaSum() {
+            return areaSum;
+        }
+
+        /**
+         * @return the sum of the perimeters of all the shapes
+         */
+        double perimeterSum() {
+            return perimeterSum;
+        }
+
+        /**
+         * @return the first shape with the least area, or <code>null</code> if there were no shapes
+         */
+        TwoDShape least() {
+            return least;
+        }
+
+        /**
+         * @return the least area, or positive infinity if there were no shapes
+         */
+        double minArea() {
+            return leastArea;
+        }
+
+        /**
+         * @return the first shape with the greatest area, or <code>null</code> if there were no shapes
+         */
+        TwoDShape greatest() {
+            return greatest;
+        }
+
+        /**
+         * @return the greatest area, or negative infinity if there were no shapes
+         */
+        double maxArea() {
+            return greatestArea;
+        }
+
+        /**
+         * @return the shapes with the greatest areas, in decreasing order of area
+         */
+        List<TwoDShape> top() {
+            return top;
+        }
+
+        @Override
+        public String toString() {
+            return "Summary[count: " + count + "; area: " + areaSum + "; perimeter: " + perimeterSum
+                    + "; min area: " + leastArea + "; max area: " + greatestArea + "]";
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable two-dimensional shape. A snapshot puts its vertices in the order documented by
+ * {@link Triangle#getPosition} and computes its area, perimeter and bounding box once, when it is created, and keeps
+ * them in <code>final</code> fields. Every method of a snapshot therefore only reads those fields, so any number of
+ * threads may share a snapshot without locks, and a snapshot that is handed to another thread by any means is seen
+ * there fully built.
+ * <p>
+ * Snapshots are changed by copying: {@link #withPosition} and {@link #snapped} return new snapshots and leave the
+ * original as it was. A snapshot is taken of a mutable shape with its <code>snapshot()</code> method, or with
+ * {@link #of(TwoDShape)}, and formats itself exactly as the shape it was taken of.
+ */
+public interface ShapeSnapshot extends TwoDShape {
+
+    /**
+     * @return the vertices of this shape, in the order documented by {@link Triangle#getPosition}, as an unmodifiable
+     * list; for a circle, its center
+     */
+    List<TwoDPoint> vertices();
+
+    /**
+     * @return a snapshot of the same kind of shape as this one, at the specified position
+     * @throws IllegalArgumentException if the points are not a valid position for this kind of shape
+     */
+    ShapeSnapshot withPosition(List<? extends Point> points);
+
+    /**
+     * @return a snapshot of this shape with each vertex snapped to its nearest integer-valued x-y coordinate, as by
+     * {@link Triangle#snap()}, or this snapshot if snapping would make it invalid
+     */
+    ShapeSnapshot snapped();
+
+    /**
+     * @return an immutable copy of the specified triangle, quadrilateral or circle, which may also be a view of a
+     * shape of a {@link ShapeStore}, a {@link ShapeFile} or an {@link OffHeapShapeStore}
+     * @throws IllegalArgumentException if the shape is of another kind, or is a view of a triangle or quadrilateral
+     *                                  whose vertices are not valid for its kind
+     * @throws IllegalStateException    if the shape is a {@link Triangle} or {@link Quadrilateral} that was never given
+     *                                  a valid position
+     */
+    static ShapeSnapshot of(TwoDShape shape) {
+        if (shape instanceof ShapeSnapshot)
+            return (ShapeSnapshot) shape;
+        if (shape instanceof Triangle)
+            return ((Triangle) shape).snapshot();
+        if (shape instanceof Quadrilateral)
+            return ((Quadrilateral) shape).snapshot();
+        if (shape instanceof Circle)
+            return ((Circle) shape).snapshot();
+        if (shape instanceof CircleShape) {
+            CircleShape circle = (CircleShape) shape;
+            return new CircleSnapshot(new TwoDPoint(circle.centerX(), circle.centerY()), circle.radius());
+        }
+        if (shape instanceof Positionable && shape.numSides() == 3)
+            return TriangleSnapshot.of(((Positionable) shape).getPosition());
+        if (shape instanceof Positionable && shape.numSides() == 4)
+            return QuadrilateralSnapshot.of(((Positionable) shape).getPosition());
+        throw new IllegalArgumentException("There is no snapshot of a " + shape.getClass().getName() + ".");
+    }
+
+    /**
+     * Takes a snapshot of each of the specified shapes, as by {@link #of(TwoDShape)}. The shapes must not be changed by
+     * another thread until this returns; the snapshots may then be read by any number of threads at once.
+     *
+     * @return the snapshots, in the order of the shapes
+     */
+    static List<ShapeSnapshot> ofAll(List<? extends TwoDShape> shapes) {
+        List<ShapeSnapshot> snapshots = new ArrayList<>(shapes.size());
+        for (TwoDShape shape : shapes) {
+            snapshots.add(of(shape));
+        }
+        return snapshots;
+    }
+}
@@ -0,0 +1,622 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A columnar store of two-dimensional shapes. Instead of one object per shape, each kind of shape is kept in its own
+ * set of parallel <code>double[]</code> columns: one x-column and one y-column per vertex for triangles and
+ * quadrilaterals, and center and radius columns for circles. Bulk passes such as {@link #areas(double[])} run over
+ * these columns directly, and never build a {@link TwoDPoint}.
+ * <p>
+ * Every shape added to the store gets an index, in the order of insertion, across all kinds of shapes. The vertices
+ * of triangles and quadrilaterals are stored in the order documented by {@link Triangle#getPosition} and
+ * {@link Quadrilateral#getPosition}. The store does not validate shapes as they are added; use
+ * {@link #members(boolean[])} to run the <code>isMember</code> rules over all of them at once.
+ * <p>
+ * A store is not safe for concurrent modification.
+ */
+public class ShapeStore {
+
+    static final byte TRIANGLE      = 0;
+    static final byte QUADRILATERAL = 1;
+    static final byte CIRCLE        = 2;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    //triangle columns: triX[k][i] is the x-coordinate of the k-th vertex of the i-th triangle
+    double[][] triX = new double[3][INITIAL_CAPACITY];
+    double[][] triY = new double[3][INITIAL_CAPACITY];
+    int[]      triIndex = new int[INITIAL_CAPACITY];
+    int        triangles;
+
+    //quadrilateral columns, laid out the same way as the triangle columns
+    double[][] quadX = new double[4][INITIAL_CAPACITY];
+    double[][] quadY = new double[4][INITIAL_CAPACITY];
+    int[]      quadIndex = new int[INITIAL_CAPACITY];
+    int        quads;
+
+    //circle columns
+    double[] circleX = new double[INITIAL_CAPACITY];
+    double[] circleY = new double[INITIAL_CAPACITY];
+    double[] radius  = new double[INITIAL_CAPACITY];
+    int[]    circleIndex = new int[INITIAL_CAPACITY];
+    int      circles;
+
+    //the kind of each shape, and its slot within the columns of that kind, by index
+    byte[] kinds = new byte[INITIAL_CAPACITY];
+    int[]  slots = new int[INITIAL_CAPACITY];
+    int    size;
+
+    //scratch space used to put the vertices of a new shape in order
+    private final double[] xs = new double[4];
+    private final double[] ys = new double[4];
+
+    /**
+     * Adds a triangle with the specified vertices to this store.
+     *
+     * @return the index of the new triangle in this store
+     */
+    public int addTriangle(double x1, double y1, double x2, double y2, double x3, double y3) {
+        if (triangles == triIndex.length) {
+            int capacity = triangles * 2;
+            for (int k = 0; k < 3; k++) {
+                triX[k] = Arrays.copyOf(triX[k], capacity);
+                triY[k] = Arrays.copyOf(triY[k], capacity);
+            }
+            triIndex = Arrays.copyOf(triIndex, capacity);
+        }
+        xs[0] = x1; xs[1] = x2; xs[2] = x3;
+        ys[0] = y1; ys[1] = y2; ys[2] = y3;
+        Geometry.clockwise(xs, ys, 3);
+
+        int slot = triangles++;
+        for (int k = 0; k < 3; k++) {
+            triX[k][slot] = xs[k];
+            triY[k][slot] = ys[k];
+        }
+        triIndex[slot] = size;
+        return append(TRIANGLE, slot);
+    }
+
+    /**
+     * Adds a quadrilateral with the specified vertices to this store.
+     *
+     * @return the index of the new quadrilateral in this store
+     */
+    public int addQuadrilateral(double x1, double y1, double x2, double y2,
+                                double x3, double y3, double x4, double y4) {
+        if (quads == quadIndex.length) {
+            int capacity = quads * 2;
+            for (int k = 0; k < 4; k++) {
+                quadX[k] = Arrays.copyOf(quadX[k], capacity);
+                quadY[k] = Arrays.copyOf(quadY[k], capacity);
+            }
+            quadIndex = Arrays.copyOf(quadIndex, capacity);
+        }
+        xs[0] = x1; xs[1] = x2; xs[2] = x3; xs[3] = x4;
+        ys[0] = y1; ys[1] = y2; ys[2] = y3; ys[3] = y4;
+        Geometry.clockwise(xs, ys, 4);
+
+        int slot = quads++;
+        for (int k = 0; k < 4; k++) {
+            quadX[k][slot] = xs[k];
+            quadY[k][slot] = ys[k];
+        }
+        quadIndex[slot] = size;
+        return append(QUADRILATERAL, slot);
+    }
+
+    /**
+     * Adds a circle centered at (x, y) of radius r to this store.
+     *
+     * @return the index of the new circle in this store
+     */
+    public int addCircle(double x, double y, double r) {
+        if (circles == circleIndex.length) {
+            int capacity = circles * 2;
+            circleX = Arrays.copyOf(circleX, capacity);
+            circleY = Arrays.copyOf(circleY, capacity);
+            radius = Arrays.copyOf(radius, capacity);
+            circleIndex = Arrays.copyOf(circleIndex, capacity);
+        }
+        int slot = circles++;
+        circleX[slot] = x;
+        circleY[slot] = y;
+        radius[slot] = r;
+        circleIndex[slot] = size;
+        return append(CIRCLE, slot);
+    }
+
+    /**
+     * Copies the specified shape into this store.
+     *
+     * @param shape a {@link Triangle}, {@link Quadrilateral} or {@link Circle}
+     * @return the index of the copy in this store
+     * @throws IllegalArgumentException if the shape is of any other type
+     */
+    public int add(TwoDShape shape) {
+        if (shape instanceof Circle) {
+            Circle c = (Circle) shape;
+            Point center = c.getPosition().get(0);
+            return addCircle(center.x(), center.y(), c.getRadius());
+        }
+        if (shape instanceof Triangle) {
+            List<? extends Point> v = ((Triangle) shape).getPosition();
+            Point a = v.get(0);
+            Point b = v.get(1);
+            Point c = v.get(2);
+            return addTriangle(a.x(), a.y(), b.x(), b.y(), c.x(), c.y());
+        }
+        if (shape instanceof Quadrilateral) {
+            List<? extends Point> v = ((Quadrilateral) shape).getPosition();
+            Point a = v.get(0);
+            Point b = v.get(1);
+            Point c = v.get(2);
+            Point d = v.get(3);
+            return addQuadrilateral(a.x(), a.y(), b.x(), b.y(), c.x(), c.y(), d.x(), d.y());
+        }
+        throw new IllegalArgumentException("Only triangles, quadrilaterals and circles can be stored.");
+    }
+
+    private int append(byte kind, int slot) {
+        if (size == kinds.length) {
+            kinds = Arrays.copyOf(kinds, size * 2);
+            slots = Arrays.copyOf(slots, size * 2);
+        }
+        kinds[size] = kind;
+        slots[size] = slot;
+        return size++;
+    }
+
+    /**
+     * @return the number of shapes in this store
+     */
+    public int size() {
+        return size;
+    }
+
+    public int triangleCount() {
+        return triangles;
+    }
+
+    public int quadrilateralCount() {
+        return quads;
+    }
+
+    public int circleCount() {
+        return circles;
+    }
+
+    /**
+     * @return the area of the shape at the specified index
+     */
+    public double area(int index) {
+        int s = slots[index];
+        switch (kinds[index]) {
+            case TRIANGLE:
+                return Geometry.triangleArea(triX[0][s], triY[0][s], triX[1][s], triY[1][s], triX[2][s], triY[2][s]);
+            case QUADRILATERAL:
+                return Geometry.quadrilateralArea(quadX[0][s], quadY[0][s], quadX[1][s], quadY[1][s],
+                                                  quadX[2][s], quadY[2][s], quadX[3][s], quadY[3][s]);
+            default:
+                return Math.PI * radius[s] * radius[s];
+        }
+    }
+
+    /**
+     * @return the perimeter of the shape at the specified index
+     */
+    public double perimeter(int index) {
+        int s = slots[index];
+        switch (kinds[index]) {
+            case TRIANGLE:
+                return Geometry.trianglePerimeter(triX[0][s], triY[0][s], triX[1][s], triY[1][s],
+                                                  triX[2][s], triY[2][s]);
+            case QUADRILATERAL:
+                return Geometry.quadrilateralPerimeter(quadX[0][s], quadY[0][s], quadX[1][s], quadY[1][s],
+                                                       quadX[2][s], quadY[2][s], quadX[3][s], quadY[3][s]);
+            default:
+                return 2 * Math.PI * radius[s];
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the shape at the specified index is valid for its kind, as per the
+     * <code>isMember</code> method of {@link Triangle}, {@link Quadrilateral} or {@link Circle}
+     */
+    public boolean isMember(int index) {
+        int s = slots[index];
+        switch (kinds[index]) {
+            case TRIANGLE:
+                return ShapeValidator.isMember(ShapeValidator.triangle(triX[0][s], triY[0][s], triX[1][s], triY[1][s],
+                                                                       triX[2][s], triY[2][s]));
+            case QUADRILATERAL:
+                return ShapeValidator.isMember(ShapeValidator.quadrilateral(quadX[0][s], quadY[0][s],
+                                                                            quadX[1][s], quadY[1][s],
+                                                                            quadX[2][s], quadY[2][s],
+                                                                            quadX[3][s], quadY[3][s]));
+            default:
+                return radius[s] > 0;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the shape at the specified index contains the point (x, y), or has it on its
+     * boundary
+     */
+    public boolean contains(int index, double x, double y) {
+        int s = slots[index];
+        switch (kinds[index]) {
+            case TRIANGLE:
+                return Geometry.triangleContains(triX[0][s], triY[0][s], triX[1][s], triY[1][s], triX[2][s], triY[2][s],
+                                                 x, y);
+            case QUADRILATERAL:
+                return Geometry.quadrilateralContains(quadX[0][s], quadY[0][s], quadX[1][s], quadY[1][s],
+                                                      quadX[2][s], quadY[2][s], quadX[3][s], quadY[3][s], x, y);
+            default:
+                double dx = x - circleX[s];
+                double dy = y - circleY[s];
+                double r = Math.max(radius[s], 0);
+                return dx * dx + dy * dy <= r * r;
+        }
+    }
+
+    /**
+     * Computes the area of every shape in this store, with the {@link GeometryKernels} over the columns of each kind of
+     * shape. The areas agree with {@link #area(int)} to within {@link GeometryKernels#TOLERANCE}.
+     *
+     * @param out the array to fill, indexed by shape index; its length must be at least {@link #size()}
+     */
+    public void areas(double[] out) {
+        double[] column = new double[Math.max(triangles, Math.max(quads, circles))];
+        GeometryKernels.areas(triX, triY, triangles, column);
+        scatter(column, triIndex, triangles, out);
+        GeometryKernels.areas(quadX, quadY, quads, column);
+        scatter(column, quadIndex, quads, out);
+        GeometryKernels.circleAreas(radius, circles, column);
+        scatter(column, circleIndex, circles, out);
+    }
+
+    /**
+     * Computes the perimeter of every shape in this store, with the {@link GeometryKernels} over the columns of each
+     * kind of shape. The perimeters agree with {@link #perimeter(int)} to within {@link GeometryKernels#TOLERANCE}.
+     *
+     * @param out the array to fill, indexed by shape index; its length must be at least {@link #size()}
+     */
+    public void perimeters(double[] out) {
+        double[] column = new double[Math.max(triangles, Math.max(quads, circles))];
+        GeometryKernels.perimeters(triX, triY, triangles, column);
+        scatter(column, triIndex, triangles, out);
+        GeometryKernels.perimeters(quadX, quadY, quads, column);
+        scatter(column, quadIndex, quads, out);
+        GeometryKernels.circlePerimeters(radius, circles, column);
+        scatter(column, circleIndex, circles, out);
+    }
+
+    /**
+     * Copies the first <code>n</code> values of a column of one kind of shape to the indices of their shapes.
+     */
+    private static void scatter(double[] column, int[] index, int n, double[] out) {
+        for (int i = 0; i < n; i++) {
+            out[index[i]] = column[i];
+        }
+    }
+
+    /**
+     * Runs the <code>isMember</code> rules over every shape in this store, one column pass per kind of shape.
+     *
+     * @param out the array to fill, indexed by shape index; its length must be at least {@link #size()}
+     * @return the number of valid shapes
+     */
+    public int members(boolean[] out) {
+        int valid = 0;
+        double[] ax = triX[0], ay = triY[0], bx = triX[1], by = triY[1], cx = triX[2], cy = triY[2];
+        for (int i = 0; i < triangles; i++) {
+            boolean member = ShapeValidator.isMember(ShapeValidator.triangle(ax[i], ay[i], bx[i], by[i], cx[i], cy[i]));
+            out[triIndex[i]] = member;
+            if (member)
+                valid++;
+        }
+        double[] x0 = quadX[0], y0 = quadY[0], x1 = quadX[1], y1 = quadY[1];
+        double[] x2 = quadX[2], y2 = quadY[2], x3 = quadX[3], y3 = quadY[3];
+        for (int i = 0; i < quads; i++) {
+            boolean member = ShapeValidator.isMember(ShapeValidator.quadrilateral(x0[i], y0[i], x1[i], y1[i],
+                                                                                  x2[i], y2[i], x3[i], y3[i]));
+            out[quadIndex[i]] = member;
+            if (member)
+                valid++;
+        }
+        for (int i = 0; i < circles; i++) {
+            boolean member = radius[i] > 0;
+            out[circleIndex[i]] = member;
+            if (member)
+                valid++;
+        }
+        return valid;
+    }
+
+    /**
+     * Snaps every vertex of every triangle and quadrilateral in this store to its nearest integer-valued x-y
+     * coordinate, in place, leaving unchanged any shape that this would make invalid, as {@link Triangle#snap()} does.
+     * Circles are not moved.
+     *
+     * @return the number of shapes that were left unchanged because snapping would have made them invalid
+     * @see Snapping
+     */
+    public int snap() {
+        return Snapping.snap(this);
+    }
+
+    /**
+     * Returns a lightweight view of the shape at the specified index. The view reads its values from the columns of
+     * this store, so it reflects any later change to the shape at that index.
+     *
+     * @param index the index of the shape
+     * @return the shape at that index, as a {@link TwoDShape} that is also {@link Positionable}
+     */
+    public TwoDShape get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        switch (kinds[index]) {
+            case TRIANGLE:
+                return new TriangleView(index);
+            case QUADRILATERAL:
+                return new QuadrilateralView(index);
+            default:
+                return new CircleView(index);
+        }
+    }
+
+    /**
+     * @return an unmodifiable list of views over all the shapes in this store, so that code written against
+     * <code>List&lt;TwoDShape&gt;</code> (e.g., {@link Ordering#printAllAndReturnLeast}) can run over a store
+     */
+    public List<TwoDShape> asList() {
+        return new AbstractList<TwoDShape>() {
+            @Override
+            public TwoDShape get(int index) {
+                return ShapeStore.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Common behaviour of the views over the triangle and quadrilateral columns.
+     */
+    private abstract class PolygonView implements TwoDShape, Positionable {
+        final int index;
+
+        PolygonView(int index) {
+            this.index = index;
+        }
+
+        abstract double[][] xColumns();
+
+        abstract double[][] yColumns();
+
+        abstract String name();
+
+        @Override
+        public double area() {
+            return ShapeStore.this.area(index);
+        }
+
+        @Override
+        public double perimeter() {
+            return ShapeStore.this.perimeter(index);
+        }
+
+        @Override
+        public BoundingBox boundingBox() {
+            int s = slots[index];
+            double[][] x = xColumns();
+            double[][] y = yColumns();
+            double minX = x[0][s], minY = y[0][s], maxX = minX, maxY = minY;
+            for (int k = 1; k < numSides(); k++) {
+                minX = Math.min(minX, x[k][s]);
+                minY = Math.min(minY, y[k][s]);
+                maxX = Math.max(maxX, x[k][s]);
+                maxY = Math.max(maxY, y[k][s]);
+            }
+            return new BoundingBox(minX, minY, maxX, maxY);
+        }
+
+        @Override
+        public boolean contains(double x, double y) {
+            return ShapeStore.this.contains(index, x, y);
+        }
+
+        /**
+         * Sets the position of this shape according to the first {@link #numSides()} elements in the specified list
+         * of points, which are stored in the order documented by {@link #getPosition()}.
+         */
+        @Override
+        public void setPosition(List<? extends Point> points) {
+            int n = numSides();
+            for (int k = 0; k < n; k++) {
+                xs[k] = points.get(k).x();
+                ys[k] = points.get(k).y();
+            }
+            Geometry.clockwise(xs, ys, n);
+            int s = slots[index];
+            double[][] x = xColumns();
+            double[][] y = yColumns();
+            for (int k = 0; k < n; k++) {
+                x[k][s] = xs[k];
+                y[k][s] = ys[k];
+            }
+        }
+
+        /**
+         * @return the vertices of this shape in a clockwise manner, starting with the point with the least x-value
+         */
+        @Override
+        public List<? extends Point> getPosition() {
+            int s = slots[index];
+            double[][] x = xColumns();
+            double[][] y = yColumns();
+            TwoDPoint[] vertices = new TwoDPoint[numSides()];
+            for (int k = 0; k < vertices.length; k++) {
+                vertices[k] = new TwoDPoint(x[k][s], y[k][s]);
+            }
+            return Arrays.asList(vertices);
+        }
+
+        @Override
+        public String toString() {
+            int s = slots[index];
+            double[][] x = xColumns();
+            double[][] y = yColumns();
+            StringBuilder sb = new StringBuilder(name()).append('[');
+            for (int k = 0; k < numSides(); k++) {
+                if (k > 0)
+                    sb.append(", ");
+                sb.append('(').append(x[k][s]).append(", ").append(y[k][s]).append(')');
+            }
+            return sb.append(']').toString();
+        }
+    }
+
+    private final class TriangleView extends PolygonView {
+        TriangleView(int index) {
+            super(index);
+        }
+
+        @Override
+        double[][] xColumns() {
+            return triX;
+        }
+
+        @Override
+        double[][] yColumns() {
+            return triY;
+        }
+
+        @Override
+        String name() {
+            return "Triangle";
+        }
+
+        @Override
+        public int numSides() {
+            return 3;
+        }
+
+        @Override
+        public boolean isMember(List<? extends Point> vertices) {
+            return ShapeValidator.isMember(ShapeValidator.check(vertices, 3));
+        }
+    }
+
+    private final class QuadrilateralView extends PolygonView {
+        QuadrilateralView(int index) {
+            super(index);
+        }
+
+        @Override
+        double[][] xColumns() {
+            return quadX;
+        }
+
+        @Override
+        double[][] yColumns() {
+            return quadY;
+        }
+
+        @Override
+        String name() {
+            return "Quadrilateral";
+        }
+
+        @Override
+        public int numSides() {
+            return 4;
+        }
+
+        @Override
+        public boolean isMember(List<? extends Point> vertices) {
+            return ShapeValidator.isMember(ShapeValidator.check(vertices, 4));
+        }
+    }
+
+    private final class CircleView implements CircleShape, Positionable {
+        private final int index;
+
+        CircleView(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public double centerX() {
+            return circleX[slots[index]];
+        }
+
+        @Override
+        public double centerY() {
+            return circleY[slots[index]];
+        }
+
+        @Override
+        public double radius() {
+            return radius[slots[index]];
+        }
+
+        /**
+         * Sets the position of this circle to be centered at the first element in the specified list of points.
+         */
+        @Override
+        public void setPosition(List<? extends Point> points) {
+            circleX[slots[index]] = points.get(0).x();
+            circleY[slots[index]] = points.get(0).y();
+        }
+
+        @Override
+        public List<? extends Point> getPosition() {
+            return Collections.singletonList(new TwoDPoint(circleX[slots[index]], circleY[slots[index]]));
+        }
+
+        @Override
+        public int numSides() {
+            return (int) Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public boolean isMember(List<? extends Point> centers) {
+            return centers.size() == 1 && radius[slots[index]] > 0;
+        }
+
+        @Override
+        public double area() {
+            return ShapeStore.this.area(index);
+        }
+
+        @Override
+        public double perimeter() {
+            return ShapeStore.this.perimeter(index);
+        }
+
+        @Override
+        public BoundingBox boundingBox() {
+            int s = slots[index];
+            double r = Math.max(radius[s], 0);
+            return new BoundingBox(circleX[s] - r, circleY[s] - r, circleX[s] + r, circleY[s] + r);
+        }
+
+        @Override
+        public boolean contains(double x, double y) {
+            return ShapeStore.this.contains(index, x, y);
+        }
+
+        @Override
+        public String toString() {
+            int s = slots[index];
+            return "Circle[center: " + circleX[s] + ", " + circleY[s] + "; radius: " + radius[s] + "]";
+        }
+    }
+}
@@ -0,0 +1,159 @@
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Validates triangle and quadrilateral candidates with cross-product orientation tests, and says why a candidate is
+ * invalid. Every check works on <code>double</code> coordinates only, so validating a candidate allocates nothing.
+ * <p>
+ * A candidate gets exactly one result code, tested in this order:
+ * <ul>
+ *     <li>{@link #WRONG_ARITY}: it does not have three (triangle) or four (quadrilateral) vertices</li>
+ *     <li>{@link #DEGENERATE}: two of its vertices are the same point</li>
+ *     <li>{@link #COLLINEAR}: three of its vertices are in a straight line</li>
+ *     <li>{@link #SELF_INTERSECTING}: the vertices of a quadrilateral, taken in the given order, form two edges that
+ *     cross each other</li>
+ *     <li>{@link #VALID}: none of the above</li>
+ * </ul>
+ * Triangles and quadrilaterals put their vertices in the order documented by {@link Triangle#getPosition}, which never
+ * crosses, so a self-intersecting candidate still makes a valid quadrilateral; see {@link #isMember(byte)}.
+ */
+final class ShapeValidator {
+
+    static final byte VALID             = 0;
+    static final byte WRONG_ARITY       = 1;
+    static final byte DEGENERATE        = 2;
+    static final byte COLLINEAR         = 3;
+    static final byte SELF_INTERSECTING = 4;
+
+    /**
+     * Batches of at least this many records are validated in parallel.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 12;
+
+    private ShapeValidator() { }
+
+    /**
+     * @return <code>true</code> if the result code is that of vertices that form a valid shape once they are put in
+     * the order of its position, that is, {@link #VALID} or {@link #SELF_INTERSECTING}
+     */
+    static boolean isMember(byte code) {
+        return code == VALID || code == SELF_INTERSECTING;
+    }
+
+    /**
+     * @return a short description of the result code, e.g. for reporting a rejected record
+     */
+    static String describe(byte code) {
+        switch (code) {
+            case VALID:
+                return "valid";
+            case WRONG_ARITY:
+                return "wrong number of vertices";
+            case DEGENERATE:
+                return "two of the vertices are the same point";
+            case COLLINEAR:
+                return "three of the vertices are in a straight line";
+            case SELF_INTERSECTING:
+                return "two of the edges cross";
+            default:
+                throw new IllegalArgumentException("Unknown result code: " + code);
+        }
+    }
+
+    /**
+     * Checks the triangle (a, b, c).
+     *
+     * @return {@link #VALID}, {@link #DEGENERATE} or {@link #COLLINEAR}
+     */
+    static byte triangle(double ax, double ay, double bx, double by, double cx, double cy) {
+        //the cross product is exactly zero when two of the points coincide, so this one test rules out both cases
+        if (Geometry.cross(ax, ay, bx, by, cx, cy) != 0)
+            return VALID;
+        if ((ax == bx && ay == by) || (ax == cx && ay == cy) || (bx == cx && by == cy))
+            return DEGENERATE;
+        return COLLINEAR;
+    }
+
+    /**
+     * Checks the quadrilateral with the vertices 0, 1, 2 and 3, taken in that order.
+     *
+     * @return {@link #VALID}, {@link #DEGENERATE}, {@link #COLLINEAR} or {@link #SELF_INTERSECTING}
+     */
+    static byte quadrilateral(double x0, double y0, double x1, double y1,
+                              double x2, double y2, double x3, double y3) {
+        if ((x0 == x1 && y0 == y1) || (x0 == x2 && y0 == y2) || (x0 == x3 && y0 == y3)
+                || (x1 == x2 && y1 == y2) || (x1 == x3 && y1 == y3) || (x2 == x3 && y2 == y3))
+            return DEGENERATE;
+        double c012 = Geometry.cross(x0, y0, x1, y1, x2, y2);
+        double c013 = Geometry.cross(x0, y0, x1, y1, x3, y3);
+        double c023 = Geometry.cross(x0, y0, x2, y2, x3, y3);
+        double c123 = Geometry.cross(x1, y1, x2, y2, x3, y3);
+        if (c012 == 0 || c013 == 0 || c023 == 0 || c123 == 0)
+            return COLLINEAR;
+        //edge 01 crosses edge 23 if 2 and 3 are on opposite sides of 01, and 0 and 1 on opposite sides of 23;
+        //likewise for edges 12 and 30. Each side test is the sign of one of the four triangles above.
+        boolean positive012 = c012 > 0;
+        boolean positive013 = c013 > 0;
+        boolean positive023 = c023 > 0;
+        boolean positive123 = c123 > 0;
+        if ((positive012 != positive013 && positive023 != positive123)
+                || (positive123 != positive012 && positive013 != positive023))
+            return SELF_INTERSECTING;
+        return VALID;
+    }
+
+    /**
+     * Checks the first <code>n</code> points of the specified list as a triangle (<code>n</code> = 3) or a
+     * quadrilateral (<code>n</code> = 4). Any further points are ignored.
+     *
+     * @return the result code, which is {@link #WRONG_ARITY} if the list has fewer than <code>n</code> points
+     */
+    static byte check(List<? extends Point> vertices, int n) {
+        if (vertices.size() < n)
+            return WRONG_ARITY;
+        Point a = vertices.get(0);
+        Point b = vertices.get(1);
+        Point c = vertices.get(2);
+        if (n == 3)
+            return triangle(a.x(), a.y(), b.x(), b.y(), c.x(), c.y());
+        if (n == 4) {
+            Point d = vertices.get(3);
+            return quadrilateral(a.x(), a.y(), b.x(), b.y(), c.x(), c.y(), d.x(), d.y());
+        }
+        return WRONG_ARITY;
+    }
+
+    /**
+     * Checks one record of <code>count</code> coordinates, starting at <code>offset</code>: six coordinates are a
+     * triangle and eight a quadrilateral, as x-y pairs.
+     *
+     * @return the result code, which is {@link #WRONG_ARITY} for any other number of coordinates
+     */
+    static byte check(double[] coordinates, int offset, int count) {
+        double[] c = coordinates;
+        int o = offset;
+        if (count == 6)
+            return triangle(c[o], c[o + 1], c[o + 2], c[o + 3], c[o + 4], c[o + 5]);
+        if (count == 8)
+            return quadrilateral(c[o], c[o + 1], c[o + 2], c[o + 3], c[o + 4], c[o + 5], c[o + 6], c[o + 7]);
+        return WRONG_ARITY;
+    }
+
+    /**
+     * Checks a batch of records, in parallel if the batch is large. The i-th record has <code>counts[i]</code>
+     * coordinates, starting at <code>coordinates[i * stride]</code>.
+     *
+     * @param coordinates the coordinates of the records
+     * @param stride      the distance between the starts of two consecutive records, at least their largest count
+     * @param counts      the number of coordinates of each record
+     * @param n           the number of records
+     * @param out         receives the result code of each record
+     * @return the number of records for which {@link #isMember(byte)} holds
+     */
+    static int validate(double[] coordinates, int stride, int[] counts, int n, byte[] out) {
+        IntStream range = IntStream.range(0, n);
+        if (n >= PARALLEL_THRESHOLD)
+            range = range.parallel();
+        return (int) range.filter(i -> isMember(out[i] = check(coordinates, i * stride, counts[i]))).count();
+    }
+}
@@ -0,0 +1,134 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Snaps many triangles and quadrilaterals at once, with the same rule as {@link Triangle#snap()} and
+ * {@link Quadrilateral#snap()}: every vertex is moved to its nearest integer-valued x-y coordinate, and a shape that
+ * would become invalid by this is left unchanged. Circles have no <code>snap</code> method, and are never moved.
+ * <p>
+ * Over a {@link ShapeStore}, the vertices are rounded, checked and written back in place on the primitive columns, one
+ * shape at a time, without building any point or list, so the pass costs little more than reading and writing the
+ * columns. Blocks of {@value #BLOCK_SIZE} shapes are snapped in parallel on the common fork-join pool.
+ */
+final class Snapping {
+
+    static final int BLOCK_SIZE = 1 << 12;
+
+    //the cache that the rounded vertices of shapes are taken from, or null to create a point for each of them
+    private static volatile PointInterner interner;
+
+    private Snapping() { }
+
+    /**
+     * Makes snapping take the rounded vertices of triangles and quadrilaterals from the specified cache, so that snapped
+     * shapes share one point object per position of the lattice; <code>null</code> turns this off again.
+     */
+    static void useInterner(PointInterner cache) {
+        interner = cache;
+    }
+
+    /**
+     * @return the specified coordinate, rounded as by <code>Math.round</code>
+     */
+    static double round(double d) {
+        return Math.round(d);
+    }
+
+    /**
+     * Returns the first <code>n</code> vertices with their coordinates rounded. If all of them are already at integer
+     * coordinates, the list itself is returned. Otherwise, the vertices are taken from the cache set by
+     * {@link #useInterner}, if any, and vertices that are already at integer coordinates are kept as they are if not.
+     */
+    static List<TwoDPoint> round(List<TwoDPoint> vertices, int n) {
+        PointInterner cache = interner;
+        List<TwoDPoint> rounded = null;
+        for (int i = 0; i < n; i++) {
+            TwoDPoint p = vertices.get(i);
+            double x = round(p.x());
+            double y = round(p.y());
+            if (rounded == null && x == p.x() && y == p.y())
+                continue;
+            if (rounded == null) {
+                rounded = new ArrayList<>(n);
+                for (int k = 0; k < i; k++) {
+                    rounded.add(cache == null ? vertices.get(k) : cache.intern(vertices.get(k)));
+                }
+            }
+            if (cache != null)
+                rounded.add(x == p.x() && y == p.y() ? cache.intern(p) : cache.intern(x, y));
+            else
+                rounded.add(x == p.x() && y == p.y() ? p : new TwoDPoint(x, y));
+        }
+        return rounded == null ? vertices : rounded;
+    }
+
+    /**
+     * Snaps every triangle and quadrilateral in the specified list, in parallel. The list must not hold the same
+     * shape more than once, and must not be modified, nor its shapes used, by another thread until this returns.
+     *
+     * @return the number of shapes that were left unchanged because snapping would have made them invalid
+     */
+    static int snapAll(List<? extends TwoDShape> shapes) {
+        ShapeOperationEvent event = ShapeOperationEvent.begin("snapAll", shapes.size());
+        int rejected = (int) shapes.parallelStream().filter(s -> {
+            if (s instanceof Triangle)
+                return !((Triangle) s).trySnap();
+            if (s instanceof Quadrilateral)
+                return !((Quadrilateral) s).trySnap();
+            return false;
+        }).count();
+        ShapeOperationEvent.end(event);
+        return rejected;
+    }
+
+    /**
+     * Snaps every triangle and quadrilateral of the specified store, in place, and puts their vertices back in the
+     * order documented by {@link Triangle#getPosition}.
+     *
+     * @return the number of shapes that were left unchanged because snapping would have made them invalid
+     */
+    static int snap(ShapeStore store) {
+        ShapeOperationEvent event = ShapeOperationEvent.begin("snapStore", store.triangles + store.quads);
+        int rejected = snapBlocks(store.triX, store.triY, store.triangles, 3);
+        rejected += snapBlocks(store.quadX, store.quadY, store.quads, 4);
+        ShapeOperationEvent.end(event);
+        return rejected;
+    }
+
+    private static int snapBlocks(double[][] xs, double[][] ys, int n, int vertices) {
+        int blocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        return IntStream.range(0, blocks).parallel()
+                        .map(b -> snap(xs, ys, b * BLOCK_SIZE, Math.min(n, (b + 1) * BLOCK_SIZE), vertices))
+                        .sum();
+    }
+
+    private static int snap(double[][] xs, double[][] ys, int from, int to, int vertices) {
+        double[] x = new double[vertices];
+        double[] y = new double[vertices];
+        int rejected = 0;
+        for (int i = from; i < to; i++) {
+            boolean changed = false;
+            for (int k = 0; k < vertices; k++) {
+                x[k] = round(xs[k][i]);
+                y[k] = round(ys[k][i]);
+                changed |= x[k] != xs[k][i] || y[k] != ys[k][i];
+            }
+            if (!changed)
+                continue;
+            byte code = vertices == 3
+                        ? ShapeValidator.triangle(x[0], y[0], x[1], y[1], x[2], y[2])
+                        : ShapeValidator.quadrilateral(x[0], y[0], x[1], y[1], x[2], y[2], x[3], y[3]);
+            if (!ShapeValidator.isMember(code)) {
+                rejected++;
+                continue;
+            }
+            Geometry.reorder(x, y, vertices);
+            for (int k = 0; k < vertices; k++) {
+                xs[k][i] = x[k];
+                ys[k][i] = y[k];
+            }
+        }
+        return rejected;
+    }
+}
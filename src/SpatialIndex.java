@@ -0,0 +1,69 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An index over a collection of two-dimensional shapes, keyed on their bounding boxes (see {@link BoundingBox#of}),
+ * that answers window and point-stabbing queries without scanning every shape.
+ * <p>
+ * The index keeps the bounding box a shape had when it was last inserted or updated. A shape that is moved through
+ * {@link Positionable#setPosition} (or snapped) must therefore be passed to {@link #update} afterwards, so that the
+ * index moves it to its new location.
+ *
+ * @param <T> the type of the indexed shapes
+ */
+public interface SpatialIndex<T extends TwoDShape> {
+
+    /**
+     * Adds the specified shape to this index. Inserting a shape that is already in the index updates its location.
+     */
+    void insert(T shape);
+
+    /**
+     * Removes the specified shape from this index. Shapes are compared by identity.
+     *
+     * @return <code>true</code> if the shape was in this index
+     */
+    boolean remove(T shape);
+
+    /**
+     * Moves the specified shape to the location given by its current bounding box. This must be called after the
+     * position of an indexed shape changes.
+     *
+     * @return <code>true</code> if the shape was in this index
+     */
+    boolean update(T shape);
+
+    /**
+     * @return the number of shapes in this index
+     */
+    int size();
+
+    /**
+     * Passes each shape whose bounding box intersects the specified window to the specified action, once.
+     */
+    void query(double minX, double minY, double maxX, double maxY, Consumer<? super T> action);
+
+    /**
+     * Passes each shape whose bounding box contains the point (x, y) to the specified action, once.
+     */
+    void stab(double x, double y, Consumer<? super T> action);
+
+    /**
+     * @return the shapes whose bounding boxes intersect the specified window
+     */
+    default List<T> query(BoundingBox window) {
+        List<T> result = new ArrayList<>();
+        query(window.minX(), window.minY(), window.maxX(), window.maxY(), result::add);
+        return result;
+    }
+
+    /**
+     * @return the shapes whose bounding boxes contain the specified point
+     */
+    default List<T> stab(Point p) {
+        List<T> result = new ArrayList<>();
+        stab(p.x(), p.y(), result::add);
+        return result;
+    }
+}
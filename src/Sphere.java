@@ -0,0 +1,105 @@
+import java.util.Collections;
+import java.util.List;
+
+public class Sphere implements ThreeDShape, Positionable {
+
+    private ThreeDPoint       center;
+    private double            radius;
+    private ThreeDBoundingBox bounds; //derived from the center whenever the position is set
+
+    public Sphere(double x, double y, double z, double r) {
+        this.center = new ThreeDPoint(x, y, z);
+        this.radius = r;
+        this.bounds = bounds(center, r);
+    }
+
+    private static ThreeDBoundingBox bounds(Point center, double r) {
+        //a negative radius makes an invalid sphere, whose box is just its center
+        double extent = Math.max(r, 0);
+        return new ThreeDBoundingBox(center.x() - extent, center.y() - extent, center.z() - extent,
+                                     center.x() + extent, center.y() + extent, center.z() + extent);
+    }
+
+    /**
+     * Sets the position of this sphere to be centered at the first element in the specified list of points.
+     *
+     * @param points the specified list of points.
+     * @throws IllegalArgumentException if the input does not consist of {@link ThreeDPoint} instances
+     */
+    @Override
+    public void setPosition(List<? extends Point> points) {
+        try {
+            if (!(points.get(0) instanceof ThreeDPoint))
+                throw new IllegalArgumentException("The input does not consist of ThreeDPoint instances.");
+            else {
+                center = (ThreeDPoint) points.get(0);
+                bounds = bounds(center, radius);
+            }
+        }
+        catch(IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * @return the center of this sphere as an immutable singleton list
+     */
+    @Override
+    public List<? extends Point> getPosition() {
+        return Collections.singletonList(center);
+    }
+
+    /**
+     * @return the number of faces of this sphere, which is always set to positive infinity
+     */
+    @Override
+    public int numFaces() {
+        return (int) Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Checks whether or not a list of vertices is a valid collection of vertices for a sphere.
+     *
+     * @param centers the list of vertices to check against, where each vertex is a <code>Point</code> type. For
+     *                the Sphere object, this list is expected to contain only its center.
+     * @return <code>true</code> if and only if <code>centers</code> is a single point, and the radius of this sphere is
+     * a positive value.
+     */
+    @Override
+    public boolean isMember(List<? extends Point> centers) {
+        return centers.size() == 1 && radius > 0;
+    }
+
+    /**
+     * @return the volume of this sphere
+     */
+    @Override
+    public double volume() {
+        return 4.0 / 3 * Math.PI * radius * radius * radius;
+    }
+
+    /**
+     * @return the surface area of this sphere
+     */
+    @Override
+    public double surfaceArea() {
+        return 4 * Math.PI * radius * radius;
+    }
+
+    public double getRadius() {
+        return radius;
+    }
+
+    /**
+     * @return the cube that circumscribes this sphere
+     */
+    @Override
+    public ThreeDBoundingBox boundingBox() {
+        return bounds;
+    }
+
+    @Override
+    public String toString() {
+        return "Sphere[center: " + center.x() + ", " + center.y() + ", " + center.z() + "; radius: " + radius + "]";
+    }
+}
@@ -0,0 +1,153 @@
+import java.util.*;
+
+public class Tetrahedron implements ThreeDShape, Positionable {
+
+    List<ThreeDPoint> vertices;
+
+    //derived from the vertices whenever the position is set, so that repeated queries need not recompute them
+    private List<ThreeDPoint> position;
+    private double            volume;
+    private double            surfaceArea;
+    private ThreeDBoundingBox bounds;
+
+    public Tetrahedron(List<ThreeDPoint> vertices) {
+        try {
+            if (isMember(vertices))
+                update(vertices);
+            else
+                throw new IllegalArgumentException("Invalid inputs for a tetrahedron.");
+        }
+        catch(IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Sets the position of this tetrahedron according to the first four elements in the specified list of points. If
+     * the input list has more than four elements, the subsequent elements are ignored.
+     *
+     * @param points the specified list of points.
+     */
+    @Override
+    public void setPosition(List<? extends Point> points) {
+        try {
+            if (!isMember(points))
+                throw new IllegalArgumentException("Invalid inputs for a tetrahedron.");
+
+            List<ThreeDPoint> corners = new ArrayList<>(4);
+            for (int i = 0; i < 4; i++) {
+                corners.add((ThreeDPoint) points.get(i));
+            }
+            update(corners);
+        }
+        catch(IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Retrieve the position of an object as a list of points. As every vertex of a tetrahedron is joined to every
+     * other, there is no order around it to keep, so the points are retrieved in increasing order of their x-values,
+     * then of their y-values, then of their z-values.
+     *
+     * @return the retrieved list of points.
+     */
+    @Override
+    public List<? extends Point> getPosition() {
+        return position;
+    }
+
+    /**
+     * Puts the specified corners in the order documented by {@link #getPosition()}, and computes the values derived
+     * from them once, so that later calls to {@link #volume()}, {@link #surfaceArea()}, {@link #getPosition()} and
+     * {@link #boundingBox()} need not.
+     *
+     * @param corners the vertices of this tetrahedron, in any order.
+     */
+    private void update(List<ThreeDPoint> corners) {
+        List<ThreeDPoint> v = new ArrayList<>(corners.subList(0, 4));
+        v.sort(Comparator.comparingDouble(ThreeDPoint::x).thenComparingDouble(ThreeDPoint::y)
+                         .thenComparingDouble(ThreeDPoint::z));
+        vertices = v;
+        position = Collections.unmodifiableList(v);
+        ThreeDPoint a = v.get(0), b = v.get(1), c = v.get(2), d = v.get(3);
+        volume = Geometry.tetrahedronVolume(a.x(), a.y(), a.z(), b.x(), b.y(), b.z(),
+                                            c.x(), c.y(), c.z(), d.x(), d.y(), d.z());
+        surfaceArea = Geometry.tetrahedronSurfaceArea(a.x(), a.y(), a.z(), b.x(), b.y(), b.z(),
+                                                      c.x(), c.y(), c.z(), d.x(), d.y(), d.z());
+        double minX = a.x(), minY = a.y(), minZ = a.z(), maxX = minX, maxY = minY, maxZ = minZ;
+        for (int i = 1; i < 4; i++) {
+            ThreeDPoint p = v.get(i);
+            minX = Math.min(minX, p.x());
+            minY = Math.min(minY, p.y());
+            minZ = Math.min(minZ, p.z());
+            maxX = Math.max(maxX, p.x());
+            maxY = Math.max(maxY, p.y());
+            maxZ = Math.max(maxZ, p.z());
+        }
+        bounds = new ThreeDBoundingBox(minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    /**
+     * @return the number of faces of this tetrahedron, which is always set to four
+     */
+    @Override
+    public int numFaces() {
+        return 4;
+    }
+
+    /**
+     * Checks whether or not a list of vertices forms a valid tetrahedron.
+     *
+     * @param vertices the list of vertices to check against, where each vertex is a <code>Point</code> type.
+     * @return <code>true</code> if <code>vertices</code> is a valid collection of points for a tetrahedron, and
+     * <code>false</code> otherwise. Four vertices in one plane are invalid, and so is a list of fewer than four
+     * points, or of points that are not {@link ThreeDPoint}s.
+     */
+    @Override
+    public boolean isMember(List<? extends Point> vertices) {
+        if (vertices == null || vertices.size() < 4)
+            return false;
+        for (int i = 0; i < 4; i++) {
+            if (!(vertices.get(i) instanceof ThreeDPoint))
+                return false;
+        }
+        Point a = vertices.get(0), b = vertices.get(1), c = vertices.get(2), d = vertices.get(3);
+        return Geometry.isTetrahedron(a.x(), a.y(), a.z(), b.x(), b.y(), b.z(),
+                                      c.x(), c.y(), c.z(), d.x(), d.y(), d.z());
+    }
+
+    /**
+     * @return the volume of this tetrahedron
+     */
+    @Override
+    public double volume() {
+        return volume;
+    }
+
+    /**
+     * @return the total area of the four faces of this tetrahedron
+     */
+    @Override
+    public double surfaceArea() {
+        return surfaceArea;
+    }
+
+    /**
+     * @return the smallest axis-aligned box that contains this tetrahedron
+     */
+    @Override
+    public ThreeDBoundingBox boundingBox() {
+        return bounds;
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Tetrahedron[");
+        for (int i = 0; i < 4; i++) {
+            ThreeDPoint p = vertices.get(i);
+            sb.append(i == 0 ? "(" : ", (").append(p.x()).append(", ").append(p.y()).append(", ").append(p.z())
+              .append(')');
+        }
+        return sb.append(']').toString();
+    }
+}
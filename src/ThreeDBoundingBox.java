@@ -0,0 +1,92 @@
+/**
+ * An unmodifiable axis-aligned bounding box in three-dimensional space, given by its least and greatest x-, y- and
+ * z-values. Like a {@link BoundingBox}, it is closed, so two boxes that only share a face, an edge or a corner still
+ * intersect.
+ */
+public final class ThreeDBoundingBox {
+    private final double minX;
+    private final double minY;
+    private final double minZ;
+    private final double maxX;
+    private final double maxY;
+    private final double maxZ;
+
+    public ThreeDBoundingBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        if (minX > maxX || minY > maxY || minZ > maxZ)
+            throw new IllegalArgumentException("The least values of a bounding box cannot exceed its greatest values.");
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+    }
+
+    public double minX() {
+        return minX;
+    }
+
+    public double minY() {
+        return minY;
+    }
+
+    public double minZ() {
+        return minZ;
+    }
+
+    public double maxX() {
+        return maxX;
+    }
+
+    public double maxY() {
+        return maxY;
+    }
+
+    public double maxZ() {
+        return maxZ;
+    }
+
+    /**
+     * @return <code>true</code> if this box and the specified box share at least one point
+     */
+    public boolean intersects(ThreeDBoundingBox other) {
+        return minX <= other.maxX && other.minX <= maxX && minY <= other.maxY && other.minY <= maxY
+                && minZ <= other.maxZ && other.minZ <= maxZ;
+    }
+
+    /**
+     * @return <code>true</code> if the point (x, y, z) lies inside this box or on its boundary
+     */
+    public boolean contains(double x, double y, double z) {
+        return minX <= x && x <= maxX && minY <= y && y <= maxY && minZ <= z && z <= maxZ;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof ThreeDBoundingBox))
+            return false;
+        ThreeDBoundingBox b = (ThreeDBoundingBox) o;
+        return Double.compare(minX, b.minX) == 0 && Double.compare(minY, b.minY) == 0
+                && Double.compare(minZ, b.minZ) == 0 && Double.compare(maxX, b.maxX) == 0
+                && Double.compare(maxY, b.maxY) == 0 && Double.compare(maxZ, b.maxZ) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = Double.hashCode(minX);
+        h = 31 * h + Double.hashCode(minY);
+        h = 31 * h + Double.hashCode(minZ);
+        h = 31 * h + Double.hashCode(maxX);
+        h = 31 * h + Double.hashCode(maxY);
+        h = 31 * h + Double.hashCode(maxZ);
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "ThreeDBoundingBox[(" + minX + ", " + minY + ", " + minZ + "), (" + maxX + ", " + maxY + ", " + maxZ
+               + ")]";
+    }
+}
@@ -3,9 +3,9 @@
  * <code>x</code>, <code>y</code>, and <code>z</code> values).
  */
 public class ThreeDPoint implements Point {
-    private double x;
-    private double y;
-    private double z;
+    private final double x;
+    private final double y;
+    private final double z;
 
     public ThreeDPoint(double x, double y, double z) {
         this.x = x;
@@ -20,4 +20,60 @@ public class ThreeDPoint implements Point {
     public double[] coordinates() {
         return new double[] {x, y, z};
     }
+
+    @Override
+    public int dimension() {
+        return 3;
+    }
+
+    @Override
+    public double coordinate(int i) {
+        switch (i) {
+            case 0:
+                return x;
+            case 1:
+                return y;
+            case 2:
+                return z;
+            default:
+                throw new IndexOutOfBoundsException("A three-dimensional point has no coordinate at index " + i + ".");
+        }
+    }
+
+    @Override
+    public double x() {
+        return x;
+    }
+
+    @Override
+    public double y() {
+        return y;
+    }
+
+    @Override
+    public double z() {
+        return z;
+    }
+
+    /**
+     * Three-dimensional points are equal if their coordinates are, as compared by {@link Double#compare}, so that
+     * <code>0.0</code> and <code>-0.0</code> differ and <code>NaN</code> equals itself.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof ThreeDPoint))
+            return false;
+        ThreeDPoint p = (ThreeDPoint) o;
+        return Double.compare(x, p.x) == 0 && Double.compare(y, p.y) == 0 && Double.compare(z, p.z) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = Double.hashCode(x);
+        h = 31 * h + Double.hashCode(y);
+        h = 31 * h + Double.hashCode(z);
+        return h;
+    }
 }
@@ -0,0 +1,38 @@
+import java.util.List;
+
+/**
+ * An interface to represent a closed solid in three-dimensional space. Every class implementing this interface must be
+ * able to specify the number of faces of such a solid and implement a method to check whether the vertices of an
+ * instance is a valid set of vertices for that class.
+ */
+public interface ThreeDShape {
+
+    /**
+     * @return the number of faces of the three-dimensional shape
+     */
+    int numFaces();
+
+    /**
+     * Checks whether or not a list of vertices is a valid collection of vertices for the type of three-dimensional
+     * shape.
+     * @param vertices the list of vertices to check against, where each vertex is a <code>Point</code> type.
+     * @return <code>true</code> if <code>vertices</code> is a valid collection of points for the three-dimensional
+     * shape, and <code>false</code> otherwise. For example, a list of four vertices all in one plane is invalid for a
+     * type meant to implement tetrahedra.
+     */
+    boolean isMember(List<? extends Point> vertices);
+
+    double volume();
+
+    double surfaceArea();
+
+    /**
+     * @return the smallest axis-aligned box that contains this shape. As with {@link TwoDShape#boundingBox()}, shapes
+     * are expected to compute the box once whenever their position is set.
+     */
+    ThreeDBoundingBox boundingBox();
+
+    default int compareTo(ThreeDShape o) {
+        return Double.compare(volume(), o.volume());
+    }
+}
@@ -0,0 +1,377 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A columnar store of three-dimensional shapes, laid out as {@link ShapeStore} lays out two-dimensional ones: each
+ * kind of shape is kept in its own set of parallel <code>double[]</code> columns, namely one x-, y- and z-column per
+ * vertex for tetrahedra, the least and greatest x-, y- and z-values for cuboids, and center and radius columns for
+ * spheres. The bulk passes {@link #volumes(double[])}, {@link #surfaceAreas(double[])} and
+ * {@link #bounds(double[], double[], double[], double[], double[], double[])} run over these columns directly, never
+ * build a {@link ThreeDPoint}, and run through {@link Blocks}, which spreads stores of at least
+ * {@value Blocks#PARALLEL_THRESHOLD} shapes of a kind across the common fork-join pool in blocks of
+ * {@value Blocks#BLOCK_SIZE}.
+ * <p>
+ * Every shape added to the store gets an index, in the order of insertion, across all kinds of shapes, and the bulk
+ * passes write the value of each shape at its index. The vertices of tetrahedra are kept in the order they are given,
+ * and the corners of cuboids as their least and greatest values. The store does not validate shapes as they are
+ * added; use {@link #members(boolean[])} to run the <code>isMember</code> rules over all of them at once.
+ * <p>
+ * A store is not safe for concurrent modification.
+ */
+public class ThreeDShapeStore {
+
+    static final byte TETRAHEDRON = 0;
+    static final byte CUBOID      = 1;
+    static final byte SPHERE      = 2;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    //tetrahedron columns: tetX[k][i] is the x-coordinate of the k-th vertex of the i-th tetrahedron
+    double[][] tetX = new double[4][INITIAL_CAPACITY];
+    double[][] tetY = new double[4][INITIAL_CAPACITY];
+    double[][] tetZ = new double[4][INITIAL_CAPACITY];
+    int[]      tetIndex = new int[INITIAL_CAPACITY];
+    int        tetrahedra;
+
+    //cuboid columns
+    double[] boxMinX = new double[INITIAL_CAPACITY];
+    double[] boxMinY = new double[INITIAL_CAPACITY];
+    double[] boxMinZ = new double[INITIAL_CAPACITY];
+    double[] boxMaxX = new double[INITIAL_CAPACITY];
+    double[] boxMaxY = new double[INITIAL_CAPACITY];
+    double[] boxMaxZ = new double[INITIAL_CAPACITY];
+    int[]    boxIndex = new int[INITIAL_CAPACITY];
+    int      cuboids;
+
+    //sphere columns
+    double[] sphereX = new double[INITIAL_CAPACITY];
+    double[] sphereY = new double[INITIAL_CAPACITY];
+    double[] sphereZ = new double[INITIAL_CAPACITY];
+    double[] radius  = new double[INITIAL_CAPACITY];
+    int[]    sphereIndex = new int[INITIAL_CAPACITY];
+    int      spheres;
+
+    //the kind of each shape, and its slot within the columns of that kind, by index
+    byte[] kinds = new byte[INITIAL_CAPACITY];
+    int[]  slots = new int[INITIAL_CAPACITY];
+    int    size;
+
+    /**
+     * Adds a tetrahedron with the specified vertices to this store.
+     *
+     * @return the index of the new tetrahedron in this store
+     */
+    public int addTetrahedron(double x1, double y1, double z1, double x2, double y2, double z2,
+                              double x3, double y3, double z3, double x4, double y4, double z4) {
+        if (tetrahedra == tetIndex.length) {
+            int capacity = tetrahedra * 2;
+            for (int k = 0; k < 4; k++) {
+                tetX[k] = Arrays.copyOf(tetX[k], capacity);
+                tetY[k] = Arrays.copyOf(tetY[k], capacity);
+                tetZ[k] = Arrays.copyOf(tetZ[k], capacity);
+            }
+            tetIndex = Arrays.copyOf(tetIndex, capacity);
+        }
+        int slot = tetrahedra++;
+        tetX[0][slot] = x1; tetY[0][slot] = y1; tetZ[0][slot] = z1;
+        tetX[1][slot] = x2; tetY[1][slot] = y2; tetZ[1][slot] = z2;
+        tetX[2][slot] = x3; tetY[2][slot] = y3; tetZ[2][slot] = z3;
+        tetX[3][slot] = x4; tetY[3][slot] = y4; tetZ[3][slot] = z4;
+        tetIndex[slot] = size;
+        return append(TETRAHEDRON, slot);
+    }
+
+    /**
+     * Adds an axis-aligned cuboid with the specified opposite corners to this store.
+     *
+     * @return the index of the new cuboid in this store
+     */
+    public int addCuboid(double x1, double y1, double z1, double x2, double y2, double z2) {
+        if (cuboids == boxIndex.length) {
+            int capacity = cuboids * 2;
+            boxMinX = Arrays.copyOf(boxMinX, capacity);
+            boxMinY = Arrays.copyOf(boxMinY, capacity);
+            boxMinZ = Arrays.copyOf(boxMinZ, capacity);
+            boxMaxX = Arrays.copyOf(boxMaxX, capacity);
+            boxMaxY = Arrays.copyOf(boxMaxY, capacity);
+            boxMaxZ = Arrays.copyOf(boxMaxZ, capacity);
+            boxIndex = Arrays.copyOf(boxIndex, capacity);
+        }
+        int slot = cuboids++;
+        boxMinX[slot] = Math.min(x1, x2);
+        boxMinY[slot] = Math.min(y1, y2);
+        boxMinZ[slot] = Math.min(z1, z2);
+        boxMaxX[slot] = Math.max(x1, x2);
+        boxMaxY[slot] = Math.max(y1, y2);
+        boxMaxZ[slot] = Math.max(z1, z2);
+        boxIndex[slot] = size;
+        return append(CUBOID, slot);
+    }
+
+    /**
+     * Adds a sphere centered at (x, y, z) of radius r to this store.
+     *
+     * @return the index of the new sphere in this store
+     */
+    public int addSphere(double x, double y, double z, double r) {
+        if (spheres == sphereIndex.length) {
+            int capacity = spheres * 2;
+            sphereX = Arrays.copyOf(sphereX, capacity);
+            sphereY = Arrays.copyOf(sphereY, capacity);
+            sphereZ = Arrays.copyOf(sphereZ, capacity);
+            radius = Arrays.copyOf(radius, capacity);
+            sphereIndex = Arrays.copyOf(sphereIndex, capacity);
+        }
+        int slot = spheres++;
+        sphereX[slot] = x;
+        sphereY[slot] = y;
+        sphereZ[slot] = z;
+        radius[slot] = r;
+        sphereIndex[slot] = size;
+        return append(SPHERE, slot);
+    }
+
+    /**
+     * Copies the specified shape into this store.
+     *
+     * @param shape a {@link Tetrahedron}, {@link Cuboid} or {@link Sphere}
+     * @return the index of the copy in this store
+     * @throws IllegalArgumentException if the shape is of any other type
+     */
+    public int add(ThreeDShape shape) {
+        if (shape instanceof Sphere) {
+            Sphere s = (Sphere) shape;
+            Point center = s.getPosition().get(0);
+            return addSphere(center.x(), center.y(), center.z(), s.getRadius());
+        }
+        if (shape instanceof Tetrahedron) {
+            List<? extends Point> v = ((Tetrahedron) shape).getPosition();
+            Point a = v.get(0);
+            Point b = v.get(1);
+            Point c = v.get(2);
+            Point d = v.get(3);
+            return addTetrahedron(a.x(), a.y(), a.z(), b.x(), b.y(), b.z(), c.x(), c.y(), c.z(), d.x(), d.y(), d.z());
+        }
+        if (shape instanceof Cuboid) {
+            ThreeDBoundingBox box = shape.boundingBox();
+            return addCuboid(box.minX(), box.minY(), box.minZ(), box.maxX(), box.maxY(), box.maxZ());
+        }
+        throw new IllegalArgumentException("Only tetrahedra, cuboids and spheres can be stored.");
+    }
+
+    private int append(byte kind, int slot) {
+        if (size == kinds.length) {
+            kinds = Arrays.copyOf(kinds, size * 2);
+            slots = Arrays.copyOf(slots, size * 2);
+        }
+        kinds[size] = kind;
+        slots[size] = slot;
+        return size++;
+    }
+
+    /**
+     * @return the number of shapes in this store
+     */
+    public int size() {
+        return size;
+    }
+
+    public int tetrahedronCount() {
+        return tetrahedra;
+    }
+
+    public int cuboidCount() {
+        return cuboids;
+    }
+
+    public int sphereCount() {
+        return spheres;
+    }
+
+    /**
+     * @return the volume of the shape at the specified index
+     */
+    public double volume(int index) {
+        int s = slots[index];
+        switch (kinds[index]) {
+            case TETRAHEDRON:
+                return Geometry.tetrahedronVolume(tetX[0][s], tetY[0][s], tetZ[0][s], tetX[1][s], tetY[1][s],
+                                                  tetZ[1][s], tetX[2][s], tetY[2][s], tetZ[2][s], tetX[3][s],
+                                                  tetY[3][s], tetZ[3][s]);
+            case CUBOID:
+                return (boxMaxX[s] - boxMinX[s]) * (boxMaxY[s] - boxMinY[s]) * (boxMaxZ[s] - boxMinZ[s]);
+            default:
+                return 4.0 / 3 * Math.PI * radius[s] * radius[s] * radius[s];
+        }
+    }
+
+    /**
+     * @return the surface area of the shape at the specified index
+     */
+    public double surfaceArea(int index) {
+        int s = slots[index];
+        switch (kinds[index]) {
+            case TETRAHEDRON:
+                return Geometry.tetrahedronSurfaceArea(tetX[0][s], tetY[0][s], tetZ[0][s], tetX[1][s], tetY[1][s],
+                                                       tetZ[1][s], tetX[2][s], tetY[2][s], tetZ[2][s], tetX[3][s],
+                                                       tetY[3][s], tetZ[3][s]);
+            case CUBOID:
+                double a = boxMaxX[s] - boxMinX[s], b = boxMaxY[s] - boxMinY[s], c = boxMaxZ[s] - boxMinZ[s];
+                return 2 * (a * b + b * c + c * a);
+            default:
+                return 4 * Math.PI * radius[s] * radius[s];
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the shape at the specified index is valid for its kind, as per the
+     * <code>isMember</code> method of {@link Tetrahedron}, {@link Cuboid} or {@link Sphere}
+     */
+    public boolean isMember(int index) {
+        int s = slots[index];
+        switch (kinds[index]) {
+            case TETRAHEDRON:
+                return Geometry.isTetrahedron(tetX[0][s], tetY[0][s], tetZ[0][s], tetX[1][s], tetY[1][s],
+                                              tetZ[1][s], tetX[2][s], tetY[2][s], tetZ[2][s], tetX[3][s],
+                                              tetY[3][s], tetZ[3][s]);
+            case CUBOID:
+                return boxMinX[s] < boxMaxX[s] && boxMinY[s] < boxMaxY[s] && boxMinZ[s] < boxMaxZ[s];
+            default:
+                return radius[s] > 0;
+        }
+    }
+
+    /**
+     * Computes the volume of every shape in this store, one column pass per kind of shape.
+     *
+     * @param out the array to fill, indexed by shape index; its length must be at least {@link #size()}
+     */
+    public void volumes(double[] out) {
+        ShapeOperationEvent event = ShapeOperationEvent.begin("volumes", size);
+        double[] ax = tetX[0], ay = tetY[0], az = tetZ[0], bx = tetX[1], by = tetY[1], bz = tetZ[1];
+        double[] cx = tetX[2], cy = tetY[2], cz = tetZ[2], dx = tetX[3], dy = tetY[3], dz = tetZ[3];
+        int[] tets = tetIndex;
+        Blocks.run(tetrahedra, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                out[tets[i]] = Geometry.tetrahedronVolume(ax[i], ay[i], az[i], bx[i], by[i], bz[i],
+                                                          cx[i], cy[i], cz[i], dx[i], dy[i], dz[i]);
+            }
+        });
+        double[] x0 = boxMinX, y0 = boxMinY, z0 = boxMinZ, x1 = boxMaxX, y1 = boxMaxY, z1 = boxMaxZ;
+        int[] boxes = boxIndex;
+        Blocks.run(cuboids, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                out[boxes[i]] = (x1[i] - x0[i]) * (y1[i] - y0[i]) * (z1[i] - z0[i]);
+            }
+        });
+        double[] r = radius;
+        int[] balls = sphereIndex;
+        Blocks.run(spheres, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                out[balls[i]] = 4.0 / 3 * Math.PI * r[i] * r[i] * r[i];
+            }
+        });
+        ShapeOperationEvent.end(event);
+    }
+
+    /**
+     * Computes the surface area of every shape in this store, one column pass per kind of shape.
+     *
+     * @param out the array to fill, indexed by shape index; its length must be at least {@link #size()}
+     */
+    public void surfaceAreas(double[] out) {
+        ShapeOperationEvent event = ShapeOperationEvent.begin("surfaceAreas", size);
+        double[] ax = tetX[0], ay = tetY[0], az = tetZ[0], bx = tetX[1], by = tetY[1], bz = tetZ[1];
+        double[] cx = tetX[2], cy = tetY[2], cz = tetZ[2], dx = tetX[3], dy = tetY[3], dz = tetZ[3];
+        int[] tets = tetIndex;
+        Blocks.run(tetrahedra, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                out[tets[i]] = Geometry.tetrahedronSurfaceArea(ax[i], ay[i], az[i], bx[i], by[i], bz[i],
+                                                               cx[i], cy[i], cz[i], dx[i], dy[i], dz[i]);
+            }
+        });
+        double[] x0 = boxMinX, y0 = boxMinY, z0 = boxMinZ, x1 = boxMaxX, y1 = boxMaxY, z1 = boxMaxZ;
+        int[] boxes = boxIndex;
+        Blocks.run(cuboids, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                double a = x1[i] - x0[i], b = y1[i] - y0[i], c = z1[i] - z0[i];
+                out[boxes[i]] = 2 * (a * b + b * c + c * a);
+            }
+        });
+        double[] r = radius;
+        int[] balls = sphereIndex;
+        Blocks.run(spheres, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                out[balls[i]] = 4 * Math.PI * r[i] * r[i];
+            }
+        });
+        ShapeOperationEvent.end(event);
+    }
+
+    /**
+     * Computes the bounding box of every shape in this store, one column pass per kind of shape. Each array is indexed
+     * by shape index, and its length must be at least {@link #size()}.
+     */
+    public void bounds(double[] minX, double[] minY, double[] minZ, double[] maxX, double[] maxY, double[] maxZ) {
+        ShapeOperationEvent event = ShapeOperationEvent.begin("bounds3D", size);
+        double[][] xs = tetX, ys = tetY, zs = tetZ;
+        int[] tets = tetIndex;
+        Blocks.run(tetrahedra, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int j = tets[i];
+                minX[j] = Math.min(Math.min(xs[0][i], xs[1][i]), Math.min(xs[2][i], xs[3][i]));
+                minY[j] = Math.min(Math.min(ys[0][i], ys[1][i]), Math.min(ys[2][i], ys[3][i]));
+                minZ[j] = Math.min(Math.min(zs[0][i], zs[1][i]), Math.min(zs[2][i], zs[3][i]));
+                maxX[j] = Math.max(Math.max(xs[0][i], xs[1][i]), Math.max(xs[2][i], xs[3][i]));
+                maxY[j] = Math.max(Math.max(ys[0][i], ys[1][i]), Math.max(ys[2][i], ys[3][i]));
+                maxZ[j] = Math.max(Math.max(zs[0][i], zs[1][i]), Math.max(zs[2][i], zs[3][i]));
+            }
+        });
+        double[] x0 = boxMinX, y0 = boxMinY, z0 = boxMinZ, x1 = boxMaxX, y1 = boxMaxY, z1 = boxMaxZ;
+        int[] boxes = boxIndex;
+        Blocks.run(cuboids, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int j = boxes[i];
+                minX[j] = x0[i];
+                minY[j] = y0[i];
+                minZ[j] = z0[i];
+                maxX[j] = x1[i];
+                maxY[j] = y1[i];
+                maxZ[j] = z1[i];
+            }
+        });
+        double[] cx = sphereX, cy = sphereY, cz = sphereZ, r = radius;
+        int[] balls = sphereIndex;
+        Blocks.run(spheres, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                //a negative radius makes an invalid sphere, whose box is just its center
+                int j = balls[i];
+                double extent = Math.max(r[i], 0);
+                minX[j] = cx[i] - extent;
+                minY[j] = cy[i] - extent;
+                minZ[j] = cz[i] - extent;
+                maxX[j] = cx[i] + extent;
+                maxY[j] = cy[i] + extent;
+                maxZ[j] = cz[i] + extent;
+            }
+        });
+        ShapeOperationEvent.end(event);
+    }
+
+    /**
+     * Runs the <code>isMember</code> rules over every shape in this store.
+     *
+     * @param out the array to fill, indexed by shape index; its length must be at least {@link #size()}
+     * @return the number of valid shapes
+     */
+    public int members(boolean[] out) {
+        int valid = 0;
+        for (int i = 0; i < size; i++) {
+            boolean member = isMember(i);
+            out[i] = member;
+            if (member)
+                valid++;
+        }
+        return valid;
+    }
+}
@@ -2,12 +2,22 @@ import java.util.*;
 
 public class Triangle implements TwoDShape, Positionable {
 
+    private static final MetricsRegistry.Timer SET_POSITION = MetricsRegistry.timer("triangle.setPosition");
+    private static final MetricsRegistry.Timer IS_MEMBER    = MetricsRegistry.timer("triangle.isMember");
+    private static final MetricsRegistry.Counter AREA       = MetricsRegistry.counter("triangle.area");
+
     List<TwoDPoint> vertices;
 
+    //derived from the vertices whenever the position is set, so that repeated queries need not recompute them
+    private List<TwoDPoint> position;
+    private double          area;
+    private double          perimeter;
+    private BoundingBox     bounds;
+
     public Triangle(List<TwoDPoint> vertices) {
         try {
             if (isMember(vertices))
-                this.vertices = vertices;
+                update(vertices);
             else
                 throw new IllegalArgumentException("Invalid inputs for a triangle.");
         }
@@ -25,44 +35,22 @@ public class Triangle implements TwoDShape, Positionable {
      */
     @Override
     public void setPosition(List<? extends Point> points) {
+        long start = MetricsRegistry.start();
+        long allocated = MetricsRegistry.allocated();
         try {
-            if (!isMember(vertices))
+            if (!isMember(points))
                 throw new IllegalArgumentException("Invalid inputs for a triangle.");
 
-            //finds the coordinates of the centroid of the triangle
-            double[] center = new double[2];
-            for (int j = 0; j < 2; j++) {
-                for (int i = 0; i < 3; i++) {
-                    center[j] += points.get(i).coordinates()[j];
-                }
-                center[j] = center[j] / 3;
-            }
-
-            //finds the polar angle of the centroid to the first three points
-            //then creates a hashmap to associate each angle to each TwoDPoint object
-            double[] angles = new double[3];
-            HashMap<Double, TwoDPoint> reference = new HashMap<>();
+            List<TwoDPoint> corners = new ArrayList<>(3);
             for (int i = 0; i < 3; i++) {
-                double x = points.get(i).coordinates()[0];
-                double y = points.get(i).coordinates()[1];
-                angles[i] = Math.atan2(x - center[0], y - center[1]);
-                reference.put(angles[i], (TwoDPoint) points.get(i));
+                corners.add((TwoDPoint) points.get(i));
             }
-            //the angles are sorted from greatest to least
-            //each angle is then used to get corresponding triangle points, added to a temp var
-            // in clockwise order, and then vertices is reassigned to temp.
-            Arrays.sort(angles);
-            //Collections.reverse(Arrays.asList(angles));
-
-            List<TwoDPoint> temp = new ArrayList<>();
-            for (int i = 0; i < 3; i++) {
-                temp.add(reference.get(angles[i]));
-            }
-            vertices = temp;
+            update(corners);
         }
         catch(IllegalArgumentException e) {
             System.out.println(e.getMessage());
         }
+        SET_POSITION.stop(start, allocated);
     }
 
     /**
@@ -74,48 +62,32 @@ public class Triangle implements TwoDShape, Positionable {
      */
     @Override
     public List<? extends Point> getPosition() {
-        List<TwoDPoint> temp = vertices;
-        //this contains the indices of the vertices with the same minimum x value
-        ArrayList<Integer> minXi = new ArrayList<>();
-
-        //the 0th x is taken out so that in finding the min x values, there will be no error
-        double minx = vertices.get(0).coordinates()[0];
-        minXi.add(0);
-
-        //find the minimum x values
-        for (int i = 1; i < 3; i++) {
-            double x = vertices.get(i).coordinates()[0];
-            if (x < minx) {
-                minx = x;
-                //because a new minimum was found, clear minXi to store the index of a new minimum x
-                minXi.clear();
-                minXi.add(i);
-            }
-            else if (x == minx)
-                minXi.add(i);
-        }
-
-        //the only values within minXi should be equal, because there can only be one minimum value and its duplicates.
-        double miny = vertices.get(minXi.get(0)).coordinates()[1];
-        int minyIndex = minXi.get(0);
-
-        //find the minimum y value
-        for (int i = 1; i < minXi.size(); i++) {
-            double y = vertices.get(i).coordinates()[1];
-            if (y < miny) {
-                miny = y;
-                minyIndex = i;
-            }
-        }
+        return position;
+    }
 
-        setPosition(vertices);
-        List<TwoDPoint> clockwise = new ArrayList<>();
+    /**
+     * Puts the specified corners in the order documented by {@link #getPosition()}, and computes the values derived
+     * from them once, so that later calls to {@link #area()}, {@link #perimeter()}, {@link #getPosition()} and
+     * {@link #boundingBox()} need not.
+     *
+     * @param corners the vertices of this triangle, in any order.
+     */
+    private void update(List<TwoDPoint> corners) {
+        vertices = Geometry.clockwise(corners, 3);
+        position = Collections.unmodifiableList(vertices);
+        bounds = Geometry.bounds(vertices, 3);
+        perimeter = perimeterOf(vertices);
+        area = areaOf(vertices);
+    }
 
-        for (int i = 0; i < 3; i++) {
-            clockwise.add(vertices.get((minyIndex + i) % 3));
-        }
-        vertices = temp;
-        return clockwise;
+    /**
+     * @return an immutable copy of this triangle, which may be shared between threads
+     * @throws IllegalStateException if this triangle was never given a valid position
+     */
+    public TriangleSnapshot snapshot() {
+        if (vertices == null)
+            throw new IllegalStateException("An invalid triangle has no snapshot.");
+        return new TriangleSnapshot(position, area, perimeter, bounds);
     }
 
     /**
@@ -132,20 +104,17 @@ public class Triangle implements TwoDShape, Positionable {
      *
      * @param vertices the list of vertices to check against, where each vertex is a <code>Point</code> type.
      * @return <code>true</code> if <code>vertices</code> is a valid collection of points for a triangle, and
-     * <code>false</code> otherwise. For example, three vertices are in a straight line is invalid.
+     * <code>false</code> otherwise. For example, three vertices are in a straight line is invalid. A list of fewer
+     * than three points is invalid.
      */
     @Override
     public boolean isMember(List<? extends Point> vertices) {
-        double[] xcoords = new double[3];
-        for (int i = 0; i < 3; i++) {
-            xcoords[i] = vertices.get(i).coordinates()[0];
-        }
-        //short circuiting, since all the xs are the same it's an invalid triangle. There is no need to check for all ys being the same.
-        if (xcoords[0] == xcoords[1] && xcoords[1] == xcoords[2])
-            return false;
-        else {
-            return area(vertices) != 0;
-        }
+        long start = MetricsRegistry.start();
+        long allocated = MetricsRegistry.allocated();
+        //the orientation test also rules out three vertices sharing one x-value, since such vertices are in a line
+        boolean member = ShapeValidator.check(vertices, 3) == ShapeValidator.VALID;
+        IS_MEMBER.stop(start, allocated);
+        return member;
     }
 
     /**
@@ -156,88 +125,110 @@ public class Triangle implements TwoDShape, Positionable {
      * an in-place procedure, and the current instance is modified.
      */
     public void snap() {
-        List<TwoDPoint> v = new ArrayList<>();
-        double[] xcoords = new double[3];
-        double[] ycoords = new double[3];
-        for (int i = 0; i < 3; i++) {
-            xcoords[i] = vertices.get(i).coordinates()[0];
-            ycoords[i] = vertices.get(i).coordinates()[1];
-        }
+        trySnap();
+    }
 
-        for (int i = 0; i < 3; i++) {
-            xcoords[i] = Math.round(xcoords[i]);
-            ycoords[i] = Math.round(ycoords[i]);
-            TwoDPoint rounded = new TwoDPoint(xcoords[i], ycoords[i]);
-            v.add(rounded);
-        }
-        vertices = v;
+    /**
+     * Snaps this triangle as documented by {@link #snap()}.
+     *
+     * @return <code>false</code> if snapping would have made this triangle invalid, in which case it is left unchanged
+     */
+    boolean trySnap() {
+        List<TwoDPoint> v = Snapping.round(vertices, 3);
+        if (ShapeValidator.check(v, 3) != ShapeValidator.VALID)
+            return false;
+        if (v != vertices)
+            update(v);
+        return true;
     }
 
     /**
      * @return the area of this triangle
      */
     public double area() {
-        ArrayList<Double> sides = new ArrayList<>();
-        double s = perimeter() / 2;
-        for (int i = 0; i < 2; i++) {
-            for (int j = i + 1; j < 3; j++) {
-                sides.add(Math.hypot(vertices.get(i).coordinates()[0] - vertices.get(j).coordinates()[0],
-                        vertices.get(i).coordinates()[1] - vertices.get(j).coordinates()[1]));
-            }
-        }
-        return Math.sqrt(s * (s - sides.get(0))* (s - sides.get(1))* (s - sides.get(2)));
+        AREA.increment();
+        return area;
     }
 
     public double area(List<? extends Point> vertices) {
-        ArrayList<Double> sides = new ArrayList<>();
-        double s = perimeter(vertices) / 2;
-        for (int i = 0; i < 2; i++) {
-            for (int j = i + 1; j < 3; j++) {
-                sides.add(Math.hypot(vertices.get(i).coordinates()[0] - vertices.get(j).coordinates()[0],
-                        vertices.get(i).coordinates()[1] - vertices.get(j).coordinates()[1]));
-            }
-        }
-        return Math.sqrt(s * (s - sides.get(0))* (s - sides.get(1))* (s - sides.get(2)));
+        return areaOf(vertices);
+    }
+
+    /**
+     * @return the area of the triangle of the first three of the specified vertices, by Heron's formula
+     */
+    static double areaOf(List<? extends Point> vertices) {
+        Point p0 = vertices.get(0);
+        Point p1 = vertices.get(1);
+        Point p2 = vertices.get(2);
+        //the sides are taken in the same order as in perimeter(), so that s is exactly half the perimeter
+        double a = Math.hypot(p0.x() - p1.x(), p0.y() - p1.y());
+        double b = Math.hypot(p0.x() - p2.x(), p0.y() - p2.y());
+        double c = Math.hypot(p1.x() - p2.x(), p1.y() - p2.y());
+        double s = (a + b + c) / 2;
+        return Math.sqrt(s * (s - a) * (s - b) * (s - c));
     }
 
     /**
      * @return the perimeter (i.e., the total length of the boundary) of this triangle
      */
     public double perimeter() {
-        double perimeter = 0;
-        for (int i = 0; i < 2; i++) {
-            for (int j = i + 1; j < 3; j++) {
-                perimeter += Math.hypot(vertices.get(i).coordinates()[0] - vertices.get(j).coordinates()[0],
-                        vertices.get(i).coordinates()[1] - vertices.get(j).coordinates()[1]);
-            }
-        }
         return perimeter;
     }
 
     public double perimeter(List<? extends Point> vertices) {
+        return perimeterOf(vertices);
+    }
+
+    /**
+     * @return the perimeter of the triangle of the first three of the specified vertices
+     */
+    static double perimeterOf(List<? extends Point> vertices) {
         double perimeter = 0;
         for (int i = 0; i < 2; i++) {
             for (int j = i + 1; j < 3; j++) {
-                perimeter += Math.hypot(vertices.get(i).coordinates()[0] - vertices.get(j).coordinates()[0],
-                        vertices.get(i).coordinates()[1] - vertices.get(j).coordinates()[1]);
+                perimeter += Math.hypot(vertices.get(i).x() - vertices.get(j).x(),
+                        vertices.get(i).y() - vertices.get(j).y());
             }
         }
         return perimeter;
     }
 
+    /**
+     * @return the smallest axis-aligned box that contains this triangle
+     */
+    @Override
+    public BoundingBox boundingBox() {
+        return bounds;
+    }
+
+    /**
+     * @return <code>true</code> if this triangle contains the point (x, y), or has it on its boundary
+     */
+    @Override
+    public boolean contains(double x, double y) {
+        TwoDPoint a = vertices.get(0);
+        TwoDPoint b = vertices.get(1);
+        TwoDPoint c = vertices.get(2);
+        return Geometry.triangleContains(a.x(), a.y(), b.x(), b.y(), c.x(), c.y(), x, y);
+    }
+
     public String toString() {
-        List<TwoDPoint> temp = vertices;
-        setPosition(vertices);
-        double x1 = vertices.get(0).coordinates()[0];
-        double y1 = vertices.get(0).coordinates()[1];
+        return toString(vertices);
+    }
 
-        double x2 = vertices.get(1).coordinates()[0];
-        double y2 = vertices.get(1).coordinates()[1];
+    /**
+     * @return the specified vertices, formatted as by {@link #toString()}
+     */
+    static String toString(List<? extends Point> vertices) {
+        double x1 = vertices.get(0).x();
+        double y1 = vertices.get(0).y();
 
-        double x3 = vertices.get(2).coordinates()[0];
-        double y3 = vertices.get(2).coordinates()[1];
+        double x2 = vertices.get(1).x();
+        double y2 = vertices.get(1).y();
 
-        vertices = temp;
+        double x3 = vertices.get(2).x();
+        double y3 = vertices.get(2).y();
 
         return "Triangle[(" + x1 + ", " + y1 + "), (" + x2 + ", " + y2 + "), (" + x3 + ", " + y3 + ")]";
     }
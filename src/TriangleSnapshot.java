@@ -0,0 +1,117 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable triangle, as documented by {@link ShapeSnapshot}. Two snapshots are equal if their vertices are.
+ */
+public final class TriangleSnapshot implements ShapeSnapshot {
+
+    private final List<TwoDPoint> vertices;
+    private final double          area;
+    private final double          perimeter;
+    private final BoundingBox     bounds;
+
+    /**
+     * Takes the vertices, already in clockwise order, and the values derived from them as they are, so that a
+     * snapshot of a {@link Triangle} need not compute them again.
+     */
+    TriangleSnapshot(List<? extends TwoDPoint> vertices, double area, double perimeter, BoundingBox bounds) {
+        this.vertices = Collections.unmodifiableList(new ArrayList<>(vertices));
+        this.area = area;
+        this.perimeter = perimeter;
+        this.bounds = bounds;
+    }
+
+    /**
+     * @return a triangle with the first three of the specified points as its vertices, in any order
+     * @throws IllegalArgumentException if the points are not {@link TwoDPoint} instances, or not a valid triangle, as
+     *                                  by {@link Triangle#isMember}
+     */
+    public static TriangleSnapshot of(List<? extends Point> points) {
+        if (ShapeValidator.check(points, 3) != ShapeValidator.VALID)
+            throw new IllegalArgumentException("Invalid inputs for a triangle.");
+        List<TwoDPoint> corners = new ArrayList<>(3);
+        for (int i = 0; i < 3; i++) {
+            if (!(points.get(i) instanceof TwoDPoint))
+                throw new IllegalArgumentException("The input does not consist of TwoDPoint instances.");
+            corners.add((TwoDPoint) points.get(i));
+        }
+        List<TwoDPoint> ordered = Geometry.clockwise(corners, 3);
+        return new TriangleSnapshot(ordered, Triangle.areaOf(ordered), Triangle.perimeterOf(ordered),
+                                    Geometry.bounds(ordered, 3));
+    }
+
+    @Override
+    public List<TwoDPoint> vertices() {
+        return vertices;
+    }
+
+    @Override
+    public TriangleSnapshot withPosition(List<? extends Point> points) {
+        return of(points);
+    }
+
+    @Override
+    public TriangleSnapshot snapped() {
+        List<TwoDPoint> v = Snapping.round(vertices, 3);
+        if (v == vertices || ShapeValidator.check(v, 3) != ShapeValidator.VALID)
+            return this;
+        return of(v);
+    }
+
+    /**
+     * @return a new mutable triangle with the vertices of this snapshot
+     */
+    public Triangle toTriangle() {
+        return new Triangle(new ArrayList<>(vertices));
+    }
+
+    @Override
+    public int numSides() {
+        return 3;
+    }
+
+    @Override
+    public boolean isMember(List<? extends Point> vertices) {
+        return ShapeValidator.check(vertices, 3) == ShapeValidator.VALID;
+    }
+
+    @Override
+    public double area() {
+        return area;
+    }
+
+    @Override
+    public double perimeter() {
+        return perimeter;
+    }
+
+    @Override
+    public BoundingBox boundingBox() {
+        return bounds;
+    }
+
+    @Override
+    public boolean contains(double x, double y) {
+        TwoDPoint a = vertices.get(0);
+        TwoDPoint b = vertices.get(1);
+        TwoDPoint c = vertices.get(2);
+        return Geometry.triangleContains(a.x(), a.y(), b.x(), b.y(), c.x(), c.y(), x, y);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TriangleSnapshot && vertices.equals(((TriangleSnapshot) o).vertices);
+    }
+
+    @Override
+    public int hashCode() {
+        return vertices.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return Triangle.toString(vertices);
+    }
+}
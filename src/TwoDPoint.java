@@ -6,8 +6,8 @@ import java.util.List;
  * exactly two doubles specifying its <code>x</code> and <code>y</code> values.
  */
 public class TwoDPoint implements Point {
-    private double x;
-    private double y;
+    private final double x;
+    private final double y;
 
     public TwoDPoint(double x, double y) {
         this.x = x;
@@ -22,6 +22,41 @@ public class TwoDPoint implements Point {
         return new double[] {x, y};
     }
 
+    @Override
+    public int dimension() {
+        return 2;
+    }
+
+    @Override
+    public double coordinate(int i) {
+        switch (i) {
+            case 0:
+                return x;
+            case 1:
+                return y;
+            default:
+                throw new IndexOutOfBoundsException("A two-dimensional point has no coordinate at index " + i + ".");
+        }
+    }
+
+    @Override
+    public double x() {
+        return x;
+    }
+
+    @Override
+    public double y() {
+        return y;
+    }
+
+    /**
+     * @return <code>0</code>, since a two-dimensional point lies on the x-y plane.
+     */
+    @Override
+    public double z() {
+        return 0;
+    }
+
     /**
      * Returns a list of <code>TwoDPoint</code>s based on the specified array of doubles. A valid argument must always
      * be an even number of doubles so that every pair can be used to form a single <code>TwoDPoint</code> to be added
@@ -43,6 +78,25 @@ public class TwoDPoint implements Point {
         }
     }
 
+    /**
+     * Two-dimensional points are equal if their coordinates are, as compared by {@link Double#compare}, so that
+     * <code>0.0</code> and <code>-0.0</code> differ and <code>NaN</code> equals itself.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof TwoDPoint))
+            return false;
+        TwoDPoint p = (TwoDPoint) o;
+        return Double.compare(x, p.x) == 0 && Double.compare(y, p.y) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Double.hashCode(x) + Double.hashCode(y);
+    }
+
     public String toString() {
         return "(" + x + ", " + y + ")";
     }
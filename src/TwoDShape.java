@@ -25,6 +25,25 @@ public interface TwoDShape {
 
     double perimeter();
 
+    /**
+     * @return the smallest axis-aligned box that contains this shape. Shapes are expected to make this cheap, e.g. by
+     * computing the box once whenever their position is set.
+     */
+    BoundingBox boundingBox();
+
+    /**
+     * @return <code>true</code> if the point (x, y) is inside this shape or on its boundary
+     */
+    boolean contains(double x, double y);
+
+    /**
+     * @return <code>true</code> if the specified point is inside this shape or on its boundary. Only the x- and
+     * y-coordinates of the point are used.
+     */
+    default boolean contains(Point p) {
+        return contains(p.x(), p.y());
+    }
+
     default int compareTo(TwoDShape o) {
         return (int) (area() - o.area());
     }